@@ -95,8 +95,8 @@ public class PublicEventsServiceImpl implements PublicEventsService {
         }
 
         event.setRating(getEventRating(eventId)); // Получаем рейтинг через gRPC
-        // Отправляем информацию о просмотре через gRPC
-        collectorClient.sendUserAction(userId, eventId, ActionTypeProto.ACTION_VIEW, Instant.now());
+        // Отправляем информацию о просмотре через gRPC в фоновом пакете, не задерживая ответ
+        collectorClient.sendUserActionAsync(userId, eventId, ActionTypeProto.ACTION_VIEW, Instant.now());
 
         return eventMapper.toEventFullDto(event);
     }
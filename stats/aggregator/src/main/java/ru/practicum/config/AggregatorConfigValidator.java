@@ -0,0 +1,32 @@
+package ru.practicum.config;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+// Проверка совместимости настроек при запуске: несовместимые режимы не отключаются молча, а останавливают запуск
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AggregatorConfigValidator {
+    private final AggregatorProperties aggregatorProperties;
+    private final KafkaProperties kafkaProperties;
+
+    @PostConstruct
+    public void validate() {
+        // Снимки и changelog не содержат бакетов окна, а затухание не сочетается с вычитанием бакетов
+        if (aggregatorProperties.getWindow().isEnabled()) {
+            requireDisabled(aggregatorProperties.getSnapshot().isEnabled(), "aggregator.snapshot.enabled");
+            requireDisabled(kafkaProperties.getChangelog().isEnabled(), "kafka.changelog.enabled");
+            requireDisabled(aggregatorProperties.getDecay().isEnabled(), "aggregator.decay.enabled");
+        }
+    }
+
+    private void requireDisabled(boolean enabled, String property) {
+        if (enabled) {
+            log.error("aggregator.window.enabled is not compatible with {}", property);
+            throw new IllegalStateException("aggregator.window.enabled is not compatible with " + property);
+        }
+    }
+}
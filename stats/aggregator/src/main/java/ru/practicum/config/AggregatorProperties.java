@@ -0,0 +1,112 @@
+package ru.practicum.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.time.Instant;
+
+@ConfigurationProperties(prefix = "aggregator")
+@Getter
+@Setter
+@ToString
+public class AggregatorProperties {
+    private SnapshotConfig snapshot = new SnapshotConfig();
+    private EmissionConfig emission = new EmissionConfig();
+    private ListenerConfig listener = new ListenerConfig();
+    private Engine engine = Engine.EXACT;
+    private MinHashConfig minhash = new MinHashConfig();
+    private TopKConfig topK = new TopKConfig();
+    private DecayConfig decay = new DecayConfig();
+    private WindowConfig window = new WindowConfig();
+
+    @Getter
+    @Setter
+    @ToString
+    public static class SnapshotConfig {
+        private boolean enabled;
+        private String directory = "aggregator-snapshots";
+        private Duration interval = Duration.ofMinutes(1);
+    }
+
+    // Объединение обновлений сходства: в пределах пачки отправляется только последняя оценка для каждой пары.
+    // При flushInterval > 0 буфер партиции отправляется не чаще раза в интервал: оценки, накопленные
+    // зафиксированными пачками, ждут отправки, и при аварийной остановке в пределах интервала могут быть не доставлены
+    @Getter
+    @Setter
+    @ToString
+    public static class EmissionConfig {
+        private boolean coalesce;
+        private int maxBufferedPairs = 10_000;
+        private Duration flushInterval = Duration.ZERO;
+    }
+
+    @Getter
+    @Setter
+    @ToString
+    public static class ListenerConfig {
+        private ListenerMode mode = ListenerMode.BATCH;
+    }
+
+    public enum ListenerMode {
+        RECORD,
+        BATCH
+    }
+
+    // Параметры приближённого движка: скетч из bands * rows хешей; пара становится кандидатом,
+    // если совпали все rows минимумов хотя бы в одной полосе
+    @Getter
+    @Setter
+    @ToString
+    public static class MinHashConfig {
+        private int bands = 64;
+        private int rows = 2;
+        private int maxCandidates = 500;
+        private long seed = 42;
+    }
+
+    public enum Engine {
+        EXACT,
+        MINHASH
+    }
+
+    // Ограничение числа соседей мероприятия: отправляются k лучших, хранится k * retentionFactor.
+    // Режим приближённый: сумма вытесненной пары удаляется во всех партициях, и при возвращении пара
+    // накапливает сумму заново с нуля
+    @Getter
+    @Setter
+    @ToString
+    public static class TopKConfig {
+        private boolean enabled;
+        private int k = 20;
+        private int retentionFactor = 2;
+    }
+
+    // Экспоненциальное затухание весов: за halfLife вес уменьшается вдвое.
+    // epoch — точка отсчёта масштабирования; взаимодействия, затухшие ниже pruneThreshold, удаляются раз в pruneInterval
+    @Getter
+    @Setter
+    @ToString
+    public static class DecayConfig {
+        private boolean enabled;
+        private Duration halfLife = Duration.ofDays(30);
+        private Instant epoch = Instant.parse("2025-01-01T00:00:00Z");
+        private double pruneThreshold = 0.05;
+        private Duration pruneInterval = Duration.ofMinutes(10);
+    }
+
+    // Скользящее окно: сходство считается только по действиям за последние length (по времени действий).
+    // Действия пользователя сопоставляются в пределах одного бакета, как если бы каждый бакет был отдельным
+    // пользователем; истёкший бакет вычитается из общих сумм целиком. Не совместимо со снимками, changelog
+    // и затуханием: такие настройки отклоняются при запуске (AggregatorConfigValidator)
+    @Getter
+    @Setter
+    @ToString
+    public static class WindowConfig {
+        private boolean enabled;
+        private Duration length = Duration.ofDays(7);
+        private Duration bucket = Duration.ofDays(1);
+    }
+}
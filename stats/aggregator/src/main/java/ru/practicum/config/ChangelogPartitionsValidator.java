@@ -0,0 +1,64 @@
+package ru.practicum.config;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.errors.UnknownTopicOrPartitionException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+
+// Партиция N changelog хранит состояние партиции N топика действий, поэтому число партиций должно совпадать:
+// иначе часть партиций восстанавливается с чужим состоянием или не восстанавливается вовсе.
+// Ещё не созданный changelog будет создан с kafka.changelog.partitions, поэтому сравнивается настройка.
+// Если топик действий ещё не создан или брокер недоступен, проверка пропускается с предупреждением
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "kafka.changelog.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class ChangelogPartitionsValidator {
+    private final KafkaProperties kafkaProperties;
+    private final KafkaAdmin kafkaAdmin;
+
+    @PostConstruct
+    public void validate() {
+        String actionsTopic = kafkaProperties.getConsumer().getTopic();
+        String changelogTopic = kafkaProperties.getChangelog().getTopic();
+        try {
+            Integer actionPartitions = partitions(actionsTopic);
+            if (Objects.isNull(actionPartitions)) {
+                log.warn("Topic {} does not exist yet, changelog partitions are not validated", actionsTopic);
+                return;
+            }
+            Integer changelogPartitions = partitions(changelogTopic);
+            int expected = Objects.nonNull(changelogPartitions)
+                    ? changelogPartitions
+                    : kafkaProperties.getChangelog().getPartitions();
+            if (expected != actionPartitions) {
+                log.error("Changelog {} has {} partitions, topic {} has {}",
+                        changelogTopic, expected, actionsTopic, actionPartitions);
+                throw new IllegalStateException("Changelog " + changelogTopic + " has " + expected
+                        + " partitions, topic " + actionsTopic + " has " + actionPartitions);
+            }
+        } catch (KafkaException e) {
+            log.warn("Changelog partitions are not validated: {}", e.getMessage());
+        }
+    }
+
+    // Число партиций топика или null, если топика нет
+    private Integer partitions(String topic) {
+        try {
+            return kafkaAdmin.describeTopics(topic).get(topic).partitions().size();
+        } catch (KafkaException e) {
+            if (e.getCause() instanceof ExecutionException cause
+                    && cause.getCause() instanceof UnknownTopicOrPartitionException) {
+                return null;
+            }
+            throw e;
+        }
+    }
+}
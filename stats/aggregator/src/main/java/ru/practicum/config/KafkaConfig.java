@@ -1,27 +1,51 @@
 package ru.practicum.config;
 
 import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.TopicBuilder;
 import org.springframework.kafka.core.*;
+import org.springframework.kafka.transaction.KafkaTransactionManager;
 import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.kafka.StateRestoringAfterRollbackProcessor;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 
 @Configuration
 public class KafkaConfig {
     private final KafkaProperties kafkaProperties;
+    private final AggregatorProperties aggregatorProperties;
 
-    public KafkaConfig(KafkaProperties kafkaProperties) {
+    public KafkaConfig(KafkaProperties kafkaProperties, AggregatorProperties aggregatorProperties) {
         this.kafkaProperties = kafkaProperties;
+        this.aggregatorProperties = aggregatorProperties;
     }
 
     @Bean
     public ProducerFactory<String, SpecificRecordBase> producerFactory() {
         Map<String, Object> props = flattenMap(kafkaProperties.getProducer().getProperties());
-        return new DefaultKafkaProducerFactory<>(props);
+        DefaultKafkaProducerFactory<String, SpecificRecordBase> factory = new DefaultKafkaProducerFactory<>(props);
+        if (isTransactional()) {
+            factory.setTransactionIdPrefix(kafkaProperties.getProducer().getTransactionIdPrefix());
+        }
+        return factory;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "kafka.producer.transaction-id-prefix")
+    public KafkaTransactionManager<String, SpecificRecordBase> kafkaTransactionManager(
+            ProducerFactory<String, SpecificRecordBase> producerFactory) {
+        return new KafkaTransactionManager<>(producerFactory);
     }
 
     @Bean
@@ -37,13 +61,67 @@ public class KafkaConfig {
 
     @Bean
     public ConcurrentKafkaListenerContainerFactory<String, UserActionAvro> kafkaListenerContainerFactory(
-            ConsumerFactory<String, UserActionAvro> consumerFactory) {
+            ConsumerFactory<String, UserActionAvro> consumerFactory,
+            ObjectProvider<KafkaTransactionManager<String, SpecificRecordBase>> kafkaTransactionManager,
+            StateRestoringAfterRollbackProcessor afterRollbackProcessor) {
         ConcurrentKafkaListenerContainerFactory<String, UserActionAvro> factory =
                 new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory);
+        // В пакетном режиме записи одного poll обрабатываются вместе: одна транзакция на пачку,
+        // смещения пачки фиксируются в той же транзакции, что и рассчитанные сходства
+        factory.setBatchListener(aggregatorProperties.getListener().getMode() == AggregatorProperties.ListenerMode.BATCH);
+        // После отката транзакции состояние затронутых партиций восстанавливается из зафиксированного changelog
+        // или снимка, поэтому повторно доставленные записи пересчитываются заново
+        kafkaTransactionManager.ifAvailable(transactionManager -> {
+            factory.getContainerProperties().setKafkaAwareTransactionManager(transactionManager);
+            factory.setAfterRollbackProcessor(afterRollbackProcessor);
+        });
+        // С интервалом отправки простаивающий контейнер публикует событие, по которому отправляются отложенные оценки
+        Duration flushInterval = aggregatorProperties.getEmission().getFlushInterval();
+        if (flushInterval.isPositive()) {
+            factory.getContainerProperties().setIdleEventInterval(flushInterval.toMillis());
+        }
+        // По одному потоку-обработчику на партицию топика действий
+        if (Objects.nonNull(kafkaProperties.getConsumer().getConcurrency())) {
+            factory.setConcurrency(kafkaProperties.getConsumer().getConcurrency());
+        }
         return factory;
     }
 
+    @Bean
+    public KafkaAdmin kafkaAdmin() {
+        Map<String, Object> producerProps = flattenMap(kafkaProperties.getProducer().getProperties());
+        return new KafkaAdmin(Map.of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG,
+                producerProps.get(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG)));
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "kafka.changelog.enabled", havingValue = "true")
+    public NewTopic changelogTopic() {
+        KafkaProperties.ChangelogConfig changelog = kafkaProperties.getChangelog();
+        return TopicBuilder.name(changelog.getTopic())
+                .partitions(changelog.getPartitions())
+                .replicas(changelog.getReplicas())
+                .compact()
+                .build();
+    }
+
+    // Потребитель для восстановления состояния из changelog: партиции назначаются вручную, без группы.
+    // Значения читаются байтами и декодируются восстановителем в переиспользуемую запись
+    @Bean
+    public ConsumerFactory<String, byte[]> changelogConsumerFactory() {
+        Map<String, Object> props = flattenMap(kafkaProperties.getConsumer().getProperties());
+        props.remove(ConsumerConfig.GROUP_ID_CONFIG);
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        props.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+        return new DefaultKafkaConsumerFactory<>(props);
+    }
+
+    private boolean isTransactional() {
+        return Objects.nonNull(kafkaProperties.getProducer().getTransactionIdPrefix());
+    }
+
     //Для правильного маппинга из application.yaml
     private Map<String, Object> flattenMap(Map<String, Object> source) {
         Map<String, Object> result = new HashMap<>();
@@ -14,6 +14,7 @@ import java.util.Map;
 public class KafkaProperties {
     private ConsumerConfig consumer;
     private ProducerConfig producer;
+    private ChangelogConfig changelog = new ChangelogConfig();
 
     @Getter
     @Setter
@@ -21,6 +22,7 @@ public class KafkaProperties {
     public static class ConsumerConfig {
         private Map<String, Object> properties;
         private String topic;
+        private Integer concurrency;
     }
 
     @Getter
@@ -29,5 +31,20 @@ public class KafkaProperties {
     public static class ProducerConfig {
         private Map<String, Object> properties;
         private String topic;
+        // Если задан, продюсер транзакционный, а смещения фиксируются в той же транзакции, что и отправка.
+        // Состояние в памяти при откате транзакции восстанавливается только из changelog или снимков
+        private String transactionIdPrefix;
     }
-}
\ No newline at end of file
+
+    // Компактируемый топик изменений состояния агрегатора; партиции совпадают с партициями топика действий
+    // (проверяется при запуске, см. ChangelogPartitionsValidator)
+    @Getter
+    @Setter
+    @ToString
+    public static class ChangelogConfig {
+        private boolean enabled;
+        private String topic;
+        private int partitions = 1;
+        private short replicas = 1;
+    }
+}
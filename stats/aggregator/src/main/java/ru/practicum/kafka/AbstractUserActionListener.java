@@ -0,0 +1,73 @@
+package ru.practicum.kafka;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.event.ListenerContainerIdleEvent;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.service.AggregatorCheckpointService;
+import ru.practicum.service.SimilarityEmitter;
+import ru.practicum.service.SimilarityEngine;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+
+// Общая обработка действий пользователей для поштучного и пакетного режимов слушателя
+@Slf4j
+public abstract class AbstractUserActionListener implements ConsumerSeekAware {
+
+    protected final SimilarityEngine similarityEngine;
+    protected final SimilarityEmitter similarityEmitter;
+    protected final AggregatorCheckpointService checkpointService;
+
+    protected AbstractUserActionListener(SimilarityEngine similarityEngine,
+                                         SimilarityEmitter similarityEmitter,
+                                         AggregatorCheckpointService checkpointService) {
+        this.similarityEngine = similarityEngine;
+        this.similarityEmitter = similarityEmitter;
+        this.checkpointService = checkpointService;
+    }
+
+    protected void process(ConsumerRecord<String, UserActionAvro> record) {
+        if (log.isDebugEnabled()) {
+            log.debug("Received event from partition {}: {}", record.partition(), record.value());
+        }
+        // Оценки передаются в буфер отправки напрямую, без промежуточного списка и записей Avro
+        similarityEngine.updateState(record.value(), record.partition(), similarityEmitter.sink(record.partition()));
+        checkpointService.onRecordProcessed(record.topic(), record.partition(), record.offset());
+    }
+
+    // Восстановление синхронное и должно укладываться в max.poll.interval.ms (см. KafkaChangelogRestorer)
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        assignments.keySet().forEach(topicPartition -> {
+            Long offset = checkpointService.restore(topicPartition.topic(), topicPartition.partition());
+            if (Objects.nonNull(offset)) {
+                callback.seek(topicPartition.topic(), topicPartition.partition(), offset);
+            }
+        });
+    }
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        partitions.forEach(topicPartition -> {
+            // Отложенные оценки отправляются сразу: партиция может перейти к другому экземпляру
+            similarityEmitter.flush(topicPartition.partition());
+            similarityEmitter.flushBeforeCommit(topicPartition.partition());
+            checkpointService.release(topicPartition.topic(), topicPartition.partition());
+        });
+    }
+
+    // Обработчик не вызывается для партиций без новых записей: их отложенные оценки отправляются по событию простоя
+    // (публикуется потоком потребителя, если задан aggregator.emission.flush-interval)
+    @EventListener
+    public void onContainerIdle(ListenerContainerIdleEvent event) {
+        Collection<TopicPartition> partitions = event.getTopicPartitions();
+        if (Objects.nonNull(partitions)) {
+            similarityEmitter.flushIdle(partitions.stream().map(TopicPartition::partition).toList());
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package ru.practicum.kafka;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Service;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.service.AggregatorCheckpointService;
+import ru.practicum.service.SimilarityEmitter;
+import ru.practicum.service.SimilarityEngine;
+import ru.practicum.service.SimilarityWindow;
+import ru.practicum.service.WeightDecay;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Пакетный режим: записи одного poll обрабатываются вместе (и в транзакционном режиме фиксируются одной транзакцией).
+// Внутри пачки действия схлопываются до максимального сохраняемого веса по паре (пользователь, мероприятие),
+// поэтому сходства для пары пересчитываются не более одного раза за пачку
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "aggregator.listener.mode", havingValue = "batch", matchIfMissing = true)
+public class KafkaBatchTopicListener extends AbstractUserActionListener {
+
+    private final WeightDecay weightDecay;
+    private final SimilarityWindow window;
+
+    public KafkaBatchTopicListener(SimilarityEngine similarityEngine,
+                                   SimilarityEmitter similarityEmitter,
+                                   AggregatorCheckpointService checkpointService,
+                                   WeightDecay weightDecay,
+                                   SimilarityWindow window) {
+        super(similarityEngine, similarityEmitter, checkpointService);
+        this.weightDecay = weightDecay;
+        this.window = window;
+    }
+
+    @KafkaListener(topics = "${kafka.consumer.topic}",
+            groupId = "aggregator-group",
+            containerFactory = "kafkaListenerContainerFactory")
+    public void handleEvents(List<ConsumerRecord<String, UserActionAvro>> records) {
+        List<ConsumerRecord<String, UserActionAvro>> deduplicated = deduplicate(records);
+        log.debug("Received {} events, {} after deduplication", records.size(), deduplicated.size());
+        deduplicated.forEach(this::process);
+
+        // Смещение партиции продвигается за последнюю запись пачки, даже если она была отброшена как дубликат
+        Map<Integer, ConsumerRecord<String, UserActionAvro>> lastRecords = new HashMap<>();
+        records.forEach(record -> lastRecords.merge(record.partition(), record,
+                (current, candidate) -> candidate.offset() > current.offset() ? candidate : current));
+        lastRecords.values().forEach(record ->
+                checkpointService.onBatchProcessed(record.topic(), record.partition(), record.offset()));
+
+        // Объединённые обновления отправляются до фиксации смещений пачки
+        similarityEmitter.flushBeforeCommit(lastRecords.keySet());
+    }
+
+    // Оставляет для каждой пары (пользователь, мероприятие) действие с максимальным весом, в порядке смещений.
+    // При затухании вес масштабируется ко времени действия, как при сохранении: позднее действие меньшего типа
+    // может весить больше раннего. В режиме окна у каждого бакета свои веса, поэтому действия разных бакетов
+    // не схлопываются
+    List<ConsumerRecord<String, UserActionAvro>> deduplicate(List<ConsumerRecord<String, UserActionAvro>> records) {
+        Map<ActionKey, ConsumerRecord<String, UserActionAvro>> strongest = new HashMap<>(records.size() * 2);
+        for (ConsumerRecord<String, UserActionAvro> record : records) {
+            UserActionAvro action = record.value();
+            long bucket = window.isEnabled() ? window.bucketOf(action.getTimestamp()) : 0;
+            ActionKey key = new ActionKey(record.partition(), action.getUserId(), action.getEventId(), bucket);
+            strongest.merge(key, record, (current, candidate) -> isStronger(candidate, current) ? candidate : current);
+        }
+        List<ConsumerRecord<String, UserActionAvro>> result = new ArrayList<>(strongest.values());
+        result.sort(Comparator.comparingLong(ConsumerRecord::offset));
+        return result;
+    }
+
+    // Веса сравниваются относительно времени текущего действия: множитель к общей точке отсчёта мог бы переполниться
+    private boolean isStronger(ConsumerRecord<String, UserActionAvro> candidate, ConsumerRecord<String, UserActionAvro> current) {
+        UserActionAvro candidateAction = candidate.value();
+        UserActionAvro currentAction = current.value();
+        double candidateWeight = weightDecay.relative(SimilarityEngine.getWeightFromActionType(candidateAction.getActionType()),
+                candidateAction.getTimestamp(), currentAction.getTimestamp());
+        return candidateWeight > SimilarityEngine.getWeightFromActionType(currentAction.getActionType());
+    }
+
+    private record ActionKey(int partition, long userId, long eventId, long bucket) {
+    }
+}
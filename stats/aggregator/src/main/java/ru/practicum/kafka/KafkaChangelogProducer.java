@@ -0,0 +1,96 @@
+package ru.practicum.kafka;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+import ru.practicum.config.KafkaProperties;
+import ru.practicum.ewm.stats.avro.AggregatorStateAvro;
+import ru.practicum.ewm.stats.avro.AggregatorStateTypeAvro;
+import ru.practicum.service.PartitionState;
+import ru.practicum.service.SimilarityDelta;
+import ru.practicum.service.state.AggregatorStateStore;
+
+import java.util.Objects;
+
+// Публикует изменённые значения состояния партиции в компактируемый changelog-топик.
+// Ключ записи однозначно определяет элемент состояния, поэтому после компакции остаётся только последнее значение.
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class KafkaChangelogProducer {
+    static final String OFFSET_KEY = "o";
+    static final String PAIR_KEY_PREFIX = "p:";
+
+    private final KafkaTemplate<String, SpecificRecordBase> kafkaTemplate;
+    private final KafkaProperties kafkaProperties;
+
+    public boolean isEnabled() {
+        return kafkaProperties.getChangelog().isEnabled();
+    }
+
+    public void send(int partition, SimilarityDelta delta, PartitionState state) {
+        AggregatorStateStore store = state.getStore();
+        if (state.isRescaled()) {
+            // После переноса точки отсчёта затухания изменились все значения партиции
+            sendAll(partition, store);
+        } else if (delta.isApplied()) {
+            sendChanges(partition, delta, store);
+        }
+        // Вытесненные пары удаляются из changelog tombstone-записями
+        for (int i = 0; i < delta.getRemovedSize(); i++) {
+            String key = pairKey(delta.getRemovedFirst()[i], delta.getRemovedSecond()[i]);
+            kafkaTemplate.send(kafkaProperties.getChangelog().getTopic(), partition, key, null);
+        }
+        // Смещение публикуется последним: при восстановлении чтение продолжится сразу после учтённых записей
+        sendOffset(partition, state);
+    }
+
+    private void sendAll(int partition, AggregatorStateStore store) {
+        store.forEachWeight((userId, eventId, weight) -> send(partition, "w:" + userId + ":" + eventId,
+                AggregatorStateTypeAvro.USER_WEIGHT, userId, eventId, weight));
+        store.forEachEventWeightSum((eventId, sum) -> send(partition, "s:" + eventId,
+                AggregatorStateTypeAvro.EVENT_WEIGHT_SUM, eventId, 0, sum));
+        store.forEachMinWeightsSum((first, second, sum) -> send(partition, pairKey(first, second),
+                AggregatorStateTypeAvro.MIN_WEIGHTS_SUM, first, second, sum));
+    }
+
+    private void sendChanges(int partition, SimilarityDelta delta, AggregatorStateStore store) {
+        long eventId = delta.getEventId();
+        send(partition, "w:" + delta.getUserId() + ":" + eventId,
+                AggregatorStateTypeAvro.USER_WEIGHT, delta.getUserId(), eventId, delta.getWeight());
+        send(partition, "s:" + eventId,
+                AggregatorStateTypeAvro.EVENT_WEIGHT_SUM, eventId, 0, store.getEventWeightSum(eventId));
+        for (int i = 0; i < delta.getSize(); i++) {
+            long first = Math.min(eventId, delta.getOtherEvents()[i]);
+            long second = Math.max(eventId, delta.getOtherEvents()[i]);
+            send(partition, pairKey(first, second),
+                    AggregatorStateTypeAvro.MIN_WEIGHTS_SUM, first, second, store.getMinWeightsSum(first, second));
+        }
+    }
+
+    // Вместе со смещением публикуется сдвиг точки отсчёта затухания, к которому масштабированы значения
+    public void sendOffset(int partition, PartitionState state) {
+        send(partition, OFFSET_KEY, AggregatorStateTypeAvro.OFFSET, state.getNextOffset(), state.getDecayShift(), 0.0);
+    }
+
+    private void send(int partition, String key, AggregatorStateTypeAvro type, long first, long second, double value) {
+        AggregatorStateAvro record = AggregatorStateAvro.newBuilder()
+                .setType(type)
+                .setFirst(first)
+                .setSecond(second)
+                .setValue(value)
+                .build();
+        kafkaTemplate.send(kafkaProperties.getChangelog().getTopic(), partition, key, record)
+                .whenComplete((result, ex) -> {
+                    if (Objects.nonNull(ex)) {
+                        log.error("Failed to send changelog record {}: {}", key, record, ex);
+                    }
+                });
+    }
+
+    static String pairKey(long first, long second) {
+        return PAIR_KEY_PREFIX + first + ":" + second;
+    }
+}
@@ -0,0 +1,102 @@
+package ru.practicum.kafka;
+
+import kafka.deserialization.AggregatorStateDeserializer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.stereotype.Service;
+import ru.practicum.config.KafkaProperties;
+import ru.practicum.ewm.stats.avro.AggregatorStateAvro;
+import ru.practicum.service.PartitionState;
+import ru.practicum.service.state.AggregatorStateStore;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+
+// Восстанавливает состояние партиции, дочитывая соответствующую партицию changelog-топика до конца.
+// Вызывается в потоке потребителя при назначении партиций: пока восстановление не закончено, poll не вызывается,
+// поэтому время восстановления всех назначенных партиций должно укладываться в max.poll.interval.ms.
+// Иначе потребитель исключается из группы, и перебалансировка повторяется. Время пишется в лог после каждой партиции
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class KafkaChangelogRestorer {
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(500);
+
+    private final ConsumerFactory<String, byte[]> changelogConsumerFactory;
+    private final KafkaProperties kafkaProperties;
+    // Записи changelog применяются сразу после чтения, поэтому декодируются в одну переиспользуемую запись
+    private final AggregatorStateDeserializer deserializer = new AggregatorStateDeserializer();
+
+    // Возвращает восстановленное состояние или null, если changelog партиции пуст
+    public PartitionState restore(int partition) {
+        TopicPartition topicPartition = new TopicPartition(kafkaProperties.getChangelog().getTopic(), partition);
+        long started = System.nanoTime();
+        long records = 0;
+        PartitionState state = new PartitionState();
+        AggregatorStateAvro reuse = new AggregatorStateAvro();
+        try (Consumer<String, byte[]> consumer = changelogConsumerFactory.createConsumer()) {
+            consumer.assign(List.of(topicPartition));
+            consumer.seekToBeginning(List.of(topicPartition));
+            long endOffset = consumer.endOffsets(List.of(topicPartition)).get(topicPartition);
+            while (consumer.position(topicPartition) < endOffset) {
+                for (ConsumerRecord<String, byte[]> record : consumer.poll(POLL_TIMEOUT)) {
+                    if (Objects.nonNull(record.value())) {
+                        apply(state, deserializer.deserialize(record.topic(), record.headers(), record.value(), reuse));
+                    } else {
+                        remove(state, record.key());
+                    }
+                    records++;
+                }
+            }
+        }
+        long elapsedMillis = Duration.ofNanos(System.nanoTime() - started).toMillis();
+        log.info("Restored partition {} from changelog: records={}, weights={}, pairs={}, time={} ms",
+                partition, records, state.getStore().weightCount(), state.getStore().pairCount(), elapsedMillis);
+        return records == 0 ? null : state;
+    }
+
+    // Tombstone-запись: пара вытеснена из состояния в режиме top-K
+    private void remove(PartitionState state, String key) {
+        if (Objects.isNull(key) || !key.startsWith(KafkaChangelogProducer.PAIR_KEY_PREFIX)) {
+            return;
+        }
+        String[] events = key.substring(KafkaChangelogProducer.PAIR_KEY_PREFIX.length()).split(":");
+        state.getStore().removeMinWeightsSum(Long.parseLong(events[0]), Long.parseLong(events[1]));
+    }
+
+    private void apply(PartitionState state, AggregatorStateAvro record) {
+        AggregatorStateStore store = state.getStore();
+        switch (record.getType()) {
+            case USER_WEIGHT -> putWeight(store, record);
+            case EVENT_WEIGHT_SUM -> store.putEventWeightSum(record.getFirst(), record.getValue());
+            case MIN_WEIGHTS_SUM -> putMinWeightsSum(store, record);
+            case OFFSET -> {
+                state.setNextOffset(record.getFirst());
+                state.setDecayShift(record.getSecond());
+            }
+            default -> throw new IllegalArgumentException("Unknown state record type: " + record.getType());
+        }
+    }
+
+    // Нулевой вес или сумма означают, что значение удалено как затухшее
+    private void putWeight(AggregatorStateStore store, AggregatorStateAvro record) {
+        if (record.getValue() > 0) {
+            store.putWeight(record.getFirst(), record.getSecond(), record.getValue());
+        } else {
+            store.removeWeight(record.getFirst(), record.getSecond());
+        }
+    }
+
+    private void putMinWeightsSum(AggregatorStateStore store, AggregatorStateAvro record) {
+        if (record.getValue() > 0) {
+            store.putMinWeightsSum(record.getFirst(), record.getSecond(), record.getValue());
+        } else {
+            store.removeMinWeightsSum(record.getFirst(), record.getSecond());
+        }
+    }
+}
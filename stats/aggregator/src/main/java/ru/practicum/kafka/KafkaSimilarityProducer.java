@@ -6,6 +6,7 @@ import org.apache.avro.specific.SpecificRecordBase;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 import ru.practicum.config.KafkaProperties;
+import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
 
 import java.util.Objects;
 
@@ -18,9 +19,27 @@ public class KafkaSimilarityProducer {
     private final KafkaTemplate<String, SpecificRecordBase> kafkaTemplate;
     private final KafkaProperties kafkaProperties;
 
-    public void send(SpecificRecordBase snapshot) {
+    public boolean isTransactional() {
+        return kafkaTemplate.isTransactional();
+    }
+
+    public void flush() {
+        kafkaTemplate.flush();
+    }
+
+    // Отправки внутри action выполняются в отдельной транзакции продюсера
+    public void executeInTransaction(Runnable action) {
+        kafkaTemplate.executeInTransaction(operations -> {
+            action.run();
+            return null;
+        });
+    }
+
+    // Ключ по паре мероприятий: все обновления пары попадают в одну партицию и читаются в порядке отправки
+    public void send(EventSimilarityAvro snapshot) {
         String topic = kafkaProperties.getProducer().getTopic();
-        kafkaTemplate.send(topic, snapshot).whenComplete((result, ex) -> {
+        String key = snapshot.getEventA() + ":" + snapshot.getEventB();
+        kafkaTemplate.send(topic, key, snapshot).whenComplete((result, ex) -> {
             if (Objects.nonNull(ex)) {
                 log.error("Failed to send snapshot to Kafka: {}", snapshot, ex);
             } else if (result != null) {
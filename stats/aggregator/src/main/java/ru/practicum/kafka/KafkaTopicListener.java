@@ -1,33 +1,32 @@
 package ru.practicum.kafka;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Service;
-import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
 import ru.practicum.ewm.stats.avro.UserActionAvro;
-import ru.practicum.service.UserActionAggregator;
+import ru.practicum.service.AggregatorCheckpointService;
+import ru.practicum.service.SimilarityEmitter;
+import ru.practicum.service.SimilarityEngine;
 
-import java.util.List;
-
-@Service
-@RequiredArgsConstructor
+// Поштучный режим: каждая запись обрабатывается (и в транзакционном режиме фиксируется) отдельно
 @Slf4j
-public class KafkaTopicListener {
+@Service
+@ConditionalOnProperty(name = "aggregator.listener.mode", havingValue = "record")
+public class KafkaTopicListener extends AbstractUserActionListener {
 
-    private final UserActionAggregator userActionAggregator;
-    private final KafkaSimilarityProducer kafkaSimilarityProducer;
+    public KafkaTopicListener(SimilarityEngine similarityEngine,
+                              SimilarityEmitter similarityEmitter,
+                              AggregatorCheckpointService checkpointService) {
+        super(similarityEngine, similarityEmitter, checkpointService);
+    }
 
     @KafkaListener(topics = "${kafka.consumer.topic}",
             groupId = "aggregator-group",
             containerFactory = "kafkaListenerContainerFactory")
-    public void handleEvent(UserActionAvro userActionAvro) {
-        log.info("Received event: {}", userActionAvro);
-        List<EventSimilarityAvro> similarities = userActionAggregator.updateState(userActionAvro);
-        similarities.forEach(similarity -> {
-            log.info("Similarity calculated for events {} and {}: score={}",
-                    similarity.getEventA(), similarity.getEventB(), similarity.getScore());
-            kafkaSimilarityProducer.send(similarity);
-        });
+    public void handleEvent(ConsumerRecord<String, UserActionAvro> record) {
+        process(record);
+        similarityEmitter.flushBeforeCommit(record.partition());
     }
 }
@@ -0,0 +1,81 @@
+package ru.practicum.kafka;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DefaultAfterRollbackProcessor;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.service.AggregatorCheckpointService;
+import ru.practicum.service.SimilarityEmitter;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Откат транзакции пачки не отменяет изменений состояния в памяти: веса, частичные и общие суммы и буфер
+// отправки остались бы с учётом откатанных записей, а при повторной доставке эти записи уже ничего не меняют.
+// Перед повторной доставкой состояние затронутых партиций загружается из последнего зафиксированного
+// changelog (или снимка), а чтение продолжается с его смещения
+@Slf4j
+@Component
+public class StateRestoringAfterRollbackProcessor extends DefaultAfterRollbackProcessor<String, UserActionAvro> {
+
+    private final AggregatorCheckpointService checkpointService;
+    private final SimilarityEmitter similarityEmitter;
+
+    public StateRestoringAfterRollbackProcessor(AggregatorCheckpointService checkpointService,
+                                                SimilarityEmitter similarityEmitter) {
+        this.checkpointService = checkpointService;
+        this.similarityEmitter = similarityEmitter;
+    }
+
+    @Override
+    public void process(List<ConsumerRecord<String, UserActionAvro>> records, Consumer<String, UserActionAvro> consumer,
+                        MessageListenerContainer container, Exception exception, boolean recoverable,
+                        ContainerProperties.EOSMode eosMode) {
+        Map<TopicPartition, Long> restored = restore(records);
+        super.process(records, consumer, container, exception, recoverable, eosMode);
+        seekBehind(restored, records, consumer);
+    }
+
+    @Override
+    public void processBatch(ConsumerRecords<String, UserActionAvro> records,
+                             List<ConsumerRecord<String, UserActionAvro>> recordList,
+                             Consumer<String, UserActionAvro> consumer, MessageListenerContainer container,
+                             Exception exception, boolean recoverable, ContainerProperties.EOSMode eosMode) {
+        Map<TopicPartition, Long> restored = restore(recordList);
+        super.processBatch(records, recordList, consumer, container, exception, recoverable, eosMode);
+        seekBehind(restored, recordList, consumer);
+    }
+
+    // Возвращает смещения, с которых продолжается чтение восстановленных партиций
+    private Map<TopicPartition, Long> restore(List<ConsumerRecord<String, UserActionAvro>> records) {
+        Map<TopicPartition, Long> restored = new LinkedHashMap<>();
+        records.forEach(record -> restored.putIfAbsent(new TopicPartition(record.topic(), record.partition()), null));
+        restored.replaceAll((topicPartition, ignored) -> {
+            similarityEmitter.discard(topicPartition.partition());
+            return checkpointService.rollback(topicPartition.topic(), topicPartition.partition());
+        });
+        log.warn("Transaction rolled back, restored state of partitions {}", restored.keySet());
+        return restored;
+    }
+
+    // С changelog восстановленное смещение совпадает с зафиксированным, и позиции, выставленные базовым
+    // обработчиком, не меняются. Снимок может отставать: тогда чтение продолжается со смещения снимка
+    private void seekBehind(Map<TopicPartition, Long> restored, List<ConsumerRecord<String, UserActionAvro>> records,
+                            Consumer<String, UserActionAvro> consumer) {
+        Map<TopicPartition, Long> firstOffsets = new LinkedHashMap<>();
+        records.forEach(record -> firstOffsets.putIfAbsent(new TopicPartition(record.topic(), record.partition()),
+                record.offset()));
+        restored.forEach((topicPartition, offset) -> {
+            if (offset != null && offset < firstOffsets.get(topicPartition)) {
+                consumer.seek(topicPartition, offset);
+            }
+        });
+    }
+}
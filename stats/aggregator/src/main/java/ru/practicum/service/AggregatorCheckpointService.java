@@ -0,0 +1,162 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.config.AggregatorProperties;
+import ru.practicum.kafka.KafkaChangelogProducer;
+import ru.practicum.kafka.KafkaChangelogRestorer;
+import ru.practicum.service.snapshot.AggregatorSnapshotStore;
+
+import java.time.Instant;
+
+// Сохранение состояния партиций: периодические локальные снимки и changelog-топик.
+// При назначении партиции состояние загружается из changelog (если он включён) или из снимка,
+// а чтение продолжается с сохранённого смещения, поэтому время восстановления не зависит от истории топика.
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AggregatorCheckpointService {
+
+    private final UserActionAggregator userActionAggregator;
+    private final AggregatorSnapshotStore snapshotStore;
+    private final AggregatorProperties aggregatorProperties;
+    private final KafkaChangelogProducer changelogProducer;
+    private final KafkaChangelogRestorer changelogRestorer;
+
+    // Вызывается потоком партиции после обработки каждой записи
+    public void onRecordProcessed(String topic, int partition, long offset) {
+        PartitionState state = userActionAggregator.getPartition(partition);
+        if (state == null || !isCheckpointed()) {
+            return;
+        }
+        state.setNextOffset(offset + 1);
+        SimilarityDelta delta = state.getDelta();
+        if (changelogProducer.isEnabled() && (delta.isApplied() || delta.getRemovedSize() > 0 || state.isRescaled())) {
+            changelogProducer.send(partition, delta, state);
+        }
+        state.setRescaled(false);
+        pruneIfDue(partition, state);
+        snapshotIfDue(topic, partition, state);
+    }
+
+    // Вызывается после пачки, часть записей которой отброшена при дедупликации: смещение продвигается
+    // за последнюю запись пачки без изменения состояния
+    public void onBatchProcessed(String topic, int partition, long lastOffset) {
+        PartitionState state = userActionAggregator.getPartition(partition);
+        if (state == null || !isCheckpointed() || state.getNextOffset() > lastOffset) {
+            return;
+        }
+        state.setNextOffset(lastOffset + 1);
+        if (changelogProducer.isEnabled()) {
+            changelogProducer.sendOffset(partition, state);
+        }
+        snapshotIfDue(topic, partition, state);
+    }
+
+    // Удаление затухших весов выполняется потоком партиции; изменения попадают в changelog
+    private void pruneIfDue(int partition, PartitionState state) {
+        AggregatorProperties.DecayConfig decay = aggregatorProperties.getDecay();
+        long now = System.currentTimeMillis();
+        if (!decay.isEnabled() || now - state.getLastPruneMillis() < decay.getPruneInterval().toMillis()) {
+            return;
+        }
+        state.setLastPruneMillis(now);
+        userActionAggregator.prune(partition, Instant.ofEpochMilli(now), delta -> {
+            if (changelogProducer.isEnabled()) {
+                changelogProducer.send(partition, delta, state);
+            }
+        });
+    }
+
+    private void snapshotIfDue(String topic, int partition, PartitionState state) {
+        if (!isSnapshotEnabled() || state.isSnapshotPending()) {
+            return;
+        }
+        if (System.currentTimeMillis() - state.getLastSnapshotMillis() < aggregatorProperties.getSnapshot().getInterval().toMillis()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            writeSnapshot(topic, partition, state);
+            return;
+        }
+        // Смещение в снимке должно быть зафиксировано: снимок пишется после фиксации транзакции пачки
+        // (состояние к этому моменту соответствует ей целиком), при откате не пишется
+        state.setSnapshotPending(true);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                state.setSnapshotPending(false);
+                if (status == STATUS_COMMITTED && userActionAggregator.getPartition(partition) == state) {
+                    writeSnapshot(topic, partition, state);
+                }
+            }
+        });
+    }
+
+    private void writeSnapshot(String topic, int partition, PartitionState state) {
+        snapshotStore.write(topic, partition, state);
+        state.setLastSnapshotMillis(System.currentTimeMillis());
+    }
+
+    // Восстанавливает состояние партиции; возвращает смещение, с которого нужно продолжить чтение, или null
+    public Long restore(String topic, int partition) {
+        if (!isCheckpointed()) {
+            return null;
+        }
+        PartitionState state;
+        if (changelogProducer.isEnabled()) {
+            state = changelogRestorer.restore(partition);
+        } else if (isSnapshotEnabled()) {
+            state = snapshotStore.read(topic, partition);
+        } else {
+            return null;
+        }
+        if (state == null || state.getNextOffset() < 0) {
+            log.warn("No saved state for partition {} of {}, starting from committed offset", partition, topic);
+            return null;
+        }
+        userActionAggregator.restorePartition(partition, state);
+        log.info("Partition {} of {} restored, seeking to offset {}", partition, topic, state.getNextOffset());
+        return state.getNextOffset();
+    }
+
+    // Вызывается после отката транзакции: изменения состояния партиции, внесённые откатанными записями,
+    // отменяются загрузкой последнего зафиксированного состояния. Возвращает смещение, с которого нужно
+    // продолжить чтение, или null. Состояние, которое не сохраняется, откатить нельзя
+    public Long rollback(String topic, int partition) {
+        if (!isCheckpointed() || (!isSnapshotEnabled() && !changelogProducer.isEnabled())) {
+            log.warn("State of partition {} of {} is not checkpointed and keeps changes of the rolled back transaction",
+                    partition, topic);
+            return null;
+        }
+        Long offset = restore(topic, partition);
+        if (offset == null) {
+            // Сохранённого состояния нет: партиция продолжает с пустым состоянием, как при первом запуске
+            userActionAggregator.releasePartition(partition);
+        }
+        return offset;
+    }
+
+    // Сохраняет снимок отзываемой партиции и освобождает её состояние
+    public void release(String topic, int partition) {
+        if (!isCheckpointed() || (!isSnapshotEnabled() && !changelogProducer.isEnabled())) {
+            return;
+        }
+        PartitionState state = userActionAggregator.releasePartition(partition);
+        if (isSnapshotEnabled() && state != null && state.getNextOffset() >= 0) {
+            snapshotStore.write(topic, partition, state);
+        }
+    }
+
+    private boolean isSnapshotEnabled() {
+        return aggregatorProperties.getSnapshot().isEnabled();
+    }
+
+    // Снимки и changelog содержат состояние только точного движка; со скользящим окном они не запускаются
+    private boolean isCheckpointed() {
+        return aggregatorProperties.getEngine() == AggregatorProperties.Engine.EXACT;
+    }
+}
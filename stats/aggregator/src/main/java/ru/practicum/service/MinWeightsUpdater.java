@@ -0,0 +1,37 @@
+package ru.practicum.service;
+
+import ru.practicum.service.state.AggregatorStateStore;
+import ru.practicum.service.state.LongDoubleConsumer;
+
+// Пересчёт частичных сумм минимальных весов для мероприятий пользователя при изменении его веса.
+// Один экземпляр на партицию: обход не создаёт лямбду с захваченными переменными на каждое действие
+final class MinWeightsUpdater implements LongDoubleConsumer {
+    private final SimilarityDelta delta;
+    private AggregatorStateStore store;
+    private long eventId;
+    private double currentWeight;
+    private double newWeight;
+
+    MinWeightsUpdater(SimilarityDelta delta) {
+        this.delta = delta;
+    }
+
+    void update(AggregatorStateStore store, long userId, long eventId, double currentWeight, double newWeight) {
+        this.store = store;
+        this.eventId = eventId;
+        this.currentWeight = currentWeight;
+        this.newWeight = newWeight;
+        store.forEachUserEvent(userId, this);
+        this.store = null;
+    }
+
+    @Override
+    public void accept(long eventB, double weightB) {
+        if (eventB == eventId) {
+            return;
+        }
+        double minSumDiff = Math.min(newWeight, weightB) - Math.min(currentWeight, weightB);
+        store.addMinWeightsSum(Math.min(eventId, eventB), Math.max(eventId, eventB), minSumDiff);
+        delta.addPair(eventB, minSumDiff);
+    }
+}
@@ -0,0 +1,55 @@
+package ru.practicum.service;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import ru.practicum.service.state.AggregatorStateStore;
+import ru.practicum.service.state.LongObjectHashMap;
+import ru.practicum.service.state.PrimitiveAggregatorStateStore;
+
+// Веса пользователей и частичные суммы одной партиции топика действий.
+// Используется только потоком, которому назначена партиция.
+@Getter
+public class PartitionState {
+    private final AggregatorStateStore store;
+    private final SimilarityDelta delta = new SimilarityDelta();
+    @Getter(AccessLevel.PACKAGE)
+    private final MinWeightsUpdater minWeightsUpdater = new MinWeightsUpdater(delta);
+    // В режиме скользящего окна: состояния бакетов по номеру бакета
+    private final LongObjectHashMap<AggregatorStateStore> buckets = new LongObjectHashMap<>();
+    @Setter
+    private long newestBucket = Long.MIN_VALUE;
+    // Сдвиг точки отсчёта затухания в периодах полураспада, к которому масштабированы веса и суммы
+    @Setter
+    private long decayShift;
+    // Состояние пересчитано к новому сдвигу и должно быть опубликовано в changelog целиком
+    @Setter
+    private boolean rescaled;
+    // Смещение следующей необработанной записи партиции
+    @Setter
+    private long nextOffset = -1;
+    @Setter
+    private long lastSnapshotMillis;
+    // Снимок запланирован на момент фиксации текущей транзакции
+    @Setter
+    private boolean snapshotPending;
+    @Setter
+    private long lastPruneMillis;
+
+    public PartitionState() {
+        this(new PrimitiveAggregatorStateStore());
+    }
+
+    public PartitionState(AggregatorStateStore store) {
+        this.store = store;
+        this.lastSnapshotMillis = System.currentTimeMillis();
+        this.lastPruneMillis = lastSnapshotMillis;
+    }
+
+    // Удаляет частичную сумму пары из основного состояния и из всех бакетов
+    public boolean removeMinWeightsSum(long first, long second) {
+        boolean[] removed = {store.removeMinWeightsSum(first, second)};
+        buckets.forEach((bucket, bucketStore) -> removed[0] |= bucketStore.removeMinWeightsSum(first, second));
+        return removed[0];
+    }
+}
@@ -0,0 +1,73 @@
+package ru.practicum.service;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+// Изменения частичных сумм, вызванные одним действием пользователя в пределах одной партиции.
+// Переиспользуется обработчиком партиции между действиями.
+@Getter
+public class SimilarityDelta {
+    // Было ли изменено состояние последним обработанным действием
+    private boolean applied;
+    private long userId;
+    private long eventId;
+    private double weight;
+    private double eventWeightDelta;
+    private long[] otherEvents = new long[16];
+    private double[] minWeightsDeltas = new double[16];
+    private double[] scores = new double[16];
+    // Входит ли пара в top-K хотя бы одного из мероприятий и должна ли быть отправлена
+    private boolean[] emitted = new boolean[16];
+    private int size;
+    // Пары, частичные суммы которых удалены из состояния партиции
+    private long[] removedFirst = new long[4];
+    private long[] removedSecond = new long[4];
+    private int removedSize;
+
+    void clear() {
+        this.applied = false;
+        this.size = 0;
+        this.removedSize = 0;
+    }
+
+    void reset(long userId, long eventId, double weight, double eventWeightDelta) {
+        this.applied = true;
+        this.userId = userId;
+        this.eventId = eventId;
+        this.weight = weight;
+        this.eventWeightDelta = eventWeightDelta;
+        this.size = 0;
+    }
+
+    void addPair(long otherEvent, double minWeightsDelta) {
+        if (size == otherEvents.length) {
+            int capacity = size << 1;
+            otherEvents = Arrays.copyOf(otherEvents, capacity);
+            minWeightsDeltas = Arrays.copyOf(minWeightsDeltas, capacity);
+            scores = Arrays.copyOf(scores, capacity);
+            emitted = Arrays.copyOf(emitted, capacity);
+        }
+        otherEvents[size] = otherEvent;
+        minWeightsDeltas[size] = minWeightsDelta;
+        size++;
+    }
+
+    void setScore(int index, double score) {
+        scores[index] = score;
+    }
+
+    void setEmitted(int index, boolean value) {
+        emitted[index] = value;
+    }
+
+    void addRemovedPair(long first, long second) {
+        if (removedSize == removedFirst.length) {
+            removedFirst = Arrays.copyOf(removedFirst, removedSize << 1);
+            removedSecond = Arrays.copyOf(removedSecond, removedSize << 1);
+        }
+        removedFirst[removedSize] = first;
+        removedSecond[removedSize] = second;
+        removedSize++;
+    }
+}
@@ -0,0 +1,215 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ru.practicum.config.AggregatorProperties;
+import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
+import ru.practicum.kafka.KafkaSimilarityProducer;
+import ru.practicum.service.state.LongPairDoubleHashMap;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Отправка обновлений сходства с объединением: для каждой пары (eventA, eventB) в буфере партиции
+// хранится только последняя оценка, буфер сбрасывается в конце пачки (до фиксации её смещений) или при достижении размера.
+// С интервалом отправки оценки зафиксированных пачек переносятся в отложенную часть буфера и отправляются в конце
+// первой пачки после истечения интервала, а простаивающей партиции — по событию простоя контейнера.
+// Откат транзакции отбрасывает только оценки текущей пачки.
+// Буфер хранит оценки в примитивных таблицах: записи Avro создаются только при отправке
+@Slf4j
+@Service
+public class SimilarityEmitter {
+
+    private final KafkaSimilarityProducer kafkaSimilarityProducer;
+    private final AggregatorProperties.EmissionConfig config;
+    private final Map<Integer, CoalesceBuffer> buffers = new ConcurrentHashMap<>();
+    private final Map<Integer, SimilaritySink> sinks = new ConcurrentHashMap<>();
+    private final Counter receivedCounter;
+    private final Counter sentCounter;
+    private final long flushIntervalNanos;
+
+    public SimilarityEmitter(KafkaSimilarityProducer kafkaSimilarityProducer,
+                             AggregatorProperties aggregatorProperties,
+                             MeterRegistry meterRegistry) {
+        this.kafkaSimilarityProducer = kafkaSimilarityProducer;
+        this.config = aggregatorProperties.getEmission();
+        this.flushIntervalNanos = config.getFlushInterval().toNanos();
+        this.receivedCounter = Counter.builder("aggregator.similarity.updates")
+                .description("Similarity updates calculated by the aggregator")
+                .register(meterRegistry);
+        this.sentCounter = Counter.builder("aggregator.similarity.sent")
+                .description("Similarity records sent to Kafka")
+                .register(meterRegistry);
+        Gauge.builder("aggregator.similarity.coalesce.ratio", this, SimilarityEmitter::coalesceRatio)
+                .description("Calculated similarity updates per sent record")
+                .register(meterRegistry);
+    }
+
+    // Вызывается обработчиком после пачки, до фиксации её смещений. В транзакционном режиме отправленное
+    // фиксируется вместе со смещениями; без транзакции продюсер дожидается подтверждения отправки,
+    // иначе смещения могли бы опередить ещё не доставленные оценки
+    public void flushBeforeCommit(Collection<Integer> partitions) {
+        if (config.isCoalesce()) {
+            partitions.forEach(this::flushIfDue);
+        }
+        if (!kafkaSimilarityProducer.isTransactional()) {
+            kafkaSimilarityProducer.flush();
+        }
+    }
+
+    public void flushBeforeCommit(int partition) {
+        flushBeforeCommit(List.of(partition));
+    }
+
+    // Отправляет отложенные оценки простаивающих партиций, у которых истёк интервал. Вызывается вне обработки
+    // пачки, поэтому в транзакционном режиме оценки отправляются в отдельной транзакции
+    public void flushIdle(Collection<Integer> partitions) {
+        if (!config.isCoalesce() || flushIntervalNanos == 0) {
+            return;
+        }
+        if (kafkaSimilarityProducer.isTransactional()) {
+            kafkaSimilarityProducer.executeInTransaction(() -> partitions.forEach(this::flushIfDue));
+        } else {
+            partitions.forEach(this::flushIfDue);
+            kafkaSimilarityProducer.flush();
+        }
+    }
+
+    // Приёмник оценок партиции для SimilarityEngine; создаётся один раз и переиспользуется
+    public SimilaritySink sink(int partition) {
+        return sinks.computeIfAbsent(partition,
+                p -> (eventA, eventB, score, timestamp) -> emit(p, eventA, eventB, score, timestamp));
+    }
+
+    public void emit(int partition, EventSimilarityAvro similarity) {
+        emit(partition, similarity.getEventA(), similarity.getEventB(), similarity.getScore(), similarity.getTimestamp());
+    }
+
+    public void emit(int partition, long eventA, long eventB, double score, Instant timestamp) {
+        receivedCounter.increment();
+        if (!config.isCoalesce()) {
+            send(eventA, eventB, score, timestamp.toEpochMilli());
+            return;
+        }
+        CoalesceBuffer buffer = buffers.computeIfAbsent(partition, p -> new CoalesceBuffer());
+        boolean full;
+        synchronized (buffer) {
+            buffer.scores.put(eventA, eventB, score);
+            buffer.timestamps.put(eventA, eventB, timestamp.toEpochMilli());
+            full = buffer.scores.size() + buffer.carriedScores.size() >= config.getMaxBufferedPairs();
+        }
+        if (full) {
+            flush(partition);
+        }
+    }
+
+    // Отправляет все оценки партиции, включая отложенные, независимо от интервала
+    public void flush(int partition) {
+        CoalesceBuffer buffer = buffers.get(partition);
+        if (buffer == null) {
+            return;
+        }
+        synchronized (buffer) {
+            // Отложенная оценка пары, пересчитанной текущей пачкой, устарела
+            buffer.carriedScores.forEach((eventA, eventB, score) -> {
+                if (!buffer.scores.containsKey(eventA, eventB)) {
+                    send(eventA, eventB, score, (long) buffer.carriedTimestamps.get(eventA, eventB, 0.0));
+                }
+            });
+            buffer.scores.forEach((eventA, eventB, score) ->
+                    send(eventA, eventB, score, (long) buffer.timestamps.get(eventA, eventB, 0.0)));
+            buffer.clear();
+            buffer.lastFlushNanos = System.nanoTime();
+        }
+    }
+
+    // В конце пачки: отправляет буфер, если истёк интервал, иначе откладывает оценки пачки до следующей отправки
+    private void flushIfDue(int partition) {
+        CoalesceBuffer buffer = buffers.get(partition);
+        if (buffer == null) {
+            return;
+        }
+        synchronized (buffer) {
+            if (System.nanoTime() - buffer.lastFlushNanos >= flushIntervalNanos) {
+                flush(partition);
+            } else {
+                buffer.carry();
+            }
+        }
+    }
+
+    // Отбрасывает неотправленные оценки партиции, рассчитанные откатанной транзакцией.
+    // Отложенные оценки рассчитаны зафиксированными пачками и сохраняются
+    public void discard(int partition) {
+        CoalesceBuffer buffer = buffers.get(partition);
+        if (buffer == null) {
+            return;
+        }
+        synchronized (buffer) {
+            buffer.scores.clear();
+            buffer.timestamps.clear();
+        }
+    }
+
+    public void flushAll() {
+        try {
+            buffers.keySet().forEach(this::flush);
+        } catch (RuntimeException e) {
+            log.error("Failed to flush similarity buffers", e);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        flushAll();
+    }
+
+    private void send(long eventA, long eventB, double score, long timestampMillis) {
+        kafkaSimilarityProducer.send(EventSimilarityAvro.newBuilder()
+                .setEventA(eventA)
+                .setEventB(eventB)
+                .setScore(score)
+                .setTimestamp(Instant.ofEpochMilli(timestampMillis))
+                .build());
+        sentCounter.increment();
+    }
+
+    private double coalesceRatio() {
+        double sent = sentCounter.count();
+        return sent > 0 ? receivedCounter.count() / sent : 0.0;
+    }
+
+    // Последние оценки и время их расчёта (миллисекунды эпохи, точно представимые в double) по парам:
+    // рассчитанные текущей пачкой и отложенные зафиксированными пачками до истечения интервала
+    private static final class CoalesceBuffer {
+        private final LongPairDoubleHashMap scores = new LongPairDoubleHashMap();
+        private final LongPairDoubleHashMap timestamps = new LongPairDoubleHashMap();
+        private final LongPairDoubleHashMap carriedScores = new LongPairDoubleHashMap();
+        private final LongPairDoubleHashMap carriedTimestamps = new LongPairDoubleHashMap();
+        private long lastFlushNanos = System.nanoTime();
+
+        // Переносит оценки текущей пачки в отложенные, заменяя прежние оценки тех же пар
+        private void carry() {
+            scores.forEach((eventA, eventB, score) -> {
+                carriedScores.put(eventA, eventB, score);
+                carriedTimestamps.put(eventA, eventB, timestamps.get(eventA, eventB, 0.0));
+            });
+            scores.clear();
+            timestamps.clear();
+        }
+
+        private void clear() {
+            scores.clear();
+            timestamps.clear();
+            carriedScores.clear();
+            carriedTimestamps.clear();
+        }
+    }
+}
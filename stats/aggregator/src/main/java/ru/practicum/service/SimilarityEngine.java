@@ -0,0 +1,40 @@
+package ru.practicum.service;
+
+import ru.practicum.ewm.stats.avro.ActionTypeAvro;
+import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Расчёт сходства мероприятий по потоку действий; реализация выбирается параметром aggregator.engine
+public interface SimilarityEngine {
+
+    // Обновляет состояние партиции и передаёт изменившиеся оценки сходства в sink
+    void updateState(UserActionAvro action, int partition, SimilaritySink sink);
+
+    // Вариант со сбором оценок в список для тестов и нечастых вызовов
+    default List<EventSimilarityAvro> updateState(UserActionAvro action, int partition) {
+        List<EventSimilarityAvro> similarities = new ArrayList<>();
+        updateState(action, partition, (eventA, eventB, score, timestamp) -> similarities.add(EventSimilarityAvro.newBuilder()
+                .setEventA(eventA)
+                .setEventB(eventB)
+                .setScore(score)
+                .setTimestamp(timestamp)
+                .build()));
+        return similarities;
+    }
+
+    static double getWeightFromActionType(ActionTypeAvro actionType) {
+        switch (actionType) {
+            case VIEW:
+                return 0.4;
+            case REGISTER:
+                return 0.8;
+            case LIKE:
+                return 1.0;
+            default:
+                throw new IllegalArgumentException("Unknown action type: " + actionType);
+        }
+    }
+}
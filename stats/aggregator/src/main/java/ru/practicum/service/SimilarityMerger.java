@@ -0,0 +1,350 @@
+package ru.practicum.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import ru.practicum.config.AggregatorProperties;
+import ru.practicum.service.state.AggregatorStateStore;
+import ru.practicum.service.state.LongDoubleConsumer;
+import ru.practicum.service.state.LongDoubleHashMap;
+import ru.practicum.service.state.LongLongDoubleConsumer;
+import ru.practicum.service.state.LongObjectHashMap;
+import ru.practicum.service.state.LongPairDoubleHashMap;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongFunction;
+
+// Этап слияния: суммирует частичные суммы всех партиций и рассчитывает итоговое сходство.
+// Суммы аддитивны по пользователям, поэтому достаточно применять приращения от обработчиков партиций.
+// В режиме top-K для каждого мероприятия хранится ограниченный список лучших соседей: пары, не входящие
+// в список ни одного из своих мероприятий, вытесняются вместе с суммами, а отправляются только изменения top-K.
+// Частичные суммы вытесненной пары удаляются из состояний партиций под той же блокировкой, что и списки соседей:
+// до удаления приращения партиции по этой паре отклоняются, поэтому общая сумма всегда равна сумме частичных.
+// В режиме затухания партиции переносят точку отсчёта независимо: общие суммы хранятся с наибольшим сдвигом,
+// а значения партиций с меньшим сдвигом приводятся к нему умножением на степень двойки.
+// Общие суммы разбиты на полосы по хешу мероприятия и пары, у каждой полосы своя блокировка, поэтому
+// обработчики партиций сливают приращения параллельно. Режим top-K по-прежнему выполняется под одной блокировкой.
+@Component
+public class SimilarityMerger {
+    private static final double EPSILON = 1e-9;
+    // Число полос общих сумм (степень двойки): партиции блокируют только полосы затрагиваемых ключей
+    private static final int STRIPE_BITS = 6;
+    private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+
+    private final EventStripe[] eventStripes = new EventStripe[1 << STRIPE_BITS];
+    private final PairStripe[] pairStripes = new PairStripe[1 << STRIPE_BITS];
+    // Перенос точки отсчёта затухания масштабирует все полосы: слияния удерживают блокировку на чтение,
+    // перенос — на запись. StampedLock не создаёт объектов при захвате, в отличие от ReentrantReadWriteLock
+    private final StampedLock rescaleLock = new StampedLock();
+    // Сдвиг точки отсчёта затухания общих сумм (см. WeightDecay); меняется только под rescaleLock на запись
+    private volatile long decayShift;
+    private final LongObjectHashMap<TopNeighbors> neighbors = new LongObjectHashMap<>();
+    // Для каждой партиции — вытесненные пары, частичные суммы которых ещё не удалены из её состояния
+    private final LongObjectHashMap<LongPairDoubleHashMap> pendingEvictions = new LongObjectHashMap<>();
+    // Списки соседей общие для всех мероприятий, поэтому в режиме top-K слияния выполняются под этой блокировкой
+    private final Object topKLock = new Object();
+    // Число отправляемых соседей; 0 — режим top-K выключен
+    private final int topK;
+    // Число хранимых соседей: запас сверх top-K позволяет паре накопить сумму до попадания в top-K
+    private final int retained;
+    // Фабрика создаётся один раз: лямбда, захватывающая поле, в merge создавалась бы на каждую пару
+    private final LongFunction<TopNeighbors> neighborsFactory;
+
+    public SimilarityMerger() {
+        this(new AggregatorProperties());
+    }
+
+    @Autowired
+    public SimilarityMerger(AggregatorProperties aggregatorProperties) {
+        AggregatorProperties.TopKConfig config = aggregatorProperties.getTopK();
+        this.topK = config.isEnabled() ? config.getK() : 0;
+        this.retained = topK * Math.max(1, config.getRetentionFactor());
+        this.neighborsFactory = id -> new TopNeighbors(retained);
+        for (int i = 0; i < eventStripes.length; i++) {
+            eventStripes[i] = new EventStripe();
+            pairStripes[i] = new PairStripe();
+        }
+    }
+
+    // Применяет приращения партиции и записывает в delta рассчитанное сходство для каждой затронутой пары,
+    // затем удаляет из состояния партиции частичные суммы вытесненных пар и добавляет их в delta как удалённые
+    public void merge(int partition, PartitionState state) {
+        if (topK == 0) {
+            mergeDelta(state, null);
+            return;
+        }
+        synchronized (topKLock) {
+            LongPairDoubleHashMap pending = pendingEvictions.computeIfAbsent(partition, p -> new LongPairDoubleHashMap());
+            mergeDelta(state, pending);
+            if (!pending.isEmpty()) {
+                applyEvictions(pending, state);
+            }
+        }
+    }
+
+    private void mergeDelta(PartitionState state, LongPairDoubleHashMap pending) {
+        SimilarityDelta delta = state.getDelta();
+        long stamp = lockShift(state.getDecayShift());
+        try {
+            double factor = WeightDecay.rescaleFactor(state.getDecayShift(), decayShift);
+            long eventId = delta.getEventId();
+            addEventWeight(eventId, delta.getEventWeightDelta() * factor);
+            boolean removeEmpty = delta.getEventWeightDelta() < 0;
+            long[] otherEvents = delta.getOtherEvents();
+            double[] minWeightsDeltas = delta.getMinWeightsDeltas();
+            for (int i = 0; i < delta.getSize(); i++) {
+                long first = Math.min(eventId, otherEvents[i]);
+                long second = Math.max(eventId, otherEvents[i]);
+                // Частичная сумма пары включает вклад до вытеснения и будет удалена целиком после слияния
+                if (pending != null && pending.containsKey(first, second)) {
+                    delta.setScore(i, 0.0);
+                    delta.setEmitted(i, false);
+                    continue;
+                }
+                // Удалены все общие веса пары (приращение отрицательно только при удалении затухших весов)
+                double score = addMinWeights(first, second, minWeightsDeltas[i] * factor, removeEmpty);
+                delta.setScore(i, score);
+                if (removeEmpty && score < EPSILON) {
+                    delta.setEmitted(i, false);
+                    continue;
+                }
+                delta.setEmitted(i, topK == 0 || retain(eventId, otherEvents[i], score));
+            }
+        } finally {
+            rescaleLock.unlockRead(stamp);
+        }
+    }
+
+    // Захватывает блокировку на чтение, при которой сдвиг общих сумм не меньше сдвига партиции.
+    // Если партиция перенесла точку отсчёта дальше, к её сдвигу сначала приводятся все полосы
+    private long lockShift(long shift) {
+        if (shift <= decayShift) {
+            return rescaleLock.readLock();
+        }
+        long stamp = rescaleLock.writeLock();
+        if (shift > decayShift) {
+            double factor = WeightDecay.rescaleFactor(decayShift, shift);
+            for (int i = 0; i < eventStripes.length; i++) {
+                eventStripes[i].sums.scale(factor);
+                pairStripes[i].sums.scale(factor);
+            }
+            decayShift = shift;
+        }
+        return rescaleLock.tryConvertToReadLock(stamp);
+    }
+
+    private void addEventWeight(long eventId, double delta) {
+        EventStripe stripe = eventStripes[stripe(eventId)];
+        synchronized (stripe) {
+            stripe.sums.add(eventId, delta);
+        }
+    }
+
+    private double eventWeight(long eventId) {
+        EventStripe stripe = eventStripes[stripe(eventId)];
+        synchronized (stripe) {
+            return stripe.sums.get(eventId, 0.0);
+        }
+    }
+
+    // Добавляет приращение к общей сумме пары и возвращает её оценку. Суммы мероприятий читаются под блокировкой
+    // полосы пары: приращение пары от другой партиции не может попасть между расчётом оценки и удалением.
+    // Блокировки полос мероприятий захватываются только внутри блокировки полосы пары, поэтому взаимоблокировки нет
+    private double addMinWeights(long first, long second, double delta, boolean removeEmpty) {
+        PairStripe stripe = pairStripes[stripe(first * GOLDEN_RATIO + second)];
+        synchronized (stripe) {
+            double sMin = stripe.sums.add(first, second, delta);
+            double sA = eventWeight(first);
+            double sB = eventWeight(second);
+            double score = (sA * sB > 0) ? sMin / Math.sqrt(sA * sB) : 0.0;
+            // Сравнивается оценка, так как она не зависит от масштаба весов
+            if (removeEmpty && score < EPSILON) {
+                stripe.sums.remove(first, second);
+            }
+            return score;
+        }
+    }
+
+    private static int stripe(long key) {
+        return (int) ((key * GOLDEN_RATIO) >>> (Long.SIZE - STRIPE_BITS));
+    }
+
+    private void applyEvictions(LongPairDoubleHashMap pending, PartitionState state) {
+        pending.forEach((first, second, ignored) -> {
+            if (state.removeMinWeightsSum(first, second)) {
+                state.getDelta().addRemovedPair(first, second);
+            }
+        });
+        pending.clear();
+    }
+
+    // Обновляет списки соседей обоих мероприятий пары; возвращает true, если пара входит в top-K одного из них
+    private boolean retain(long eventA, long eventB, double score) {
+        TopNeighbors neighborsA = neighbors.computeIfAbsent(eventA, neighborsFactory);
+        TopNeighbors neighborsB = neighbors.computeIfAbsent(eventB, neighborsFactory);
+        boolean retainedByA = neighborsA.offer(eventB, score);
+        evictIfUnreferenced(eventA, neighborsA.getLastEvicted());
+        boolean retainedByB = neighborsB.offer(eventA, score);
+        evictIfUnreferenced(eventB, neighborsB.getLastEvicted());
+        if (!retainedByA && !retainedByB) {
+            evict(eventA, eventB);
+            return false;
+        }
+        return neighborsA.isRanked(eventB, topK) || neighborsB.isRanked(eventA, topK);
+    }
+
+    // Пара вытеснена из списка одного мероприятия; её сумма удаляется, если второе мероприятие тоже её не хранит
+    private void evictIfUnreferenced(long eventId, long evicted) {
+        if (evicted == TopNeighbors.NONE) {
+            return;
+        }
+        TopNeighbors evictedNeighbors = neighbors.get(evicted);
+        if (evictedNeighbors == null || !evictedNeighbors.contains(eventId)) {
+            evict(eventId, evicted);
+        }
+    }
+
+    // Общая сумма удаляется сразу, частичные — при следующем слиянии каждой партиции
+    private void evict(long eventA, long eventB) {
+        long first = Math.min(eventA, eventB);
+        long second = Math.max(eventA, eventB);
+        PairStripe stripe = pairStripes[stripe(first * GOLDEN_RATIO + second)];
+        synchronized (stripe) {
+            stripe.sums.remove(first, second);
+        }
+        pendingEvictions.forEach((partition, pending) -> pending.put(first, second, 0.0));
+    }
+
+    // Добавляет в общие суммы вклад партиции, состояние которой восстановлено
+    public void add(int partition, PartitionState state) {
+        if (topK == 0) {
+            addStore(state.getStore(), state.getDecayShift(), 1.0);
+            return;
+        }
+        synchronized (topKLock) {
+            pendingEvictions.computeIfAbsent(partition, p -> new LongPairDoubleHashMap()).clear();
+            addStore(state.getStore(), state.getDecayShift(), 1.0);
+        }
+    }
+
+    // Исключает из общих сумм вклад партиции, которая больше не обрабатывается этим экземпляром.
+    // Частичные суммы вытесненных пар удаляются до вычитания: их уже нет в общих суммах
+    public void release(int partition, PartitionState state) {
+        if (topK == 0) {
+            subtract(state);
+            return;
+        }
+        synchronized (topKLock) {
+            LongPairDoubleHashMap pending = pendingEvictions.get(partition);
+            if (pending != null) {
+                applyEvictions(pending, state);
+                pendingEvictions.remove(partition);
+            }
+            subtract(state);
+        }
+    }
+
+    private void subtract(PartitionState state) {
+        addStore(state.getStore(), state.getDecayShift(), -1.0);
+        state.getBuckets().forEach((bucket, store) -> addStore(store, state.getDecayShift(), -1.0));
+    }
+
+    private void addStore(AggregatorStateStore store, long shift, double sign) {
+        long stamp = lockShift(shift);
+        try {
+            double factor = sign * WeightDecay.rescaleFactor(shift, decayShift);
+            store.forEachEventWeightSum((eventId, sum) -> addEventWeight(eventId, sum * factor));
+            store.forEachMinWeightsSum((first, second, sum) -> {
+                PairStripe stripe = pairStripes[stripe(first * GOLDEN_RATIO + second)];
+                synchronized (stripe) {
+                    stripe.sums.add(first, second, sum * factor);
+                }
+            });
+        } finally {
+            rescaleLock.unlockRead(stamp);
+        }
+    }
+
+    // Исключает из общих сумм вклад истёкшего бакета скользящего окна партиции и передаёт новые оценки
+    // затронутых пар. Пары, у которых не осталось общих весов, удаляются с оценкой 0
+    public void expire(int partition, PartitionState state, AggregatorStateStore bucket,
+                       LongLongDoubleConsumer consumer) {
+        if (topK == 0) {
+            expireBucket(state, bucket, null, consumer);
+            return;
+        }
+        synchronized (topKLock) {
+            expireBucket(state, bucket, pendingEvictions.get(partition), consumer);
+        }
+    }
+
+    private void expireBucket(PartitionState state, AggregatorStateStore bucket, LongPairDoubleHashMap pending,
+                              LongLongDoubleConsumer consumer) {
+        long stamp = lockShift(state.getDecayShift());
+        try {
+            double factor = WeightDecay.rescaleFactor(state.getDecayShift(), decayShift);
+            bucket.forEachEventWeightSum((eventId, sum) -> addEventWeight(eventId, -sum * factor));
+            bucket.forEachMinWeightsSum((first, second, sum) -> {
+                // Вытесненной пары уже нет в общих суммах
+                if (pending != null && pending.containsKey(first, second)) {
+                    return;
+                }
+                double score = addMinWeights(first, second, -sum * factor, true);
+                consumer.accept(first, second, score < EPSILON ? 0.0 : score);
+            });
+        } finally {
+            rescaleLock.unlockRead(stamp);
+        }
+    }
+
+    public void forEachEventWeightSum(LongDoubleConsumer consumer) {
+        for (EventStripe stripe : eventStripes) {
+            synchronized (stripe) {
+                stripe.sums.forEach(consumer);
+            }
+        }
+    }
+
+    public void forEachMinWeightsSum(LongLongDoubleConsumer consumer) {
+        for (PairStripe stripe : pairStripes) {
+            synchronized (stripe) {
+                stripe.sums.forEach(consumer);
+            }
+        }
+    }
+
+    public long pairCount() {
+        long count = 0;
+        for (PairStripe stripe : pairStripes) {
+            synchronized (stripe) {
+                count += stripe.sums.size();
+            }
+        }
+        return count;
+    }
+
+    public long sizeInBytes() {
+        long bytes = 0;
+        for (int i = 0; i < eventStripes.length; i++) {
+            synchronized (eventStripes[i]) {
+                bytes += eventStripes[i].sums.sizeInBytes();
+            }
+            synchronized (pairStripes[i]) {
+                bytes += pairStripes[i].sums.sizeInBytes();
+            }
+        }
+        synchronized (topKLock) {
+            long[] neighborsBytes = {neighbors.sizeInBytes()};
+            neighbors.forEach((eventId, top) -> neighborsBytes[0] += top.sizeInBytes());
+            return bytes + neighborsBytes[0];
+        }
+    }
+
+    // Полосы мероприятий и пар блокируются независимо, поэтому это разные объекты даже при одинаковом индексе
+    private static final class EventStripe {
+        private final LongDoubleHashMap sums = new LongDoubleHashMap();
+    }
+
+    private static final class PairStripe {
+        private final LongPairDoubleHashMap sums = new LongPairDoubleHashMap();
+    }
+}
@@ -0,0 +1,11 @@
+package ru.practicum.service;
+
+import java.time.Instant;
+
+// Приёмник рассчитанных оценок сходства (eventA < eventB). Вызывается потоком партиции
+// без создания промежуточных объектов
+@FunctionalInterface
+public interface SimilaritySink {
+
+    void accept(long eventA, long eventB, double score, Instant timestamp);
+}
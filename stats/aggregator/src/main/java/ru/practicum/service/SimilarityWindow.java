@@ -0,0 +1,41 @@
+package ru.practicum.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import ru.practicum.config.AggregatorProperties;
+
+import java.time.Instant;
+
+// Скользящее окно по времени действий: окно длины length разбито на бакеты длины bucket,
+// у каждого бакета свои веса и частичные суммы
+@Component
+public class SimilarityWindow {
+    private final boolean enabled;
+    private final long bucketMillis;
+    private final int bucketCount;
+
+    public SimilarityWindow() {
+        this(new AggregatorProperties());
+    }
+
+    @Autowired
+    public SimilarityWindow(AggregatorProperties aggregatorProperties) {
+        AggregatorProperties.WindowConfig config = aggregatorProperties.getWindow();
+        this.enabled = config.isEnabled();
+        this.bucketMillis = config.getBucket().toMillis();
+        this.bucketCount = (int) Math.max(1, (config.getLength().toMillis() + bucketMillis - 1) / bucketMillis);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long bucketOf(Instant timestamp) {
+        return Math.floorDiv(timestamp.toEpochMilli(), bucketMillis);
+    }
+
+    // Самый старый бакет, входящий в окно, которое заканчивается бакетом newestBucket
+    public long oldestBucket(long newestBucket) {
+        return newestBucket - bucketCount + 1;
+    }
+}
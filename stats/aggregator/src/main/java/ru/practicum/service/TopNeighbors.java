@@ -0,0 +1,96 @@
+package ru.practicum.service;
+
+import java.util.Arrays;
+
+// Ограниченный список соседей мероприятия с наибольшими оценками сходства.
+// Ёмкость небольшая (десятки элементов), поэтому поиск выполняется линейным проходом.
+final class TopNeighbors {
+    static final long NONE = Long.MIN_VALUE;
+
+    private final int capacity;
+    private long[] neighbors;
+    private double[] scores;
+    private int size;
+    // Сосед, вытесненный последним вызовом offer, или NONE
+    private long lastEvicted = NONE;
+
+    TopNeighbors(int capacity) {
+        this.capacity = capacity;
+        int initial = Math.min(capacity, 4);
+        this.neighbors = new long[initial];
+        this.scores = new double[initial];
+    }
+
+    // Обновляет оценку соседа или добавляет его, вытесняя соседа с минимальной оценкой.
+    // Возвращает false, если оценка ниже всех оценок заполненного списка
+    boolean offer(long neighbor, double score) {
+        lastEvicted = NONE;
+        int index = indexOf(neighbor);
+        if (index >= 0) {
+            scores[index] = score;
+            return true;
+        }
+        if (size < capacity) {
+            if (size == neighbors.length) {
+                int length = Math.min(capacity, size << 1);
+                neighbors = Arrays.copyOf(neighbors, length);
+                scores = Arrays.copyOf(scores, length);
+            }
+            neighbors[size] = neighbor;
+            scores[size++] = score;
+            return true;
+        }
+        int min = 0;
+        for (int i = 1; i < size; i++) {
+            if (scores[i] < scores[min]) {
+                min = i;
+            }
+        }
+        if (score <= scores[min]) {
+            return false;
+        }
+        lastEvicted = neighbors[min];
+        neighbors[min] = neighbor;
+        scores[min] = score;
+        return true;
+    }
+
+    long getLastEvicted() {
+        return lastEvicted;
+    }
+
+    boolean contains(long neighbor) {
+        return indexOf(neighbor) >= 0;
+    }
+
+    // Входит ли сосед в первые k по оценке
+    boolean isRanked(long neighbor, int k) {
+        int index = indexOf(neighbor);
+        if (index < 0) {
+            return false;
+        }
+        if (size <= k) {
+            return true;
+        }
+        int higher = 0;
+        for (int i = 0; i < size; i++) {
+            if (scores[i] > scores[index]) {
+                higher++;
+            }
+        }
+        return higher < k;
+    }
+
+    long sizeInBytes() {
+        return 32 + 2 * 16 + (long) neighbors.length * (Long.BYTES + Double.BYTES);
+    }
+
+    private int indexOf(long neighbor) {
+        for (int i = 0; i < size; i++) {
+            if (neighbors[i] == neighbor) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -1,101 +1,214 @@
 package ru.practicum.service;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import ru.practicum.ewm.stats.avro.ActionTypeAvro;
-import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
 import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.service.state.AggregatorStateStore;
+import ru.practicum.service.state.PrimitiveAggregatorStateStore;
 
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 @Service
 @Slf4j
-public class UserActionAggregator {
+public class UserActionAggregator implements SimilarityEngine {
+    // Частичная сумма, ставшая меньше этой доли удалённого веса, считается нулевой (остаток округления)
+    private static final double EPSILON = 1e-9;
 
-    private final Map<Long, Map<Long, Double>> eventUserWeights = new ConcurrentHashMap<>();
-    private final Map<Long, Double> eventWeightSums = new ConcurrentHashMap<>();
-    private final Map<Long, Map<Long, Double>> minWeightsSums = new ConcurrentHashMap<>();
+    private final SimilarityMerger similarityMerger;
+    private final WeightDecay weightDecay;
+    private final SimilarityWindow window;
 
-    public List<EventSimilarityAvro> updateState(UserActionAvro action) {
-        List<EventSimilarityAvro> similarities = new ArrayList<>();
+    // Состояние каждой партиции: действия ключуются по userId, поэтому все веса пользователя
+    // находятся в одной партиции, а её обработчик работает без блокировок в своём потоке
+    private final Map<Integer, PartitionState> partitions = new ConcurrentHashMap<>();
+
+    public UserActionAggregator(SimilarityMerger similarityMerger) {
+        this(similarityMerger, new WeightDecay());
+    }
+
+    public UserActionAggregator(SimilarityMerger similarityMerger, WeightDecay weightDecay) {
+        this(similarityMerger, weightDecay, new SimilarityWindow());
+    }
+
+    @Autowired
+    public UserActionAggregator(SimilarityMerger similarityMerger, WeightDecay weightDecay, SimilarityWindow window) {
+        this.similarityMerger = similarityMerger;
+        this.weightDecay = weightDecay;
+        this.window = window;
+    }
+
+    @Override
+    public void updateState(UserActionAvro action, int partition, SimilaritySink sink) {
+        PartitionState state = partitions.computeIfAbsent(partition, p -> new PartitionState());
+        SimilarityDelta delta = state.getDelta();
+        delta.clear();
         long eventId = action.getEventId();
         long userId = action.getUserId();
-        double newWeight = getWeightFromActionType(action.getActionType());
         Instant timestamp = action.getTimestamp();
+        if (weightDecay.isEnabled()) {
+            rebaseIfDue(partition, state, timestamp);
+        }
+        AggregatorStateStore stateStore = selectStore(partition, state, timestamp, sink);
+        if (stateStore == null) {
+            if (log.isDebugEnabled()) {
+                log.debug("Action of user {} for event {} is outside of the window: {}", userId, eventId, timestamp);
+            }
+            return;
+        }
+        // В режиме затухания вес масштабирован ко времени действия: повторное действие позже старого весит больше
+        double newWeight = weightDecay.scale(SimilarityEngine.getWeightFromActionType(action.getActionType()), timestamp,
+                state.getDecayShift());
 
         // Получение текущего веса
-        Map<Long, Double> userWeights = eventUserWeights.computeIfAbsent(eventId, k -> new ConcurrentHashMap<>());
-        double currentWeight = userWeights.getOrDefault(userId, 0.0);
+        double currentWeight = stateStore.getWeight(userId, eventId);
 
         // Если вес не изменился, ничего не пересчитываем
         if (currentWeight >= newWeight) {
-            log.debug("Weight for user {} and event {} not changed: {}", userId, eventId, currentWeight);
-            return similarities;
+            if (log.isDebugEnabled()) {
+                log.debug("Weight for user {} and event {} not changed: {}", userId, eventId, currentWeight);
+            }
+            return;
         }
 
         // Обновление веса пользователя
-        userWeights.put(userId, newWeight);
+        stateStore.putWeight(userId, eventId, newWeight);
 
-        // Обновление суммы весов для мероприятия
-        double oldEventSum = eventWeightSums.getOrDefault(eventId, 0.0);
+        // Обновление частичной суммы весов для мероприятия
         double userWeightDiff = newWeight - currentWeight;
-        eventWeightSums.put(eventId, oldEventSum + userWeightDiff);
-
-        // Пересчёт сходства для всех пар с eventId
-        for (long eventB : eventUserWeights.keySet()) {
-            if (eventB == eventId) continue;
-
-            // Упорядочивание идентификаторов
-            long first = Math.min(eventId, eventB);
-            long second = Math.max(eventId, eventB);
-
-            // Получение весов пользователя для обоих мероприятий
-            Double weightA = eventUserWeights.get(eventId).get(userId);
-            Double weightB = eventUserWeights.getOrDefault(eventB, new ConcurrentHashMap<>()).getOrDefault(userId, 0.0);
-
-            // Если пользователь не взаимодействовал с eventB, пропускаем
-            if (weightB == 0.0) continue;
-
-            // Обновление суммы минимальных весов
-            Map<Long, Double> minSums = minWeightsSums.computeIfAbsent(first, k -> new ConcurrentHashMap<>());
-            double currentMinSum = minSums.getOrDefault(second, 0.0);
-            double oldMin = Math.min(currentWeight, weightB);
-            double newMin = Math.min(newWeight, weightB);
-            double minSumDiff = newMin - oldMin;
-            minSums.put(second, currentMinSum + minSumDiff);
-
-            // Расчёт косинусного сходства
-            double sMin = minSums.get(second);
-            double sA = eventWeightSums.get(first);
-            double sB = eventWeightSums.getOrDefault(second, 0.0);
-            double similarity = (sA * sB > 0) ? sMin / Math.sqrt(sA * sB) : 0.0;
-
-            // Создание сообщения
-            EventSimilarityAvro similarityAvro = new EventSimilarityAvro();
-            similarityAvro.setEventA(first);
-            similarityAvro.setEventB(second);
-            similarityAvro.setScore(similarity);
-            similarityAvro.setTimestamp(timestamp);
-            similarities.add(similarityAvro);
+        stateStore.addEventWeightSum(eventId, userWeightDiff);
+        delta.reset(userId, eventId, newWeight, userWeightDiff);
+
+        // Пересчёт частичных сумм минимальных весов только для мероприятий, с которыми взаимодействовал пользователь
+        state.getMinWeightsUpdater().update(stateStore, userId, eventId, currentWeight, newWeight);
+
+        // Слияние приращений с суммами остальных партиций и расчёт косинусного сходства
+        similarityMerger.merge(partition, state);
+
+        // Передача оценок для пар, входящих в top-K
+        for (int i = 0; i < delta.getSize(); i++) {
+            if (!delta.getEmitted()[i]) {
+                continue;
+            }
+            long eventB = delta.getOtherEvents()[i];
+            sink.accept(Math.min(eventId, eventB), Math.max(eventId, eventB), delta.getScores()[i], timestamp);
+        }
+    }
+
+    // Переносит точку отсчёта затухания партиции, пока множитель новых весов не переполнил double.
+    // Общие суммы этапа слияния приводятся к новому сдвигу при следующем слиянии
+    private void rebaseIfDue(int partition, PartitionState state, Instant timestamp) {
+        long shift = weightDecay.rebaseShift(timestamp, state.getDecayShift());
+        if (shift == state.getDecayShift()) {
+            return;
+        }
+        double factor = WeightDecay.rescaleFactor(state.getDecayShift(), shift);
+        state.getStore().scale(factor);
+        state.getBuckets().forEach((bucket, store) -> store.scale(factor));
+        log.info("Decay epoch of partition {} moved by {} half-lives", partition, shift - state.getDecayShift());
+        state.setDecayShift(shift);
+        state.setRescaled(true);
+    }
+
+    // В режиме скользящего окна возвращает состояние бакета действия (или null для действия старше окна)
+    // и исключает бакеты, вышедшие из окна; новые оценки затронутых ими пар передаются в sink
+    private AggregatorStateStore selectStore(int partition, PartitionState state, Instant timestamp, SimilaritySink sink) {
+        if (!window.isEnabled()) {
+            return state.getStore();
         }
+        long bucket = window.bucketOf(timestamp);
+        if (bucket > state.getNewestBucket()) {
+            state.setNewestBucket(bucket);
+            expireBuckets(partition, state, window.oldestBucket(bucket), timestamp, sink);
+        }
+        if (bucket < window.oldestBucket(state.getNewestBucket())) {
+            return null;
+        }
+        return state.getBuckets().computeIfAbsent(bucket, b -> new PrimitiveAggregatorStateStore());
+    }
 
-        return similarities;
+    // Вычитает из общих сумм вклад бакетов старше oldestBucket целиком, без пересчёта весов
+    private void expireBuckets(int partition, PartitionState state, long oldestBucket, Instant timestamp, SimilaritySink sink) {
+        List<Long> expired = new ArrayList<>();
+        state.getBuckets().forEach((bucket, store) -> {
+            if (bucket < oldestBucket) {
+                expired.add(bucket);
+            }
+        });
+        for (long bucket : expired) {
+            AggregatorStateStore store = state.getBuckets().get(bucket);
+            state.getBuckets().remove(bucket);
+            similarityMerger.expire(partition, state, store, (eventA, eventB, score) -> sink.accept(eventA, eventB, score, timestamp));
+            log.info("Expired window bucket {}: weights={}, pairs={}", bucket, store.weightCount(), store.pairCount());
+        }
     }
 
-    private double getWeightFromActionType(ActionTypeAvro actionType) {
-        switch (actionType) {
-            case VIEW:
-                return 0.4;
-            case REGISTER:
-                return 0.8;
-            case LIKE:
-                return 1.0;
-            default:
-                throw new IllegalArgumentException("Unknown action type: " + actionType);
+    // Удаляет веса партиции, затухшие к моменту now ниже порога, и вычитает их вклад из частичных и общих сумм.
+    // Для каждого удалённого веса вызывает onRemoved с описывающим изменения delta
+    public int prune(int partition, Instant now, Consumer<SimilarityDelta> onRemoved) {
+        PartitionState state = partitions.get(partition);
+        if (state == null || !weightDecay.isEnabled()) {
+            return 0;
         }
+        AggregatorStateStore stateStore = state.getStore();
+        double threshold = weightDecay.pruneThreshold(now, state.getDecayShift());
+        List<ExpiredWeight> expired = new ArrayList<>();
+        stateStore.forEachWeight((userId, eventId, weight) -> {
+            if (weight < threshold) {
+                expired.add(new ExpiredWeight(userId, eventId, weight));
+            }
+        });
+        SimilarityDelta delta = state.getDelta();
+        for (ExpiredWeight weight : expired) {
+            delta.clear();
+            stateStore.removeWeight(weight.userId(), weight.eventId());
+            stateStore.addEventWeightSum(weight.eventId(), -weight.weight());
+            delta.reset(weight.userId(), weight.eventId(), 0.0, -weight.weight());
+            stateStore.forEachUserEvent(weight.userId(), (eventB, weightB) -> {
+                long first = Math.min(weight.eventId(), eventB);
+                long second = Math.max(weight.eventId(), eventB);
+                double minSumDiff = -Math.min(weight.weight(), weightB);
+                if (stateStore.addMinWeightsSum(first, second, minSumDiff) < EPSILON * weight.weight()) {
+                    stateStore.removeMinWeightsSum(first, second);
+                }
+                delta.addPair(eventB, minSumDiff);
+            });
+            similarityMerger.merge(partition, state);
+            onRemoved.accept(delta);
+        }
+        if (!expired.isEmpty()) {
+            log.info("Pruned {} decayed weights in partition {}", expired.size(), partition);
+        }
+        return expired.size();
+    }
+
+    public PartitionState getPartition(int partition) {
+        return partitions.get(partition);
+    }
+
+    // Подключает восстановленное состояние партиции и добавляет её вклад в общие суммы
+    public void restorePartition(int partition, PartitionState state) {
+        releasePartition(partition);
+        partitions.put(partition, state);
+        similarityMerger.add(partition, state);
+        log.info("Restored partition {}: weights={}, events={}, pairs={}", partition,
+                state.getStore().weightCount(), state.getStore().eventCount(), state.getStore().pairCount());
+    }
+
+    // Отключает партицию и исключает её вклад из общих сумм
+    public PartitionState releasePartition(int partition) {
+        PartitionState state = partitions.remove(partition);
+        if (state != null) {
+            similarityMerger.release(partition, state);
+        }
+        return state;
+    }
+
+    private record ExpiredWeight(long userId, long eventId, double weight) {
     }
 }
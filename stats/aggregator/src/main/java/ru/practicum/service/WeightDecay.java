@@ -0,0 +1,83 @@
+package ru.practicum.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import ru.practicum.config.AggregatorProperties;
+
+import java.time.Instant;
+
+// Экспоненциальное затухание весов с ленивым применением.
+// Вес хранится масштабированным к общей точке отсчёта: w * 2^((t - epoch) / halfLife).
+// Затухание к моменту now — это деление всех весов на один и тот же множитель, поэтому суммы минимумов
+// и косинусное сходство, рассчитанные по масштабированным весам, уже учитывают затухание без пересчёта состояния.
+// Множитель растёт вдвое за halfLife и через ~1024 периода переполнил бы double, поэтому точка отсчёта
+// у каждой партиции сдвигается на целое число периодов (shift): epoch + shift * halfLife. При сдвиге
+// все значения партиции делятся на степень двойки, что не меняет ни относительных весов, ни сходства.
+@Component
+public class WeightDecay {
+    // Сдвиг выполняется, когда множитель новых весов превышает 2^REBASE_HALF_LIVES
+    static final int REBASE_HALF_LIVES = 64;
+    // Меньшие степени двойки в double равны нулю
+    private static final int MIN_EXPONENT = -1100;
+
+    private final boolean enabled;
+    private final double halfLifeMillis;
+    private final long epochMillis;
+    private final double pruneThreshold;
+
+    public WeightDecay() {
+        this(new AggregatorProperties());
+    }
+
+    @Autowired
+    public WeightDecay(AggregatorProperties aggregatorProperties) {
+        AggregatorProperties.DecayConfig config = aggregatorProperties.getDecay();
+        this.enabled = config.isEnabled();
+        this.halfLifeMillis = config.getHalfLife().toMillis();
+        this.epochMillis = config.getEpoch().toEpochMilli();
+        this.pruneThreshold = config.getPruneThreshold();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Масштабированный вес действия, совершённого в момент timestamp, при точке отсчёта со сдвигом shift
+    public double scale(double weight, Instant timestamp, long shift) {
+        if (!enabled || timestamp == null) {
+            return weight;
+        }
+        return weight * Math.pow(2.0, halfLives(timestamp) - shift);
+    }
+
+    // Вес действия в момент timestamp, масштабированный относительно действия в момент reference
+    public double relative(double weight, Instant timestamp, Instant reference) {
+        if (!enabled || timestamp == null || reference == null) {
+            return weight;
+        }
+        return weight * Math.pow(2.0, (timestamp.toEpochMilli() - reference.toEpochMilli()) / halfLifeMillis);
+    }
+
+    // Масштабированный вес, ниже которого взаимодействие к моменту now считается затухшим
+    public double pruneThreshold(Instant now, long shift) {
+        return scale(pruneThreshold, now, shift);
+    }
+
+    // Сдвиг точки отсчёта для действия в момент timestamp: прежний, пока множитель не превышает допустимый
+    public long rebaseShift(Instant timestamp, long shift) {
+        if (!enabled || timestamp == null || halfLives(timestamp) - shift <= REBASE_HALF_LIVES) {
+            return shift;
+        }
+        return (long) Math.floor(halfLives(timestamp));
+    }
+
+    // Множитель перевода значений, масштабированных со сдвигом from, к большему сдвигу to; степень двойки
+    // умножается точно
+    static double rescaleFactor(long from, long to) {
+        return Math.scalb(1.0, (int) Math.max(MIN_EXPONENT, from - to));
+    }
+
+    private double halfLives(Instant timestamp) {
+        return (timestamp.toEpochMilli() - epochMillis) / halfLifeMillis;
+    }
+}
@@ -0,0 +1,210 @@
+package ru.practicum.service.minhash;
+
+import ru.practicum.service.state.LongDoubleConsumer;
+import ru.practicum.service.state.LongObjectHashMap;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// Приближённая оценка сходства мероприятий: взвешенный MinHash-скетч фиксированного размера на мероприятие
+// и LSH-корзины по полосам скетча для поиска пар-кандидатов.
+// Вес пользователя представлен целым числом единиц (user, 1..units), поэтому доля совпавших минимумов
+// оценивает взвешенный коэффициент Жаккара J = Σmin / Σmax. Из него и точных сумм весов мероприятий
+// восстанавливается Σmin = J * (S_A + S_B) / (1 + J).
+// Используется обработчиками всех партиций, поэтому изменения выполняются под блокировкой.
+public class MinHashIndex {
+    private static final long EMPTY_BAND = Long.MIN_VALUE;
+
+    private final int bands;
+    private final int rows;
+    private final int hashCount;
+    private final int maxCandidates;
+    private final long[] seeds;
+    private final LongObjectHashMap<EventSketch> sketches = new LongObjectHashMap<>();
+    private final LongObjectHashMap<Bucket> buckets = new LongObjectHashMap<>();
+    private int generation;
+
+    public MinHashIndex(int bands, int rows, int maxCandidates, long seed) {
+        if (bands <= 0 || rows <= 0) {
+            throw new IllegalArgumentException("Bands and rows must be positive: " + bands + "x" + rows);
+        }
+        this.bands = bands;
+        this.rows = rows;
+        this.hashCount = bands * rows;
+        this.maxCandidates = maxCandidates;
+        this.seeds = new SplittableRandom(seed).longs(hashCount).toArray();
+    }
+
+    // Добавляет единицы веса (fromUnit, toUnit] пользователя к скетчу мероприятия и передаёт в consumer
+    // оценки сходства мероприятия с найденными кандидатами
+    public synchronized void update(long eventId, long userId, int fromUnit, int toUnit, double weightDelta,
+                                    LongDoubleConsumer consumer) {
+        EventSketch sketch = sketches.computeIfAbsent(eventId, id -> new EventSketch(hashCount, bands));
+        sketch.weightSum += weightDelta;
+        boolean changed = false;
+        for (int unit = fromUnit + 1; unit <= toUnit; unit++) {
+            long element = hash(userId * 0x9E3779B97F4A7C15L + unit);
+            for (int i = 0; i < hashCount; i++) {
+                long h = hash(element ^ seeds[i]);
+                if (h < sketch.mins[i]) {
+                    sketch.mins[i] = h;
+                    changed = true;
+                }
+            }
+        }
+        if (changed) {
+            rebucket(eventId, sketch);
+        }
+        collectCandidates(eventId, sketch, consumer);
+    }
+
+    // Оценка сходства пары по скетчам; 0, если одно из мероприятий неизвестно
+    public synchronized double estimate(long eventA, long eventB) {
+        EventSketch a = sketches.get(eventA);
+        EventSketch b = sketches.get(eventB);
+        return a == null || b == null ? 0.0 : score(a, b);
+    }
+
+    // Попадают ли мероприятия хотя бы в одну общую LSH-корзину
+    public synchronized boolean isCandidate(long eventA, long eventB) {
+        EventSketch a = sketches.get(eventA);
+        EventSketch b = sketches.get(eventB);
+        if (a == null || b == null) {
+            return false;
+        }
+        for (int band = 0; band < bands; band++) {
+            if (a.bandKeys[band] == b.bandKeys[band]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public synchronized int eventCount() {
+        return sketches.size();
+    }
+
+    // Приблизительный объём скетчей и корзин
+    public synchronized long sizeInBytes() {
+        long[] total = {sketches.sizeInBytes() + buckets.sizeInBytes()};
+        sketches.forEach((eventId, sketch) -> total[0] += sketch.sizeInBytes());
+        buckets.forEach((key, bucket) -> total[0] += bucket.sizeInBytes());
+        return total[0];
+    }
+
+    private void rebucket(long eventId, EventSketch sketch) {
+        for (int band = 0; band < bands; band++) {
+            long key = band;
+            for (int row = band * rows; row < (band + 1) * rows; row++) {
+                key = hash(key * 0x9E3779B97F4A7C15L + sketch.mins[row]);
+            }
+            if (key == EMPTY_BAND) {
+                key++;
+            }
+            long previous = sketch.bandKeys[band];
+            if (previous == key) {
+                continue;
+            }
+            if (previous != EMPTY_BAND) {
+                Bucket bucket = buckets.get(previous);
+                if (bucket != null && bucket.remove(eventId) && bucket.size == 0) {
+                    buckets.remove(previous);
+                }
+            }
+            buckets.computeIfAbsent(key, k -> new Bucket()).add(eventId);
+            sketch.bandKeys[band] = key;
+        }
+    }
+
+    private void collectCandidates(long eventId, EventSketch sketch, LongDoubleConsumer consumer) {
+        int mark = ++generation;
+        sketch.mark = mark;
+        int found = 0;
+        for (int band = 0; band < bands && found < maxCandidates; band++) {
+            Bucket bucket = buckets.get(sketch.bandKeys[band]);
+            if (bucket == null) {
+                continue;
+            }
+            for (int i = 0; i < bucket.size && found < maxCandidates; i++) {
+                long other = bucket.events[i];
+                EventSketch otherSketch = sketches.get(other);
+                if (otherSketch.mark == mark) {
+                    continue;
+                }
+                otherSketch.mark = mark;
+                found++;
+                double score = score(sketch, otherSketch);
+                if (score > 0) {
+                    consumer.accept(other, score);
+                }
+            }
+        }
+    }
+
+    private double score(EventSketch a, EventSketch b) {
+        int matches = 0;
+        for (int i = 0; i < hashCount; i++) {
+            if (a.mins[i] == b.mins[i]) {
+                matches++;
+            }
+        }
+        if (matches == 0 || a.weightSum <= 0 || b.weightSum <= 0) {
+            return 0.0;
+        }
+        double jaccard = (double) matches / hashCount;
+        double minWeightsSum = jaccard * (a.weightSum + b.weightSum) / (1 + jaccard);
+        return Math.min(1.0, minWeightsSum / Math.sqrt(a.weightSum * b.weightSum));
+    }
+
+    // Финализатор SplitMix64
+    private static long hash(long value) {
+        long h = value + 0x9E3779B97F4A7C15L;
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+
+    private static final class EventSketch {
+        private final long[] mins;
+        private final long[] bandKeys;
+        private double weightSum;
+        private int mark;
+
+        private EventSketch(int hashCount, int bands) {
+            this.mins = new long[hashCount];
+            this.bandKeys = new long[bands];
+            Arrays.fill(mins, Long.MAX_VALUE);
+            Arrays.fill(bandKeys, EMPTY_BAND);
+        }
+
+        private long sizeInBytes() {
+            return 32 + 16 + (long) mins.length * Long.BYTES + 16 + (long) bandKeys.length * Long.BYTES;
+        }
+    }
+
+    private static final class Bucket {
+        private long[] events = new long[4];
+        private int size;
+
+        private void add(long eventId) {
+            if (size == events.length) {
+                events = Arrays.copyOf(events, size << 1);
+            }
+            events[size++] = eventId;
+        }
+
+        private boolean remove(long eventId) {
+            for (int i = 0; i < size; i++) {
+                if (events[i] == eventId) {
+                    events[i] = events[--size];
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private long sizeInBytes() {
+            return 16 + 16 + (long) events.length * Long.BYTES;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package ru.practicum.service.minhash;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import ru.practicum.config.AggregatorProperties;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.service.SimilarityEngine;
+import ru.practicum.service.SimilaritySink;
+import ru.practicum.service.state.LongPairDoubleHashMap;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Приближённый расчёт сходства для больших каталогов мероприятий: память растёт линейно по числу
+// мероприятий (скетч фиксированного размера), а не квадратично по числу пар.
+// Заменяет точный UserActionAggregator при aggregator.engine=minhash
+@Slf4j
+@Service
+@Primary
+@ConditionalOnProperty(name = "aggregator.engine", havingValue = "minhash")
+public class MinHashSimilarityEngine implements SimilarityEngine {
+    // Все веса действий кратны 0.2, поэтому вес представляется целым числом единиц
+    private static final double WEIGHT_UNIT = 0.2;
+
+    private final MinHashIndex index;
+    // Веса пользователей по партициям: действия ключуются по userId, поэтому партиция обрабатывается одним потоком
+    private final Map<Integer, LongPairDoubleHashMap> userWeights = new ConcurrentHashMap<>();
+
+    public MinHashSimilarityEngine(AggregatorProperties aggregatorProperties) {
+        AggregatorProperties.MinHashConfig config = aggregatorProperties.getMinhash();
+        this.index = new MinHashIndex(config.getBands(), config.getRows(), config.getMaxCandidates(), config.getSeed());
+        log.info("MinHash similarity engine enabled: {}", config);
+    }
+
+    @Override
+    public void updateState(UserActionAvro action, int partition, SimilaritySink sink) {
+        LongPairDoubleHashMap weights = userWeights.computeIfAbsent(partition, p -> new LongPairDoubleHashMap());
+        long eventId = action.getEventId();
+        long userId = action.getUserId();
+        double newWeight = SimilarityEngine.getWeightFromActionType(action.getActionType());
+        Instant timestamp = action.getTimestamp();
+
+        double currentWeight = weights.get(userId, eventId, 0.0);
+        if (currentWeight >= newWeight) {
+            return;
+        }
+        weights.put(userId, eventId, newWeight);
+
+        index.update(eventId, userId, toUnits(currentWeight), toUnits(newWeight), newWeight - currentWeight,
+                (eventB, score) -> sink.accept(Math.min(eventId, eventB), Math.max(eventId, eventB), score, timestamp));
+    }
+
+    public double estimate(long eventA, long eventB) {
+        return index.estimate(eventA, eventB);
+    }
+
+    public boolean isCandidate(long eventA, long eventB) {
+        return index.isCandidate(eventA, eventB);
+    }
+
+    // Объём скетчей, корзин и весов пользователей
+    public long sizeInBytes() {
+        long total = index.sizeInBytes();
+        for (LongPairDoubleHashMap weights : userWeights.values()) {
+            total += weights.sizeInBytes();
+        }
+        return total;
+    }
+
+    private int toUnits(double weight) {
+        return (int) Math.round(weight / WEIGHT_UNIT);
+    }
+}
@@ -0,0 +1,126 @@
+package ru.practicum.service.snapshot;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.practicum.config.AggregatorProperties;
+import ru.practicum.service.PartitionState;
+import ru.practicum.service.state.AggregatorStateStore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+// Компактные бинарные снимки состояния партиций на локальном диске.
+// Формат: заголовок (magic, версия, партиция, смещение, сдвиг точки отсчёта затухания), затем веса,
+// суммы мероприятий и суммы пар. Снимки версии 1 без сдвига читаются со сдвигом 0.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AggregatorSnapshotStore {
+    private static final int MAGIC = 0x41475353;
+    private static final int VERSION = 2;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final AggregatorProperties aggregatorProperties;
+
+    public void write(String topic, int partition, PartitionState state) {
+        Path target = snapshotPath(topic, partition);
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        AggregatorStateStore store = state.getStore();
+        try {
+            Files.createDirectories(target.getParent());
+            try (FileOutputStream file = new FileOutputStream(tmp.toFile());
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, BUFFER_SIZE))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(partition);
+                out.writeLong(state.getNextOffset());
+                out.writeLong(state.getDecayShift());
+
+                out.writeLong(store.weightCount());
+                store.forEachWeight((userId, eventId, weight) -> writeEntry(out, userId, eventId, weight));
+                out.writeLong(store.eventCount());
+                store.forEachEventWeightSum((eventId, sum) -> writeEntry(out, eventId, sum));
+                out.writeLong(store.pairCount());
+                store.forEachMinWeightsSum((eventA, eventB, sum) -> writeEntry(out, eventA, eventB, sum));
+
+                out.flush();
+                file.getFD().sync();
+            }
+            // Атомарная замена: при сбое во время записи остаётся предыдущий снимок
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("Snapshot of partition {} written: offset={}, file={}", partition, state.getNextOffset(), target);
+        } catch (IOException | UncheckedIOException e) {
+            log.error("Failed to write snapshot of partition {} to {}", partition, target, e);
+        }
+    }
+
+    // Возвращает восстановленное состояние или null, если снимка нет или он повреждён
+    public PartitionState read(String topic, int partition) {
+        Path source = snapshotPath(topic, partition);
+        if (!Files.exists(source)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(source), BUFFER_SIZE))) {
+            int magic = in.readInt();
+            int version = in.readInt();
+            if (magic != MAGIC || version < 1 || version > VERSION || in.readInt() != partition) {
+                log.warn("Snapshot {} has unexpected header, ignoring it", source);
+                return null;
+            }
+            PartitionState state = new PartitionState();
+            state.setNextOffset(in.readLong());
+            if (version > 1) {
+                state.setDecayShift(in.readLong());
+            }
+            AggregatorStateStore store = state.getStore();
+
+            for (long i = in.readLong(); i > 0; i--) {
+                store.putWeight(in.readLong(), in.readLong(), in.readDouble());
+            }
+            for (long i = in.readLong(); i > 0; i--) {
+                store.addEventWeightSum(in.readLong(), in.readDouble());
+            }
+            for (long i = in.readLong(); i > 0; i--) {
+                store.addMinWeightsSum(in.readLong(), in.readLong(), in.readDouble());
+            }
+            state.setLastSnapshotMillis(System.currentTimeMillis());
+            return state;
+        } catch (IOException e) {
+            log.error("Failed to read snapshot of partition {} from {}", partition, source, e);
+            return null;
+        }
+    }
+
+    private Path snapshotPath(String topic, int partition) {
+        return Paths.get(aggregatorProperties.getSnapshot().getDirectory(), topic + "-" + partition + ".snapshot");
+    }
+
+    private static void writeEntry(DataOutputStream out, long key, double value) {
+        try {
+            out.writeLong(key);
+            out.writeDouble(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeEntry(DataOutputStream out, long first, long second, double value) {
+        try {
+            out.writeLong(first);
+            out.writeLong(second);
+            out.writeDouble(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
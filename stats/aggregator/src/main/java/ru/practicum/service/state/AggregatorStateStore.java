@@ -0,0 +1,47 @@
+package ru.practicum.service.state;
+
+// Хранилище состояния агрегатора: веса пользователей, суммы весов мероприятий
+// и суммы минимальных весов для пар мероприятий (eventA < eventB).
+public interface AggregatorStateStore {
+
+    double getWeight(long userId, long eventId);
+
+    void putWeight(long userId, long eventId, double weight);
+
+    boolean removeWeight(long userId, long eventId);
+
+    // Обход мероприятий, с которыми взаимодействовал пользователь
+    void forEachUserEvent(long userId, LongDoubleConsumer consumer);
+
+    // Обход всех весов: (userId, eventId, weight)
+    void forEachWeight(LongLongDoubleConsumer consumer);
+
+    double getEventWeightSum(long eventId);
+
+    double addEventWeightSum(long eventId, double delta);
+
+    void putEventWeightSum(long eventId, double sum);
+
+    double getMinWeightsSum(long eventA, long eventB);
+
+    double addMinWeightsSum(long eventA, long eventB, double delta);
+
+    void putMinWeightsSum(long eventA, long eventB, double sum);
+
+    boolean removeMinWeightsSum(long eventA, long eventB);
+
+    void forEachEventWeightSum(LongDoubleConsumer consumer);
+
+    void forEachMinWeightsSum(LongLongDoubleConsumer consumer);
+
+    // Умножает все веса и суммы на factor: перенос точки отсчёта затухания
+    void scale(double factor);
+
+    long weightCount();
+
+    long eventCount();
+
+    long pairCount();
+
+    long sizeInBytes();
+}
@@ -0,0 +1,32 @@
+package ru.practicum.service.state;
+
+final class HashUtils {
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final long ARRAY_HEADER_BYTES = 16;
+
+    private HashUtils() {
+    }
+
+    static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        h *= 0xC2B2AE3D27D4EB4FL;
+        return (int) (h ^ (h >>> 29));
+    }
+
+    static int mix(long first, long second) {
+        return mix(first * 0x9E3779B97F4A7C15L + second);
+    }
+
+    static int tableSize(int expectedSize, float loadFactor) {
+        long required = Math.max(2, (long) Math.ceil(expectedSize / loadFactor) + 1);
+        if (required > MAX_CAPACITY) {
+            throw new IllegalStateException("Hash table capacity exceeded: " + expectedSize);
+        }
+        return Integer.highestOneBit((int) (required - 1)) << 1;
+    }
+
+    static long arrayBytes(int length, int elementBytes) {
+        return ARRAY_HEADER_BYTES + (long) length * elementBytes;
+    }
+}
@@ -0,0 +1,6 @@
+package ru.practicum.service.state;
+
+@FunctionalInterface
+public interface LongDoubleConsumer {
+    void accept(long key, double value);
+}
@@ -0,0 +1,161 @@
+package ru.practicum.service.state;
+
+import java.util.Arrays;
+
+// Хеш-таблица long -> double с открытой адресацией (линейное пробирование) на примитивных массивах.
+// Не потокобезопасна.
+public class LongDoubleHashMap {
+    static final long EMPTY = Long.MIN_VALUE;
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private long[] keys;
+    private double[] values;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+
+    public LongDoubleHashMap() {
+        this(8);
+    }
+
+    public LongDoubleHashMap(int expectedSize) {
+        allocate(HashUtils.tableSize(expectedSize, LOAD_FACTOR));
+    }
+
+    public double get(long key, double defaultValue) {
+        int slot = findSlot(key);
+        return keys[slot] == EMPTY ? defaultValue : values[slot];
+    }
+
+    public boolean containsKey(long key) {
+        return keys[findSlot(key)] != EMPTY;
+    }
+
+    public void put(long key, double value) {
+        checkKey(key);
+        int slot = findSlot(key);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            values[slot] = value;
+            if (++size > resizeThreshold) {
+                rehash(keys.length << 1);
+            }
+        } else {
+            values[slot] = value;
+        }
+    }
+
+    // Прибавляет delta к значению по ключу и возвращает новое значение
+    public double add(long key, double delta) {
+        checkKey(key);
+        int slot = findSlot(key);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            values[slot] = delta;
+            if (++size > resizeThreshold) {
+                rehash(keys.length << 1);
+            }
+            return delta;
+        }
+        values[slot] += delta;
+        return values[slot];
+    }
+
+    public boolean remove(long key) {
+        int slot = findSlot(key);
+        if (keys[slot] == EMPTY) {
+            return false;
+        }
+        shiftKeys(slot);
+        size--;
+        return true;
+    }
+
+    public void forEach(LongDoubleConsumer consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                consumer.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    // Умножает все значения на factor
+    public void scale(double factor) {
+        for (int i = 0; i < values.length; i++) {
+            values[i] *= factor;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    // Объём, занимаемый массивами таблицы
+    public long sizeInBytes() {
+        return HashUtils.arrayBytes(keys.length, Long.BYTES) + HashUtils.arrayBytes(values.length, Double.BYTES);
+    }
+
+    private int findSlot(long key) {
+        int slot = HashUtils.mix(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    // Удаление со сдвигом последующих элементов цепочки, чтобы не оставлять «надгробий»
+    private void shiftKeys(int slot) {
+        int last = slot;
+        int current = (slot + 1) & mask;
+        while (keys[current] != EMPTY) {
+            int ideal = HashUtils.mix(keys[current]) & mask;
+            if (((current - ideal) & mask) >= ((current - last) & mask)) {
+                keys[last] = keys[current];
+                values[last] = values[current];
+                last = current;
+            }
+            current = (current + 1) & mask;
+        }
+        keys[last] = EMPTY;
+    }
+
+    private void rehash(int capacity) {
+        if (capacity > MAX_CAPACITY) {
+            throw new IllegalStateException("Hash table capacity exceeded: " + size);
+        }
+        long[] oldKeys = keys;
+        double[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = findSlot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        values = new double[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static void checkKey(long key) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Key " + key + " is reserved");
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package ru.practicum.service.state;
+
+@FunctionalInterface
+public interface LongLongDoubleConsumer {
+    void accept(long first, long second, double value);
+}
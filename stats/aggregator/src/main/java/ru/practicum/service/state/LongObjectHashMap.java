@@ -0,0 +1,136 @@
+package ru.practicum.service.state;
+
+import java.util.Arrays;
+import java.util.function.LongFunction;
+
+// Хеш-таблица long -> V с открытой адресацией. Не потокобезопасна.
+public class LongObjectHashMap<V> {
+    private static final long EMPTY = LongDoubleHashMap.EMPTY;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+
+    public LongObjectHashMap() {
+        this(16);
+    }
+
+    public LongObjectHashMap(int expectedSize) {
+        allocate(HashUtils.tableSize(expectedSize, LOAD_FACTOR));
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int slot = findSlot(key);
+        return keys[slot] == EMPTY ? null : (V) values[slot];
+    }
+
+    @SuppressWarnings("unchecked")
+    public V computeIfAbsent(long key, LongFunction<V> factory) {
+        checkKey(key);
+        int slot = findSlot(key);
+        if (keys[slot] != EMPTY) {
+            return (V) values[slot];
+        }
+        V value = factory.apply(key);
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > resizeThreshold) {
+            rehash(keys.length << 1);
+        }
+        return value;
+    }
+
+    public boolean remove(long key) {
+        int slot = findSlot(key);
+        if (keys[slot] == EMPTY) {
+            return false;
+        }
+        shiftKeys(slot);
+        size--;
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(Consumer<V> consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                consumer.accept(keys[i], (V) values[i]);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    // Объём массивов самой таблицы, без учёта объектов-значений
+    public long sizeInBytes() {
+        return HashUtils.arrayBytes(keys.length, Long.BYTES) + HashUtils.arrayBytes(values.length, Integer.BYTES);
+    }
+
+    private int findSlot(long key) {
+        int slot = HashUtils.mix(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void shiftKeys(int slot) {
+        int last = slot;
+        int current = (slot + 1) & mask;
+        while (keys[current] != EMPTY) {
+            int ideal = HashUtils.mix(keys[current]) & mask;
+            if (((current - ideal) & mask) >= ((current - last) & mask)) {
+                keys[last] = keys[current];
+                values[last] = values[current];
+                last = current;
+            }
+            current = (current + 1) & mask;
+        }
+        keys[last] = EMPTY;
+        values[last] = null;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = findSlot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static void checkKey(long key) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Key " + key + " is reserved");
+        }
+    }
+
+    @FunctionalInterface
+    public interface Consumer<V> {
+        void accept(long key, V value);
+    }
+}
@@ -0,0 +1,176 @@
+package ru.practicum.service.state;
+
+import java.util.Arrays;
+
+// Хеш-таблица (long, long) -> double с открытой адресацией.
+// Пара ключей хранится упакованной в соседних ячейках одного массива: keys[2 * slot], keys[2 * slot + 1].
+// Не потокобезопасна.
+public class LongPairDoubleHashMap {
+    private static final long EMPTY = LongDoubleHashMap.EMPTY;
+    private static final float LOAD_FACTOR = 0.75f;
+    // Ключи занимают два элемента массива на ячейку, поэтому ячеек вдвое меньше, чем допускает HashUtils
+    private static final int MAX_CAPACITY = 1 << 29;
+
+    private long[] keys;
+    private double[] values;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+
+    public LongPairDoubleHashMap() {
+        this(16);
+    }
+
+    public LongPairDoubleHashMap(int expectedSize) {
+        allocate(checkCapacity(HashUtils.tableSize(expectedSize, LOAD_FACTOR), expectedSize));
+    }
+
+    public double get(long first, long second, double defaultValue) {
+        int slot = findSlot(first, second);
+        return keys[slot << 1] == EMPTY ? defaultValue : values[slot];
+    }
+
+    public boolean containsKey(long first, long second) {
+        return keys[findSlot(first, second) << 1] != EMPTY;
+    }
+
+    public void put(long first, long second, double value) {
+        checkKey(first);
+        int slot = findSlot(first, second);
+        if (keys[slot << 1] == EMPTY) {
+            insert(slot, first, second, value);
+        } else {
+            values[slot] = value;
+        }
+    }
+
+    // Прибавляет delta к значению по паре ключей и возвращает новое значение
+    public double add(long first, long second, double delta) {
+        checkKey(first);
+        int slot = findSlot(first, second);
+        if (keys[slot << 1] == EMPTY) {
+            insert(slot, first, second, delta);
+            return delta;
+        }
+        values[slot] += delta;
+        return values[slot];
+    }
+
+    public boolean remove(long first, long second) {
+        int slot = findSlot(first, second);
+        if (keys[slot << 1] == EMPTY) {
+            return false;
+        }
+        shiftKeys(slot);
+        size--;
+        return true;
+    }
+
+    public void forEach(LongLongDoubleConsumer consumer) {
+        int capacity = values.length;
+        for (int slot = 0; slot < capacity; slot++) {
+            if (keys[slot << 1] != EMPTY) {
+                consumer.accept(keys[slot << 1], keys[(slot << 1) + 1], values[slot]);
+            }
+        }
+    }
+
+    // Умножает все значения на factor
+    public void scale(double factor) {
+        for (int i = 0; i < values.length; i++) {
+            values[i] *= factor;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    // Объём, занимаемый массивами таблицы
+    public long sizeInBytes() {
+        return HashUtils.arrayBytes(keys.length, Long.BYTES) + HashUtils.arrayBytes(values.length, Double.BYTES);
+    }
+
+    private void insert(int slot, long first, long second, double value) {
+        keys[slot << 1] = first;
+        keys[(slot << 1) + 1] = second;
+        values[slot] = value;
+        if (++size > resizeThreshold) {
+            rehash(values.length << 1);
+        }
+    }
+
+    private int findSlot(long first, long second) {
+        int slot = HashUtils.mix(first, second) & mask;
+        while (keys[slot << 1] != EMPTY
+                && (keys[slot << 1] != first || keys[(slot << 1) + 1] != second)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    // Удаление со сдвигом последующих элементов цепочки, чтобы не оставлять «надгробий»
+    private void shiftKeys(int slot) {
+        int last = slot;
+        int current = (slot + 1) & mask;
+        while (keys[current << 1] != EMPTY) {
+            int ideal = HashUtils.mix(keys[current << 1], keys[(current << 1) + 1]) & mask;
+            if (((current - ideal) & mask) >= ((current - last) & mask)) {
+                keys[last << 1] = keys[current << 1];
+                keys[(last << 1) + 1] = keys[(current << 1) + 1];
+                values[last] = values[current];
+                last = current;
+            }
+            current = (current + 1) & mask;
+        }
+        keys[last << 1] = EMPTY;
+    }
+
+    private void rehash(int capacity) {
+        checkCapacity(capacity, size);
+        long[] oldKeys = keys;
+        double[] oldValues = values;
+        allocate(capacity);
+        for (int oldSlot = 0; oldSlot < oldValues.length; oldSlot++) {
+            long first = oldKeys[oldSlot << 1];
+            if (first != EMPTY) {
+                long second = oldKeys[(oldSlot << 1) + 1];
+                int slot = findSlot(first, second);
+                keys[slot << 1] = first;
+                keys[(slot << 1) + 1] = second;
+                values[slot] = oldValues[oldSlot];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity << 1];
+        Arrays.fill(keys, EMPTY);
+        values = new double[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int checkCapacity(int capacity, int pairs) {
+        if (capacity > MAX_CAPACITY) {
+            throw new IllegalStateException("Pair hash table capacity exceeded: " + pairs
+                    + " pairs need more than " + MAX_CAPACITY + " slots");
+        }
+        return capacity;
+    }
+
+    private static void checkKey(long first) {
+        if (first == EMPTY) {
+            throw new IllegalArgumentException("Key " + first + " is reserved");
+        }
+    }
+}
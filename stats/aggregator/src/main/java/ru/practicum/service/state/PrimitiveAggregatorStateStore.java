@@ -0,0 +1,129 @@
+package ru.practicum.service.state;
+
+// Реализация хранилища на примитивных хеш-таблицах без упаковки ключей и значений в объекты.
+// Не потокобезопасна: рассчитана на обновление из одного потока-обработчика.
+public class PrimitiveAggregatorStateStore implements AggregatorStateStore {
+    private static final int USER_EVENTS_EXPECTED_SIZE = 4;
+
+    private final LongObjectHashMap<LongDoubleHashMap> userEventWeights = new LongObjectHashMap<>();
+    private final LongDoubleHashMap eventWeightSums = new LongDoubleHashMap();
+    private final LongPairDoubleHashMap minWeightsSums = new LongPairDoubleHashMap();
+    private long weightCount;
+
+    @Override
+    public double getWeight(long userId, long eventId) {
+        LongDoubleHashMap userEvents = userEventWeights.get(userId);
+        return userEvents == null ? 0.0 : userEvents.get(eventId, 0.0);
+    }
+
+    @Override
+    public void putWeight(long userId, long eventId, double weight) {
+        LongDoubleHashMap userEvents = userEventWeights.computeIfAbsent(userId,
+                k -> new LongDoubleHashMap(USER_EVENTS_EXPECTED_SIZE));
+        int sizeBefore = userEvents.size();
+        userEvents.put(eventId, weight);
+        weightCount += userEvents.size() - sizeBefore;
+    }
+
+    @Override
+    public boolean removeWeight(long userId, long eventId) {
+        LongDoubleHashMap userEvents = userEventWeights.get(userId);
+        if (userEvents == null || !userEvents.remove(eventId)) {
+            return false;
+        }
+        weightCount--;
+        if (userEvents.isEmpty()) {
+            userEventWeights.remove(userId);
+        }
+        return true;
+    }
+
+    @Override
+    public void forEachUserEvent(long userId, LongDoubleConsumer consumer) {
+        LongDoubleHashMap userEvents = userEventWeights.get(userId);
+        if (userEvents != null) {
+            userEvents.forEach(consumer);
+        }
+    }
+
+    @Override
+    public void forEachWeight(LongLongDoubleConsumer consumer) {
+        userEventWeights.forEach((userId, events) ->
+                events.forEach((eventId, weight) -> consumer.accept(userId, eventId, weight)));
+    }
+
+    @Override
+    public double getEventWeightSum(long eventId) {
+        return eventWeightSums.get(eventId, 0.0);
+    }
+
+    @Override
+    public double addEventWeightSum(long eventId, double delta) {
+        return eventWeightSums.add(eventId, delta);
+    }
+
+    @Override
+    public void putEventWeightSum(long eventId, double sum) {
+        eventWeightSums.put(eventId, sum);
+    }
+
+    @Override
+    public double getMinWeightsSum(long eventA, long eventB) {
+        return minWeightsSums.get(eventA, eventB, 0.0);
+    }
+
+    @Override
+    public double addMinWeightsSum(long eventA, long eventB, double delta) {
+        return minWeightsSums.add(eventA, eventB, delta);
+    }
+
+    @Override
+    public void putMinWeightsSum(long eventA, long eventB, double sum) {
+        minWeightsSums.put(eventA, eventB, sum);
+    }
+
+    @Override
+    public boolean removeMinWeightsSum(long eventA, long eventB) {
+        return minWeightsSums.remove(eventA, eventB);
+    }
+
+    @Override
+    public void forEachEventWeightSum(LongDoubleConsumer consumer) {
+        eventWeightSums.forEach(consumer);
+    }
+
+    @Override
+    public void forEachMinWeightsSum(LongLongDoubleConsumer consumer) {
+        minWeightsSums.forEach(consumer);
+    }
+
+    @Override
+    public void scale(double factor) {
+        userEventWeights.forEach((userId, events) -> events.scale(factor));
+        eventWeightSums.scale(factor);
+        minWeightsSums.scale(factor);
+    }
+
+    @Override
+    public long weightCount() {
+        return weightCount;
+    }
+
+    @Override
+    public long eventCount() {
+        return eventWeightSums.size();
+    }
+
+    @Override
+    public long pairCount() {
+        return minWeightsSums.size();
+    }
+
+    @Override
+    public long sizeInBytes() {
+        long[] userEventsBytes = new long[1];
+        userEventWeights.forEach((userId, events) -> userEventsBytes[0] += events.sizeInBytes());
+        return userEventWeights.sizeInBytes() + userEventsBytes[0]
+                + eventWeightSums.sizeInBytes() + minWeightsSums.sizeInBytes();
+    }
+}
@@ -0,0 +1,26 @@
+package ru.practicum;
+
+import ru.practicum.ewm.stats.avro.ActionTypeAvro;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+
+import java.time.Instant;
+
+// Действия пользователей для тестов агрегатора
+public final class UserActionFixtures {
+
+    private UserActionFixtures() {
+    }
+
+    public static UserActionAvro action(long userId, long eventId, ActionTypeAvro actionType) {
+        return action(userId, eventId, actionType, Instant.now());
+    }
+
+    public static UserActionAvro action(long userId, long eventId, ActionTypeAvro actionType, Instant timestamp) {
+        return UserActionAvro.newBuilder()
+                .setUserId(userId)
+                .setEventId(eventId)
+                .setActionType(actionType)
+                .setTimestamp(timestamp)
+                .build();
+    }
+}
@@ -0,0 +1,43 @@
+package ru.practicum.config;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class AggregatorConfigValidatorTest {
+
+    @Test
+    public void validate_whenWindowWithChangelog_thenStartupFails() {
+        AggregatorProperties aggregatorProperties = windowProperties();
+        KafkaProperties kafkaProperties = new KafkaProperties();
+        kafkaProperties.getChangelog().setEnabled(true);
+
+        assertThrows(IllegalStateException.class,
+                () -> new AggregatorConfigValidator(aggregatorProperties, kafkaProperties).validate());
+    }
+
+    @Test
+    public void validate_whenWindowWithSnapshotsOrDecay_thenStartupFails() {
+        AggregatorProperties withSnapshots = windowProperties();
+        withSnapshots.getSnapshot().setEnabled(true);
+        AggregatorProperties withDecay = windowProperties();
+        withDecay.getDecay().setEnabled(true);
+
+        assertThrows(IllegalStateException.class,
+                () -> new AggregatorConfigValidator(withSnapshots, new KafkaProperties()).validate());
+        assertThrows(IllegalStateException.class,
+                () -> new AggregatorConfigValidator(withDecay, new KafkaProperties()).validate());
+    }
+
+    @Test
+    public void validate_whenWindowAlone_thenAccepted() {
+        assertDoesNotThrow(() -> new AggregatorConfigValidator(windowProperties(), new KafkaProperties()).validate());
+    }
+
+    private AggregatorProperties windowProperties() {
+        AggregatorProperties properties = new AggregatorProperties();
+        properties.getWindow().setEnabled(true);
+        return properties;
+    }
+}
@@ -0,0 +1,87 @@
+package ru.practicum.config;
+
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.common.TopicPartitionInfo;
+import org.apache.kafka.common.errors.UnknownTopicOrPartitionException;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.core.KafkaAdmin;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ChangelogPartitionsValidatorTest {
+    private static final String ACTIONS = "actions";
+    private static final String CHANGELOG = "changelog";
+
+    private final KafkaAdmin kafkaAdmin = mock(KafkaAdmin.class);
+
+    @Test
+    public void validate_whenExistingChangelogHasFewerPartitions_thenStartupFails() {
+        describe(ACTIONS, 3);
+        describe(CHANGELOG, 1);
+
+        assertThrows(IllegalStateException.class, () -> validator(3).validate());
+    }
+
+    @Test
+    public void validate_whenChangelogMissingAndConfiguredPartitionsDiffer_thenStartupFails() {
+        describe(ACTIONS, 3);
+        missing(CHANGELOG);
+
+        assertThrows(IllegalStateException.class, () -> validator(1).validate());
+    }
+
+    @Test
+    public void validate_whenPartitionsMatch_thenAccepted() {
+        describe(ACTIONS, 3);
+        missing(CHANGELOG);
+
+        assertDoesNotThrow(() -> validator(3).validate());
+    }
+
+    @Test
+    public void validate_whenActionsTopicMissing_thenSkipped() {
+        missing(ACTIONS);
+
+        assertDoesNotThrow(() -> validator(1).validate());
+    }
+
+    @Test
+    public void validate_whenBrokerUnavailable_thenSkipped() {
+        when(kafkaAdmin.describeTopics(ACTIONS))
+                .thenThrow(new KafkaException("Failed to obtain topic descriptions", new TimeoutException()));
+
+        assertDoesNotThrow(() -> validator(1).validate());
+    }
+
+    private ChangelogPartitionsValidator validator(int changelogPartitions) {
+        KafkaProperties kafkaProperties = new KafkaProperties();
+        kafkaProperties.setConsumer(new KafkaProperties.ConsumerConfig());
+        kafkaProperties.getConsumer().setTopic(ACTIONS);
+        kafkaProperties.getChangelog().setEnabled(true);
+        kafkaProperties.getChangelog().setTopic(CHANGELOG);
+        kafkaProperties.getChangelog().setPartitions(changelogPartitions);
+        return new ChangelogPartitionsValidator(kafkaProperties, kafkaAdmin);
+    }
+
+    private void describe(String topic, int partitions) {
+        List<TopicPartitionInfo> infos = IntStream.range(0, partitions)
+                .mapToObj(partition -> new TopicPartitionInfo(partition, null, List.of(), List.of()))
+                .toList();
+        when(kafkaAdmin.describeTopics(topic)).thenReturn(Map.of(topic, new TopicDescription(topic, false, infos)));
+    }
+
+    private void missing(String topic) {
+        when(kafkaAdmin.describeTopics(topic)).thenThrow(new KafkaException("Failed to obtain topic descriptions",
+                new ExecutionException(new UnknownTopicOrPartitionException(topic))));
+    }
+}
@@ -0,0 +1,94 @@
+package ru.practicum.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.practicum.config.AggregatorProperties;
+import ru.practicum.ewm.stats.avro.ActionTypeAvro;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.service.AggregatorCheckpointService;
+import ru.practicum.service.PartitionState;
+import ru.practicum.service.SimilarityEmitter;
+import ru.practicum.service.SimilarityMerger;
+import ru.practicum.service.SimilarityWindow;
+import ru.practicum.service.UserActionAggregator;
+import ru.practicum.service.WeightDecay;
+import ru.practicum.service.snapshot.AggregatorSnapshotStore;
+import ru.practicum.service.state.AggregatorStateStore;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static ru.practicum.UserActionFixtures.action;
+
+public class KafkaBatchTopicListenerTest {
+    private static final Instant NOW = Instant.parse("2026-06-01T00:00:00Z");
+
+    @Test
+    public void deduplicate_whenDecayDisabled_thenStrongestActionTypeKept() {
+        KafkaBatchTopicListener listener = listener(new WeightDecay());
+
+        List<ConsumerRecord<String, UserActionAvro>> result = listener.deduplicate(List.of(
+                record(0, action(1, 10, ActionTypeAvro.LIKE, NOW)),
+                record(1, action(1, 10, ActionTypeAvro.VIEW, NOW.plus(Duration.ofDays(30))))));
+
+        assertEquals(List.of(0L), result.stream().map(ConsumerRecord::offset).toList());
+    }
+
+    @Test
+    public void deduplicate_whenDecayEnabled_thenLargestScaledWeightKept() {
+        AggregatorProperties properties = new AggregatorProperties();
+        properties.getDecay().setEnabled(true);
+        properties.getDecay().setHalfLife(Duration.ofDays(7));
+        KafkaBatchTopicListener listener = listener(new WeightDecay(properties));
+
+        // Просмотр через 14 дней весит 0.4 * 4 = 1.6 против 1.0 у лайка
+        List<ConsumerRecord<String, UserActionAvro>> result = listener.deduplicate(List.of(
+                record(0, action(1, 10, ActionTypeAvro.LIKE, NOW)),
+                record(1, action(1, 10, ActionTypeAvro.VIEW, NOW.plus(Duration.ofDays(14)))),
+                record(2, action(2, 10, ActionTypeAvro.REGISTER, NOW))));
+
+        assertEquals(List.of(1L, 2L), result.stream().map(ConsumerRecord::offset).toList());
+    }
+
+    // Повторное действие в новом бакете окна не схлопывается с действием предыдущего: у бакета свои веса
+    @Test
+    public void handleEvents_whenWindowEnabled_thenActionsOfDifferentBucketsKept() {
+        AggregatorProperties properties = new AggregatorProperties();
+        properties.getWindow().setEnabled(true);
+        properties.getWindow().setLength(Duration.ofDays(2));
+        properties.getWindow().setBucket(Duration.ofDays(1));
+        SimilarityWindow window = new SimilarityWindow(properties);
+        UserActionAggregator aggregator = new UserActionAggregator(new SimilarityMerger(), new WeightDecay(), window);
+        SimilarityEmitter emitter = new SimilarityEmitter(mock(KafkaSimilarityProducer.class), properties,
+                new SimpleMeterRegistry());
+        AggregatorCheckpointService checkpointService = new AggregatorCheckpointService(aggregator,
+                mock(AggregatorSnapshotStore.class), properties, mock(KafkaChangelogProducer.class),
+                mock(KafkaChangelogRestorer.class));
+        KafkaBatchTopicListener listener = new KafkaBatchTopicListener(aggregator, emitter, checkpointService,
+                new WeightDecay(), window);
+        Instant nextDay = NOW.plus(Duration.ofDays(1));
+
+        listener.handleEvents(List.of(
+                record(0, action(1, 10, ActionTypeAvro.LIKE, NOW)),
+                record(1, action(1, 10, ActionTypeAvro.VIEW, nextDay)),
+                record(2, action(1, 20, ActionTypeAvro.VIEW, nextDay))));
+
+        PartitionState state = aggregator.getPartition(0);
+        AggregatorStateStore newest = state.getBuckets().get(window.bucketOf(nextDay));
+        assertEquals(1.0, state.getBuckets().get(window.bucketOf(NOW)).getWeight(1, 10));
+        assertEquals(0.4, newest.getWeight(1, 10));
+        assertEquals(0.4, newest.getMinWeightsSum(10, 20));
+    }
+
+    private KafkaBatchTopicListener listener(WeightDecay weightDecay) {
+        return new KafkaBatchTopicListener(null, null, null, weightDecay, new SimilarityWindow());
+    }
+
+    private ConsumerRecord<String, UserActionAvro> record(long offset, UserActionAvro action) {
+        return new ConsumerRecord<>("actions", 0, offset, String.valueOf(action.getUserId()), action);
+    }
+}
@@ -0,0 +1,113 @@
+package ru.practicum.kafka;
+
+import kafka.serialization.AvroSerializer;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import ru.practicum.config.AggregatorProperties;
+import ru.practicum.config.KafkaProperties;
+import ru.practicum.ewm.stats.avro.ActionTypeAvro;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.service.PartitionState;
+import ru.practicum.service.SimilarityMerger;
+import ru.practicum.service.UserActionAggregator;
+import ru.practicum.service.WeightDecay;
+import ru.practicum.service.state.AggregatorStateStore;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.practicum.UserActionFixtures.action;
+
+@EmbeddedKafka(partitions = 2, topics = KafkaChangelogRestorerTest.CHANGELOG_TOPIC)
+public class KafkaChangelogRestorerTest {
+    static final String CHANGELOG_TOPIC = "stats.aggregator-state-changelog.test";
+    private static final int ACTIONS = 20_000;
+
+    @Test
+    public void restore_whenChangelogWritten_thenPartitionStateRebuilt(EmbeddedKafkaBroker broker) {
+        UserActionAggregator aggregator = new UserActionAggregator(new SimilarityMerger());
+        Random random = new Random(42);
+        ActionTypeAvro[] actionTypes = ActionTypeAvro.values();
+
+        writeAndRestore(broker, aggregator, 0, ACTIONS, offset -> action(random.nextInt(500), random.nextInt(200),
+                actionTypes[random.nextInt(actionTypes.length)]));
+    }
+
+    // Период полураспада — минута, действия идут раз в 2 секунды: точка отсчёта затухания переносится
+    // каждые ~1900 действий, и changelog получает значения партиции в новом масштабе
+    @Test
+    public void restore_whenDecayEpochMoved_thenStateRebuiltWithShift(EmbeddedKafkaBroker broker) {
+        AggregatorProperties properties = new AggregatorProperties();
+        properties.getDecay().setEnabled(true);
+        properties.getDecay().setHalfLife(Duration.ofMinutes(1));
+        UserActionAggregator aggregator = new UserActionAggregator(new SimilarityMerger(), new WeightDecay(properties));
+        Random random = new Random(7);
+        ActionTypeAvro[] actionTypes = ActionTypeAvro.values();
+        Instant start = Instant.parse("2026-06-01T00:00:00Z");
+
+        PartitionState restored = writeAndRestore(broker, aggregator, 1, 4_000, offset -> action(random.nextInt(200),
+                random.nextInt(100), actionTypes[random.nextInt(actionTypes.length)], start.plusSeconds(2L * offset)));
+
+        assertEquals(aggregator.getPartition(1).getDecayShift(), restored.getDecayShift());
+    }
+
+    private PartitionState writeAndRestore(EmbeddedKafkaBroker broker, UserActionAggregator aggregator, int partition,
+                                           int actions, IntFunction<UserActionAvro> actionFactory) {
+        KafkaProperties kafkaProperties = new KafkaProperties();
+        kafkaProperties.getChangelog().setEnabled(true);
+        kafkaProperties.getChangelog().setTopic(CHANGELOG_TOPIC);
+
+        KafkaTemplate<String, SpecificRecordBase> kafkaTemplate = new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(Map.of(
+                ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString(),
+                ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class,
+                ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, AvroSerializer.class)));
+        KafkaChangelogProducer changelogProducer = new KafkaChangelogProducer(kafkaTemplate, kafkaProperties);
+
+        for (int offset = 0; offset < actions; offset++) {
+            aggregator.updateState(actionFactory.apply(offset), partition);
+            PartitionState state = aggregator.getPartition(partition);
+            state.setNextOffset(offset + 1);
+            if (state.getDelta().isApplied() || state.isRescaled()) {
+                changelogProducer.send(partition, state.getDelta(), state);
+            }
+            state.setRescaled(false);
+        }
+        kafkaTemplate.flush();
+
+        KafkaChangelogRestorer restorer = new KafkaChangelogRestorer(new DefaultKafkaConsumerFactory<>(Map.of(
+                ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString(),
+                ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class,
+                ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class)), kafkaProperties);
+        long started = System.nanoTime();
+        PartitionState restored = restorer.restore(partition);
+        Duration restoreTime = Duration.ofNanos(System.nanoTime() - started);
+        System.out.printf("Changelog restore of %d actions took %d ms%n", actions, restoreTime.toMillis());
+
+        assertNotNull(restored);
+        AggregatorStateStore expected = aggregator.getPartition(partition).getStore();
+        AggregatorStateStore actual = restored.getStore();
+        assertTrue(restored.getNextOffset() > 0);
+        assertEquals(expected.weightCount(), actual.weightCount());
+        assertEquals(expected.eventCount(), actual.eventCount());
+        assertEquals(expected.pairCount(), actual.pairCount());
+        expected.forEachWeight((userId, eventId, weight) ->
+                assertEquals(weight, actual.getWeight(userId, eventId)));
+        expected.forEachMinWeightsSum((eventA, eventB, sum) ->
+                assertEquals(sum, actual.getMinWeightsSum(eventA, eventB), 1e-9));
+        return restored;
+    }
+}
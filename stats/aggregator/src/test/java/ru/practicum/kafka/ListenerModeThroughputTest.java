@@ -0,0 +1,128 @@
+package ru.practicum.kafka;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import kafka.deserialization.UserActionDeserializer;
+import kafka.serialization.AvroSerializer;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import ru.practicum.config.AggregatorProperties;
+import ru.practicum.config.KafkaProperties;
+import ru.practicum.ewm.stats.avro.ActionTypeAvro;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.service.AggregatorCheckpointService;
+import ru.practicum.service.SimilarityEmitter;
+import ru.practicum.service.SimilarityMerger;
+import ru.practicum.service.UserActionAggregator;
+import ru.practicum.service.SimilarityWindow;
+import ru.practicum.service.WeightDecay;
+import ru.practicum.service.snapshot.AggregatorSnapshotStore;
+import ru.practicum.service.state.AggregatorStateStore;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static ru.practicum.UserActionFixtures.action;
+
+// Сравнение пропускной способности поштучного и пакетного режимов слушателя на встроенном брокере.
+// Запуск: mvn test -Dstats.benchmarks=true -Dtest=ListenerModeThroughputTest
+@EnabledIfSystemProperty(named = "stats.benchmarks", matches = "true")
+@EmbeddedKafka(partitions = 1, topics = {ListenerModeThroughputTest.ACTIONS_TOPIC, ListenerModeThroughputTest.SIMILARITY_TOPIC})
+public class ListenerModeThroughputTest {
+    static final String ACTIONS_TOPIC = "stats.user-actions.throughput-test";
+    static final String SIMILARITY_TOPIC = "stats.events-similarity.throughput-test";
+    private static final int ACTIONS = 200_000;
+
+    @Test
+    public void compareRecordAndBatchModes(EmbeddedKafkaBroker broker) {
+        KafkaTemplate<String, SpecificRecordBase> kafkaTemplate = new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(Map.of(
+                ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString(),
+                ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class,
+                ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, AvroSerializer.class)));
+        Random random = new Random(42);
+        ActionTypeAvro[] actionTypes = ActionTypeAvro.values();
+        for (int i = 0; i < ACTIONS; i++) {
+            // Просмотры преобладают и часто повторяются, как в реальном потоке действий
+            ActionTypeAvro actionType = random.nextInt(10) < 7 ? ActionTypeAvro.VIEW : actionTypes[random.nextInt(actionTypes.length)];
+            UserActionAvro action = action(random.nextInt(2_000), random.nextInt(300), actionType);
+            kafkaTemplate.send(ACTIONS_TOPIC, String.valueOf(action.getUserId()), action);
+        }
+        kafkaTemplate.flush();
+
+        UserActionAggregator recordAggregator = new UserActionAggregator(new SimilarityMerger());
+        double recordThroughput = run(broker, kafkaTemplate, recordAggregator, AggregatorProperties.ListenerMode.RECORD);
+        UserActionAggregator batchAggregator = new UserActionAggregator(new SimilarityMerger());
+        double batchThroughput = run(broker, kafkaTemplate, batchAggregator, AggregatorProperties.ListenerMode.BATCH);
+
+        System.out.printf("Listener throughput for %d actions: record=%.0f actions/s, batch=%.0f actions/s%n",
+                ACTIONS, recordThroughput, batchThroughput);
+
+        // Дедупликация внутри пачки не меняет итоговое состояние
+        AggregatorStateStore expected = recordAggregator.getPartition(0).getStore();
+        AggregatorStateStore actual = batchAggregator.getPartition(0).getStore();
+        assertEquals(expected.weightCount(), actual.weightCount());
+        assertEquals(expected.pairCount(), actual.pairCount());
+        expected.forEachMinWeightsSum((eventA, eventB, sum) ->
+                assertEquals(sum, actual.getMinWeightsSum(eventA, eventB), 1e-9));
+    }
+
+    private double run(EmbeddedKafkaBroker broker, KafkaTemplate<String, SpecificRecordBase> kafkaTemplate,
+                       UserActionAggregator aggregator, AggregatorProperties.ListenerMode mode) {
+        KafkaProperties kafkaProperties = new KafkaProperties();
+        kafkaProperties.getProducer().setTopic(SIMILARITY_TOPIC);
+        AggregatorProperties aggregatorProperties = new AggregatorProperties();
+        SimilarityEmitter emitter = new SimilarityEmitter(
+                new KafkaSimilarityProducer(kafkaTemplate, kafkaProperties), aggregatorProperties, new SimpleMeterRegistry());
+        AggregatorCheckpointService checkpointService = new AggregatorCheckpointService(aggregator,
+                mock(AggregatorSnapshotStore.class), aggregatorProperties,
+                new KafkaChangelogProducer(kafkaTemplate, kafkaProperties), mock(KafkaChangelogRestorer.class));
+        KafkaTopicListener recordListener = new KafkaTopicListener(aggregator, emitter, checkpointService);
+        KafkaBatchTopicListener batchListener = new KafkaBatchTopicListener(aggregator, emitter, checkpointService,
+                new WeightDecay(), new SimilarityWindow());
+
+        try (Consumer<String, UserActionAvro> consumer = new DefaultKafkaConsumerFactory<String, UserActionAvro>(Map.of(
+                ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString(),
+                ConsumerConfig.GROUP_ID_CONFIG, "throughput-" + UUID.randomUUID(),
+                ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest",
+                ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 500,
+                ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class,
+                ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, UserActionDeserializer.class)).createConsumer()) {
+            consumer.subscribe(List.of(ACTIONS_TOPIC));
+            int consumed = 0;
+            long started = System.nanoTime();
+            while (consumed < ACTIONS) {
+                ConsumerRecords<String, UserActionAvro> polled = consumer.poll(Duration.ofMillis(500));
+                List<ConsumerRecord<String, UserActionAvro>> records = new ArrayList<>(polled.count());
+                polled.forEach(records::add);
+                if (mode == AggregatorProperties.ListenerMode.BATCH) {
+                    batchListener.handleEvents(records);
+                } else {
+                    records.forEach(recordListener::handleEvent);
+                }
+                consumer.commitSync();
+                consumed += records.size();
+            }
+            kafkaTemplate.flush();
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - started);
+            return ACTIONS * 1_000.0 / Math.max(1, elapsed.toMillis());
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package ru.practicum.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.practicum.config.AggregatorProperties;
+import ru.practicum.ewm.stats.avro.ActionTypeAvro;
+import ru.practicum.kafka.KafkaChangelogProducer;
+import ru.practicum.kafka.KafkaChangelogRestorer;
+import ru.practicum.service.snapshot.AggregatorSnapshotStore;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+import static org.springframework.transaction.support.TransactionSynchronization.STATUS_COMMITTED;
+import static org.springframework.transaction.support.TransactionSynchronization.STATUS_ROLLED_BACK;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.clearSynchronization;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.getSynchronizations;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.initSynchronization;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.isSynchronizationActive;
+import static ru.practicum.UserActionFixtures.action;
+
+public class AggregatorCheckpointServiceTest {
+    private static final String TOPIC = "actions";
+
+    private final AggregatorSnapshotStore snapshotStore = mock(AggregatorSnapshotStore.class);
+    private final UserActionAggregator aggregator = new UserActionAggregator(new SimilarityMerger());
+    private final AggregatorCheckpointService checkpointService = checkpointService();
+
+    @AfterEach
+    public void clear() {
+        if (isSynchronizationActive()) {
+            clearSynchronization();
+        }
+    }
+
+    @Test
+    public void onRecordProcessed_whenTransactionCommitted_thenSnapshotWrittenAfterCommit() {
+        initSynchronization();
+        process(0);
+        process(1);
+        verifyNoInteractions(snapshotStore);
+
+        getSynchronizations().forEach(synchronization -> synchronization.afterCompletion(STATUS_COMMITTED));
+
+        verify(snapshotStore, times(1)).write(TOPIC, 0, aggregator.getPartition(0));
+    }
+
+    @Test
+    public void onRecordProcessed_whenTransactionRolledBack_thenSnapshotNotWritten() {
+        initSynchronization();
+        process(0);
+
+        getSynchronizations().forEach(synchronization -> synchronization.afterCompletion(STATUS_ROLLED_BACK));
+
+        verifyNoInteractions(snapshotStore);
+    }
+
+    @Test
+    public void onRecordProcessed_whenNoTransaction_thenSnapshotWrittenImmediately() {
+        process(0);
+
+        verify(snapshotStore).write(TOPIC, 0, aggregator.getPartition(0));
+    }
+
+    @Test
+    public void rollback_whenSnapshotted_thenUncommittedChangesDiscarded(@TempDir Path directory) {
+        AggregatorProperties properties = new AggregatorProperties();
+        properties.getSnapshot().setEnabled(true);
+        properties.getSnapshot().setDirectory(directory.toString());
+        properties.getSnapshot().setInterval(Duration.ZERO);
+        AggregatorCheckpointService service = new AggregatorCheckpointService(aggregator,
+                new AggregatorSnapshotStore(properties), properties,
+                mock(KafkaChangelogProducer.class), mock(KafkaChangelogRestorer.class));
+        aggregator.updateState(action(1, 1, ActionTypeAvro.VIEW), 0);
+        service.onRecordProcessed(TOPIC, 0, 0);
+        properties.getSnapshot().setInterval(Duration.ofHours(1));
+        aggregator.updateState(action(1, 2, ActionTypeAvro.VIEW), 0);
+        service.onRecordProcessed(TOPIC, 0, 1);
+
+        Long offset = service.rollback(TOPIC, 0);
+
+        assertEquals(1L, offset);
+        assertEquals(1, aggregator.getPartition(0).getStore().weightCount());
+        assertEquals(0, aggregator.getPartition(0).getStore().pairCount());
+    }
+
+    private void process(long offset) {
+        aggregator.updateState(action(1, offset, ActionTypeAvro.VIEW), 0);
+        checkpointService.onRecordProcessed(TOPIC, 0, offset);
+    }
+
+    private AggregatorCheckpointService checkpointService() {
+        AggregatorProperties properties = new AggregatorProperties();
+        properties.getSnapshot().setEnabled(true);
+        properties.getSnapshot().setInterval(Duration.ZERO);
+        return new AggregatorCheckpointService(aggregator, snapshotStore, properties,
+                mock(KafkaChangelogProducer.class), mock(KafkaChangelogRestorer.class));
+    }
+}
@@ -0,0 +1,141 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import ru.practicum.config.AggregatorProperties;
+import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
+import ru.practicum.kafka.KafkaSimilarityProducer;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+public class SimilarityEmitterTest {
+
+    @Test
+    public void flush_whenSamePairUpdatedSeveralTimes_thenOnlyLatestScoreSent() {
+        KafkaSimilarityProducer producer = mock(KafkaSimilarityProducer.class);
+        AggregatorProperties properties = new AggregatorProperties();
+        properties.getEmission().setCoalesce(true);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SimilarityEmitter emitter = new SimilarityEmitter(producer, properties, meterRegistry);
+
+        emitter.emit(0, similarity(1L, 2L, 0.1));
+        emitter.emit(0, similarity(1L, 2L, 0.2));
+        emitter.emit(0, similarity(1L, 3L, 0.5));
+        emitter.emit(0, similarity(1L, 2L, 0.3));
+        verifyNoInteractions(producer);
+
+        emitter.flush(0);
+
+        ArgumentCaptor<EventSimilarityAvro> sent = ArgumentCaptor.forClass(EventSimilarityAvro.class);
+        verify(producer, times(2)).send(sent.capture());
+        assertEquals(0.3, sent.getAllValues().stream()
+                .filter(s -> s.getEventB() == 2L)
+                .findFirst()
+                .orElseThrow()
+                .getScore());
+        assertEquals(2.0, meterRegistry.get("aggregator.similarity.coalesce.ratio").gauge().value());
+    }
+
+    @Test
+    public void emit_whenBufferFull_thenFlushedImmediately() {
+        KafkaSimilarityProducer producer = mock(KafkaSimilarityProducer.class);
+        AggregatorProperties properties = new AggregatorProperties();
+        properties.getEmission().setCoalesce(true);
+        properties.getEmission().setMaxBufferedPairs(2);
+        SimilarityEmitter emitter = new SimilarityEmitter(producer, properties, new SimpleMeterRegistry());
+
+        emitter.emit(0, similarity(1L, 2L, 0.1));
+        emitter.emit(0, similarity(1L, 3L, 0.1));
+
+        verify(producer, times(2)).send(any());
+    }
+
+    @Test
+    public void flushBeforeCommit_whenNotTransactional_thenBufferSentAndProducerFlushed() {
+        KafkaSimilarityProducer producer = mock(KafkaSimilarityProducer.class);
+        AggregatorProperties properties = new AggregatorProperties();
+        properties.getEmission().setCoalesce(true);
+        SimilarityEmitter emitter = new SimilarityEmitter(producer, properties, new SimpleMeterRegistry());
+
+        emitter.emit(0, similarity(1L, 2L, 0.1));
+        emitter.flushBeforeCommit(0);
+
+        InOrder inOrder = inOrder(producer);
+        inOrder.verify(producer).send(any());
+        inOrder.verify(producer).flush();
+    }
+
+    @Test
+    public void flushBeforeCommit_whenTransactional_thenSentWithoutWaiting() {
+        KafkaSimilarityProducer producer = mock(KafkaSimilarityProducer.class);
+        when(producer.isTransactional()).thenReturn(true);
+        AggregatorProperties properties = new AggregatorProperties();
+        properties.getEmission().setCoalesce(true);
+        SimilarityEmitter emitter = new SimilarityEmitter(producer, properties, new SimpleMeterRegistry());
+
+        emitter.emit(0, similarity(1L, 2L, 0.1));
+        emitter.flushBeforeCommit(0);
+
+        verify(producer).send(any());
+        verify(producer, never()).flush();
+    }
+
+    // Обе формы слушателя вызывают flushBeforeCommit после каждой записи или пачки: до истечения интервала
+    // обновления одной пары объединяются и отправляются одной записью
+    @Test
+    public void flushBeforeCommit_whenSamePairUpdatedWithinFlushInterval_thenSentOnce() throws InterruptedException {
+        KafkaSimilarityProducer producer = mock(KafkaSimilarityProducer.class);
+        AggregatorProperties properties = new AggregatorProperties();
+        properties.getEmission().setCoalesce(true);
+        properties.getEmission().setFlushInterval(Duration.ofMillis(500));
+        SimilarityEmitter emitter = new SimilarityEmitter(producer, properties, new SimpleMeterRegistry());
+
+        for (double score : new double[]{0.1, 0.2, 0.3}) {
+            emitter.emit(0, similarity(1L, 2L, score));
+            emitter.flushBeforeCommit(0);
+        }
+        verify(producer, never()).send(any());
+
+        Thread.sleep(600);
+        emitter.flushBeforeCommit(0);
+
+        ArgumentCaptor<EventSimilarityAvro> sent = ArgumentCaptor.forClass(EventSimilarityAvro.class);
+        verify(producer, times(1)).send(sent.capture());
+        assertEquals(0.3, sent.getValue().getScore());
+    }
+
+    // Откат отбрасывает только оценки текущей пачки: отложенные рассчитаны зафиксированными пачками
+    @Test
+    public void discard_whenFlushIntervalSet_thenCarriedScoresKept() {
+        KafkaSimilarityProducer producer = mock(KafkaSimilarityProducer.class);
+        AggregatorProperties properties = new AggregatorProperties();
+        properties.getEmission().setCoalesce(true);
+        properties.getEmission().setFlushInterval(Duration.ofMinutes(1));
+        SimilarityEmitter emitter = new SimilarityEmitter(producer, properties, new SimpleMeterRegistry());
+
+        emitter.emit(0, similarity(1L, 2L, 0.1));
+        emitter.flushBeforeCommit(0);
+        emitter.emit(0, similarity(1L, 3L, 0.2));
+        emitter.discard(0);
+        emitter.flush(0);
+
+        ArgumentCaptor<EventSimilarityAvro> sent = ArgumentCaptor.forClass(EventSimilarityAvro.class);
+        verify(producer, times(1)).send(sent.capture());
+        assertEquals(2L, sent.getValue().getEventB());
+    }
+
+    private EventSimilarityAvro similarity(long eventA, long eventB, double score) {
+        return EventSimilarityAvro.newBuilder()
+                .setEventA(eventA)
+                .setEventB(eventB)
+                .setScore(score)
+                .setTimestamp(Instant.now())
+                .build();
+    }
+}
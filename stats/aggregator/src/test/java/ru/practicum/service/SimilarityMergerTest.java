@@ -0,0 +1,136 @@
+package ru.practicum.service;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.config.AggregatorProperties;
+import ru.practicum.ewm.stats.avro.ActionTypeAvro;
+import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static ru.practicum.UserActionFixtures.action;
+
+public class SimilarityMergerTest {
+    private static final int EVENTS = 100;
+
+    @Test
+    public void merge_whenTopKEnabled_thenRetainedPairsBounded() {
+        AggregatorProperties properties = new AggregatorProperties();
+        properties.getTopK().setEnabled(true);
+        properties.getTopK().setK(3);
+        properties.getTopK().setRetentionFactor(2);
+        SimilarityMerger merger = new SimilarityMerger(properties);
+        UserActionAggregator aggregator = new UserActionAggregator(merger);
+
+        int emitted = process(aggregator);
+
+        long bound = (long) EVENTS * 3 * 2;
+        assertTrue(merger.pairCount() <= bound, "Merged pairs: " + merger.pairCount());
+        assertTrue(aggregator.getPartition(0).getStore().pairCount() <= bound,
+                "Partition pairs: " + aggregator.getPartition(0).getStore().pairCount());
+        assertTrue(emitted > 0);
+    }
+
+    @Test
+    public void merge_whenTopKEnabled_thenFewerPairsRetainedAndEmittedThanExact() {
+        SimilarityMerger topKMerger = topKMerger();
+        int topKEmitted = process(new UserActionAggregator(topKMerger));
+        SimilarityMerger merger = new SimilarityMerger();
+        int emitted = process(new UserActionAggregator(merger));
+
+        assertTrue(merger.pairCount() > topKMerger.pairCount());
+        assertTrue(emitted > topKEmitted);
+    }
+
+    // Общие суммы равны сумме частичных: после отключения всех партиций от них ничего не остаётся,
+    // даже если пары вытеснялись одной партицией, пока другая обрабатывала действия с ними
+    @Test
+    public void merge_whenTopKEvictsConcurrently_thenMergedSumsMatchPartitions() throws Exception {
+        SimilarityMerger merger = topKMerger();
+        UserActionAggregator aggregator = new UserActionAggregator(merger);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<Integer>> results = executor.invokeAll(List.of(
+                    () -> process(aggregator, 0, 1), () -> process(aggregator, 1, 2)));
+            for (Future<Integer> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        aggregator.releasePartition(0);
+        aggregator.releasePartition(1);
+
+        merger.forEachEventWeightSum((eventId, sum) -> assertEquals(0.0, sum, 1e-6, "Event " + eventId));
+        merger.forEachMinWeightsSum((first, second, sum) ->
+                assertEquals(0.0, sum, 1e-6, "Pair " + first + ":" + second));
+    }
+
+    // Партиции сливают приращения в разные полосы без общей блокировки; итог совпадает с последовательным слиянием
+    @Test
+    public void merge_whenPartitionsMergeConcurrently_thenMergedSumsMatchSequentialMerge() throws Exception {
+        SimilarityMerger merger = new SimilarityMerger();
+        UserActionAggregator aggregator = new UserActionAggregator(merger);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> results = executor.invokeAll(List.of(
+                    () -> process(aggregator, 0, 1), () -> process(aggregator, 1, 2),
+                    () -> process(aggregator, 2, 3), () -> process(aggregator, 3, 4)));
+            for (Future<Integer> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        SimilarityMerger sequentialMerger = new SimilarityMerger();
+        UserActionAggregator sequential = new UserActionAggregator(sequentialMerger);
+        for (int partition = 0; partition < 4; partition++) {
+            process(sequential, partition, partition + 1);
+        }
+
+        assertEquals(sequentialMerger.pairCount(), merger.pairCount());
+        sequentialMerger.forEachMinWeightsSum((first, second, expected) -> {
+            double[] actual = {Double.NaN};
+            merger.forEachMinWeightsSum((a, b, sum) -> {
+                if (a == first && b == second) {
+                    actual[0] = sum;
+                }
+            });
+            assertEquals(expected, actual[0], 1e-6, "Pair " + first + ":" + second);
+        });
+        for (int partition = 0; partition < 4; partition++) {
+            aggregator.releasePartition(partition);
+        }
+        merger.forEachEventWeightSum((eventId, sum) -> assertEquals(0.0, sum, 1e-6, "Event " + eventId));
+    }
+
+    private SimilarityMerger topKMerger() {
+        AggregatorProperties properties = new AggregatorProperties();
+        properties.getTopK().setEnabled(true);
+        properties.getTopK().setK(3);
+        properties.getTopK().setRetentionFactor(1);
+        return new SimilarityMerger(properties);
+    }
+
+    private int process(UserActionAggregator aggregator) {
+        return process(aggregator, 0, 42);
+    }
+
+    private int process(UserActionAggregator aggregator, int partition, long seed) {
+        Random random = new Random(seed);
+        ActionTypeAvro[] actionTypes = ActionTypeAvro.values();
+        int emitted = 0;
+        for (int i = 0; i < 20_000; i++) {
+            List<EventSimilarityAvro> similarities = aggregator.updateState(
+                    action(random.nextInt(500), random.nextInt(EVENTS), actionTypes[random.nextInt(actionTypes.length)]), partition);
+            emitted += similarities.size();
+        }
+        return emitted;
+    }
+}
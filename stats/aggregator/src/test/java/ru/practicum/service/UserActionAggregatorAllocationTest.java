@@ -0,0 +1,63 @@
+package ru.practicum.service;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.ewm.stats.avro.ActionTypeAvro;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static ru.practicum.UserActionFixtures.action;
+
+public class UserActionAggregatorAllocationTest {
+    private static final int USERS = 200;
+    private static final int EVENTS = 20;
+    // Запас на служебные выделения самого замера
+    private static final long MAX_BYTES_PER_ACTION = 8;
+
+    @Test
+    public void updateState_whenPairsAlreadyKnown_thenNoAllocationPerAction() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        // Просмотры создают все веса и пары, повышения веса затем обновляют только существующие суммы
+        UserActionAggregator aggregator = new UserActionAggregator(new SimilarityMerger());
+        long[] emitted = new long[1];
+        SimilaritySink sink = (eventA, eventB, score, timestamp) -> emitted[0]++;
+        actions(ActionTypeAvro.VIEW).forEach(action -> aggregator.updateState(action, 0, sink));
+        List<UserActionAvro> registrations = actions(ActionTypeAvro.REGISTER);
+        List<UserActionAvro> likes = actions(ActionTypeAvro.LIKE);
+        emitted[0] = 0;
+
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (UserActionAvro action : registrations) {
+            aggregator.updateState(action, 0, sink);
+        }
+        for (UserActionAvro action : likes) {
+            aggregator.updateState(action, 0, sink);
+        }
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+        int actions = registrations.size() + likes.size();
+        assertEquals((long) actions * (EVENTS - 1), emitted[0]);
+        assertTrue(allocated / actions <= MAX_BYTES_PER_ACTION,
+                "Allocated " + allocated + " bytes for " + actions + " actions");
+    }
+
+    private List<UserActionAvro> actions(ActionTypeAvro actionType) {
+        Instant now = Instant.now();
+        List<UserActionAvro> actions = new ArrayList<>(USERS * EVENTS);
+        for (long userId = 0; userId < USERS; userId++) {
+            for (long eventId = 0; eventId < EVENTS; eventId++) {
+                actions.add(action(userId, eventId, actionType, now));
+            }
+        }
+        return actions;
+    }
+}
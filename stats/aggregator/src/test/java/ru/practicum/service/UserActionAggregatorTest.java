@@ -0,0 +1,147 @@
+package ru.practicum.service;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.config.AggregatorProperties;
+import ru.practicum.ewm.stats.avro.ActionTypeAvro;
+import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.practicum.UserActionFixtures.action;
+
+public class UserActionAggregatorTest {
+    private static final Instant NOW = Instant.parse("2026-06-01T00:00:00Z");
+
+    @Test
+    public void updateState_whenDecayEnabledAndActionsSimultaneous_thenScoresMatchUndecayed() {
+        UserActionAggregator decayed = new UserActionAggregator(new SimilarityMerger(), new WeightDecay(decayProperties()));
+        UserActionAggregator plain = new UserActionAggregator(new SimilarityMerger());
+
+        List<EventSimilarityAvro> decayedScores = new ArrayList<>();
+        List<EventSimilarityAvro> plainScores = new ArrayList<>();
+        for (UserActionAvro action : List.of(
+                action(1, 1, ActionTypeAvro.LIKE, NOW), action(1, 2, ActionTypeAvro.VIEW, NOW),
+                action(2, 1, ActionTypeAvro.REGISTER, NOW), action(2, 2, ActionTypeAvro.LIKE, NOW))) {
+            decayedScores.addAll(decayed.updateState(action, 0));
+            plainScores.addAll(plain.updateState(action, 0));
+        }
+
+        assertEquals(plainScores.size(), decayedScores.size());
+        for (int i = 0; i < plainScores.size(); i++) {
+            assertEquals(plainScores.get(i).getScore(), decayedScores.get(i).getScore(), 1e-9);
+        }
+    }
+
+    // Действия идут через ~12 000 периодов полураспада после точки отсчёта из конфигурации, где множитель 2^(t / halfLife)
+    // переполнил бы double, и охватывают ещё 100 периодов: оценки совпадают с рассчитанными от точки отсчёта рядом
+    @Test
+    public void updateState_whenActionsFarFromDecayEpoch_thenScoresMatchNearEpoch() {
+        AggregatorProperties farProperties = decayProperties();
+        farProperties.getDecay().setHalfLife(Duration.ofHours(1));
+        AggregatorProperties nearProperties = decayProperties();
+        nearProperties.getDecay().setHalfLife(Duration.ofHours(1));
+        nearProperties.getDecay().setEpoch(NOW);
+        UserActionAggregator far = new UserActionAggregator(new SimilarityMerger(), new WeightDecay(farProperties));
+        UserActionAggregator near = new UserActionAggregator(new SimilarityMerger(), new WeightDecay(nearProperties));
+
+        Random random = new Random(42);
+        ActionTypeAvro[] actionTypes = ActionTypeAvro.values();
+        List<EventSimilarityAvro> farScores = new ArrayList<>();
+        List<EventSimilarityAvro> nearScores = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            int userId = random.nextInt(100);
+            UserActionAvro action = action(userId, random.nextInt(20), actionTypes[random.nextInt(actionTypes.length)],
+                    NOW.plus(Duration.ofMinutes(3L * i)));
+            farScores.addAll(far.updateState(action, userId % 2));
+            nearScores.addAll(near.updateState(action, userId % 2));
+        }
+
+        assertTrue(far.getPartition(0).getDecayShift() > 12_000);
+        assertEquals(nearScores.size(), farScores.size());
+        for (int i = 0; i < nearScores.size(); i++) {
+            assertTrue(Double.isFinite(farScores.get(i).getScore()));
+            assertEquals(nearScores.get(i).getScore(), farScores.get(i).getScore(), 1e-9);
+        }
+    }
+
+    @Test
+    public void updateState_whenDecayEnabledAndActionRepeatedLater_thenWeightRefreshed() {
+        UserActionAggregator aggregator = new UserActionAggregator(new SimilarityMerger(), new WeightDecay(decayProperties()));
+        aggregator.updateState(action(1, 1, ActionTypeAvro.VIEW, NOW), 0);
+        aggregator.updateState(action(1, 2, ActionTypeAvro.VIEW, NOW), 0);
+
+        assertTrue(aggregator.updateState(action(1, 2, ActionTypeAvro.VIEW, NOW), 0).isEmpty());
+        assertFalse(aggregator.updateState(action(1, 2, ActionTypeAvro.VIEW, NOW.plus(Duration.ofDays(1))), 0).isEmpty());
+    }
+
+    @Test
+    public void prune_whenWeightsDecayedBelowThreshold_thenStateShrinks() {
+        SimilarityMerger merger = new SimilarityMerger();
+        UserActionAggregator aggregator = new UserActionAggregator(merger, new WeightDecay(decayProperties()));
+        Instant old = NOW.minus(Duration.ofDays(365));
+        aggregator.updateState(action(1, 1, ActionTypeAvro.LIKE, old), 0);
+        aggregator.updateState(action(1, 2, ActionTypeAvro.LIKE, old), 0);
+        aggregator.updateState(action(2, 2, ActionTypeAvro.LIKE, NOW), 0);
+        aggregator.updateState(action(2, 3, ActionTypeAvro.LIKE, NOW), 0);
+
+        List<Long> removedEvents = new ArrayList<>();
+        int pruned = aggregator.prune(0, NOW, delta -> removedEvents.add(delta.getEventId()));
+
+        assertEquals(2, pruned);
+        assertEquals(2, removedEvents.size());
+        PartitionState state = aggregator.getPartition(0);
+        assertEquals(2, state.getStore().weightCount());
+        assertEquals(1, state.getStore().pairCount());
+        assertEquals(0.0, state.getStore().getMinWeightsSum(1, 2));
+        assertEquals(1, merger.pairCount());
+    }
+
+    @Test
+    public void updateState_whenWindowBucketExpires_thenItsPairsDropToZero() {
+        SimilarityMerger merger = new SimilarityMerger();
+        UserActionAggregator aggregator = windowedAggregator(merger);
+        aggregator.updateState(action(1, 1, ActionTypeAvro.LIKE, NOW), 0);
+        List<EventSimilarityAvro> initial = aggregator.updateState(action(1, 2, ActionTypeAvro.LIKE, NOW), 0);
+        assertEquals(1.0, initial.get(0).getScore(), 1e-9);
+
+        List<EventSimilarityAvro> expired = aggregator.updateState(action(2, 3, ActionTypeAvro.LIKE, NOW.plus(Duration.ofDays(3))), 0);
+
+        assertEquals(1, expired.size());
+        assertEquals(1L, expired.get(0).getEventA());
+        assertEquals(2L, expired.get(0).getEventB());
+        assertEquals(0.0, expired.get(0).getScore());
+        assertEquals(0, merger.pairCount());
+        assertEquals(1, aggregator.getPartition(0).getBuckets().size());
+    }
+
+    @Test
+    public void updateState_whenActionOlderThanWindow_thenIgnored() {
+        UserActionAggregator aggregator = windowedAggregator(new SimilarityMerger());
+        aggregator.updateState(action(1, 1, ActionTypeAvro.LIKE, NOW), 0);
+        aggregator.updateState(action(2, 1, ActionTypeAvro.LIKE, NOW.minus(Duration.ofDays(5))), 0);
+
+        assertTrue(aggregator.updateState(action(2, 2, ActionTypeAvro.LIKE, NOW.minus(Duration.ofDays(5))), 0).isEmpty());
+        assertEquals(1, aggregator.getPartition(0).getBuckets().size());
+    }
+
+    private UserActionAggregator windowedAggregator(SimilarityMerger merger) {
+        AggregatorProperties properties = new AggregatorProperties();
+        properties.getWindow().setEnabled(true);
+        properties.getWindow().setLength(Duration.ofDays(2));
+        properties.getWindow().setBucket(Duration.ofDays(1));
+        return new UserActionAggregator(merger, new WeightDecay(), new SimilarityWindow(properties));
+    }
+
+    private AggregatorProperties decayProperties() {
+        AggregatorProperties properties = new AggregatorProperties();
+        properties.getDecay().setEnabled(true);
+        properties.getDecay().setHalfLife(Duration.ofDays(7));
+        return properties;
+    }
+}
@@ -0,0 +1,126 @@
+package ru.practicum.service.minhash;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import ru.practicum.config.AggregatorProperties;
+import ru.practicum.ewm.stats.avro.ActionTypeAvro;
+import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.service.SimilarityMerger;
+import ru.practicum.service.UserActionAggregator;
+import ru.practicum.service.state.AggregatorStateStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.practicum.UserActionFixtures.action;
+
+public class MinHashSimilarityEngineTest {
+    private static final Path REPORT = Path.of("target", "minhash-accuracy-report.md");
+
+    @Test
+    public void updateState_whenEventsHaveSameUsers_thenPairEmittedWithFullScore() {
+        MinHashSimilarityEngine engine = new MinHashSimilarityEngine(new AggregatorProperties());
+        List<EventSimilarityAvro> last = List.of();
+        for (long userId = 0; userId < 50; userId++) {
+            engine.updateState(action(userId, 1L, ActionTypeAvro.LIKE), 0);
+            last = engine.updateState(action(userId, 2L, ActionTypeAvro.LIKE), 0);
+        }
+
+        assertEquals(1, last.size());
+        assertEquals(1L, last.get(0).getEventA());
+        assertEquals(2L, last.get(0).getEventB());
+        assertEquals(1.0, last.get(0).getScore(), 1e-9);
+    }
+
+    @Test
+    public void updateState_whenWeightNotIncreased_thenNothingEmitted() {
+        MinHashSimilarityEngine engine = new MinHashSimilarityEngine(new AggregatorProperties());
+        engine.updateState(action(1L, 1L, ActionTypeAvro.LIKE), 0);
+        engine.updateState(action(1L, 2L, ActionTypeAvro.LIKE), 0);
+
+        assertTrue(engine.updateState(action(1L, 2L, ActionTypeAvro.VIEW), 0).isEmpty());
+    }
+
+    // Сравнение точности и объёма памяти с точным движком на синтетическом потоке действий.
+    // Запуск: mvn test -Dstats.benchmarks=true -Dtest=MinHashSimilarityEngineTest; отчёт пишется в target/,
+    // результаты опубликованы в README (раздел «Точность MinHash»)
+    @Test
+    @EnabledIfSystemProperty(named = "stats.benchmarks", matches = "true")
+    public void writeAccuracyReport() throws IOException {
+        List<UserActionAvro> actions = generateActions(20_000, 1_000, 500_000);
+        UserActionAggregator exact = new UserActionAggregator(new SimilarityMerger());
+        actions.forEach(action -> exact.updateState(action, 0));
+        AggregatorStateStore exactStore = exact.getPartition(0).getStore();
+        long exactBytes = exactStore.sizeInBytes();
+
+        StringBuilder report = new StringBuilder()
+                .append("# MinHash vs exact similarity\n\n")
+                .append(String.format("Actions: %d, weights: %d, events: %d, pairs: %d, exact state: %d KiB%n%n",
+                        actions.size(), exactStore.weightCount(), exactStore.eventCount(), exactStore.pairCount(),
+                        exactBytes / 1024))
+                .append("| bands x rows | hashes | MAE | max error | recall (score >= 0.3) | memory, KiB | memory vs exact |\n")
+                .append("|---|---|---|---|---|---|---|\n");
+
+        int[][] configurations = {{16, 2}, {32, 2}, {64, 2}, {128, 2}, {32, 4}};
+        double defaultMae = Double.NaN;
+        for (int[] configuration : configurations) {
+            AggregatorProperties properties = new AggregatorProperties();
+            properties.getMinhash().setBands(configuration[0]);
+            properties.getMinhash().setRows(configuration[1]);
+            MinHashSimilarityEngine engine = new MinHashSimilarityEngine(properties);
+            actions.forEach(action -> engine.updateState(action, 0));
+
+            double[] errors = new double[3];
+            int[] recall = new int[2];
+            exactStore.forEachMinWeightsSum((eventA, eventB, sMin) -> {
+                double expected = sMin / Math.sqrt(exactStore.getEventWeightSum(eventA) * exactStore.getEventWeightSum(eventB));
+                double error = Math.abs(expected - engine.estimate(eventA, eventB));
+                errors[0] += error;
+                errors[1] = Math.max(errors[1], error);
+                errors[2]++;
+                if (expected >= 0.3) {
+                    recall[0]++;
+                    if (engine.isCandidate(eventA, eventB)) {
+                        recall[1]++;
+                    }
+                }
+            });
+            double mae = errors[0] / errors[2];
+            if (configuration[0] == 64 && configuration[1] == 2) {
+                defaultMae = mae;
+            }
+            long bytes = engine.sizeInBytes();
+            report.append(String.format("| %d x %d | %d | %.4f | %.4f | %.3f | %d | %.2f |%n",
+                    configuration[0], configuration[1], configuration[0] * configuration[1], mae, errors[1],
+                    recall[0] == 0 ? 1.0 : (double) recall[1] / recall[0], bytes / 1024, (double) bytes / exactBytes));
+        }
+
+        Files.createDirectories(REPORT.getParent());
+        Files.writeString(REPORT, report);
+        System.out.println(report);
+        assertTrue(defaultMae < 0.05, "Mean absolute error of the default configuration: " + defaultMae);
+    }
+
+    // Пользователи разбиты на группы со своими предпочтениями, половина действий приходится на популярные мероприятия
+    private List<UserActionAvro> generateActions(int users, int events, int count) {
+        Random random = new Random(7);
+        ActionTypeAvro[] actionTypes = ActionTypeAvro.values();
+        List<UserActionAvro> actions = new ArrayList<>(count);
+        int groups = events / 10;
+        for (int i = 0; i < count; i++) {
+            long userId = random.nextInt(users);
+            long eventId = random.nextBoolean()
+                    ? (long) (Math.pow(random.nextDouble(), 2) * events)
+                    : (userId % groups) * 10 + random.nextInt(10);
+            ActionTypeAvro actionType = random.nextInt(10) < 7 ? ActionTypeAvro.VIEW : actionTypes[random.nextInt(actionTypes.length)];
+            actions.add(action(userId, eventId, actionType));
+        }
+        return actions;
+    }
+}
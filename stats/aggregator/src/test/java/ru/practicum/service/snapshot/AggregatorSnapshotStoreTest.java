@@ -0,0 +1,59 @@
+package ru.practicum.service.snapshot;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.practicum.config.AggregatorProperties;
+import ru.practicum.service.PartitionState;
+import ru.practicum.service.state.AggregatorStateStore;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AggregatorSnapshotStoreTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    public void read_whenSnapshotWritten_thenStateAndOffsetRestored() {
+        AggregatorSnapshotStore snapshotStore = new AggregatorSnapshotStore(properties());
+        PartitionState state = new PartitionState();
+        AggregatorStateStore store = state.getStore();
+        store.putWeight(1L, 10L, 0.4);
+        store.putWeight(1L, 11L, 1.0);
+        store.addEventWeightSum(10L, 0.4);
+        store.addEventWeightSum(11L, 1.0);
+        store.addMinWeightsSum(10L, 11L, 0.4);
+        state.setNextOffset(42L);
+        state.setDecayShift(12_345L);
+
+        snapshotStore.write("actions", 2, state);
+        PartitionState restored = snapshotStore.read("actions", 2);
+
+        assertNotNull(restored);
+        assertEquals(42L, restored.getNextOffset());
+        assertEquals(12_345L, restored.getDecayShift());
+        assertEquals(1.0, restored.getStore().getWeight(1L, 11L));
+        assertEquals(0.4, restored.getStore().getEventWeightSum(10L));
+        assertEquals(0.4, restored.getStore().getMinWeightsSum(10L, 11L));
+        assertEquals(2, restored.getStore().weightCount());
+    }
+
+    @Test
+    public void read_whenNoSnapshotOrCorrupted_thenNull() throws Exception {
+        AggregatorSnapshotStore snapshotStore = new AggregatorSnapshotStore(properties());
+        assertNull(snapshotStore.read("actions", 0));
+
+        Files.write(directory.resolve("actions-1.snapshot"), new byte[]{1, 2, 3});
+        assertNull(snapshotStore.read("actions", 1));
+    }
+
+    private AggregatorProperties properties() {
+        AggregatorProperties properties = new AggregatorProperties();
+        properties.getSnapshot().setEnabled(true);
+        properties.getSnapshot().setDirectory(directory.toString());
+        return properties;
+    }
+}
@@ -0,0 +1,133 @@
+package ru.practicum.service.state;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PrimitiveAggregatorStateStoreTest {
+
+    // Ячейка пары занимает 24 байта, при заполнении не ниже 3/8 это не больше 64 байт на пару;
+    // вложенные Map<Long, Map<Long, Double>> обходятся примерно в 100 байт на пару
+    private static final long MAX_BYTES_PER_PAIR = 64;
+
+    @Test
+    public void weights_whenPut_thenVisibleThroughUserIndex() {
+        AggregatorStateStore store = new PrimitiveAggregatorStateStore();
+        store.putWeight(1L, 10L, 0.4);
+        store.putWeight(1L, 11L, 1.0);
+        store.putWeight(2L, 10L, 0.8);
+        store.putWeight(1L, 10L, 0.8);
+
+        Map<Long, Double> userEvents = new HashMap<>();
+        store.forEachUserEvent(1L, userEvents::put);
+
+        assertEquals(Map.of(10L, 0.8, 11L, 1.0), userEvents);
+        assertEquals(0.8, store.getWeight(2L, 10L));
+        assertEquals(0.0, store.getWeight(2L, 11L));
+        assertEquals(0.0, store.getWeight(3L, 10L));
+    }
+
+    @Test
+    public void sums_whenAdded_thenAccumulated() {
+        AggregatorStateStore store = new PrimitiveAggregatorStateStore();
+        assertEquals(0.4, store.addEventWeightSum(10L, 0.4));
+        assertEquals(1.2, store.addEventWeightSum(10L, 0.8), 1e-9);
+        assertEquals(0.4, store.addMinWeightsSum(10L, 11L, 0.4));
+        assertEquals(0.8, store.addMinWeightsSum(10L, 11L, 0.4), 1e-9);
+
+        assertEquals(0.8, store.getMinWeightsSum(10L, 11L), 1e-9);
+        assertEquals(0.0, store.getMinWeightsSum(11L, 10L));
+        assertEquals(1, store.pairCount());
+    }
+
+    @Test
+    public void pairMap_whenRemoved_thenOtherKeysStillReachable() {
+        LongPairDoubleHashMap map = new LongPairDoubleHashMap(4);
+        for (long i = 0; i < 1_000; i++) {
+            map.put(i, i + 1, i);
+        }
+        for (long i = 0; i < 1_000; i += 2) {
+            assertTrue(map.remove(i, i + 1));
+        }
+
+        assertEquals(500, map.size());
+        for (long i = 1; i < 1_000; i += 2) {
+            assertEquals(i, map.get(i, i + 1, -1.0));
+        }
+        assertEquals(-1.0, map.get(0, 1, -1.0));
+    }
+
+    @Test
+    public void pairs_whenMillionAdded_thenAllReachableAfterGrowth() {
+        assertPairsReachable(1_000_000);
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "stats.memory-tests", matches = "true")
+    public void pairs_whenTenMillionAdded_thenAllReachableAfterGrowth() {
+        assertPairsReachable(10_000_000);
+    }
+
+    @Test
+    public void memoryFootprint_whenPairsAdded_thenBelowBoxedMaps() {
+        AggregatorStateStore store = new PrimitiveAggregatorStateStore();
+        int pairs = 150_000;
+        int eventsPerRow = 1_000;
+        for (int i = 0; i < pairs; i++) {
+            store.addMinWeightsSum(i / eventsPerRow, i / eventsPerRow + 1 + i % eventsPerRow, 0.4);
+        }
+
+        long bytesPerPair = store.sizeInBytes() / store.pairCount();
+        assertTrue(bytesPerPair <= MAX_BYTES_PER_PAIR, "Bytes per pair: " + bytesPerPair);
+    }
+
+    @Test
+    public void pairMap_whenExpectedSizeAboveMaxCapacity_thenClearError() {
+        IllegalStateException error = assertThrows(IllegalStateException.class,
+                () -> new LongPairDoubleHashMap(600_000_000));
+
+        assertTrue(error.getMessage().contains("600000000 pairs"), error.getMessage());
+    }
+
+    @Test
+    public void weights_whenAllRemoved_thenCountsReturnToZero() {
+        AggregatorStateStore store = new PrimitiveAggregatorStateStore();
+        for (long userId = 0; userId < 1_000; userId++) {
+            for (long eventId = 0; eventId < 10; eventId++) {
+                store.putWeight(userId, eventId, 0.4);
+            }
+        }
+        assertEquals(10_000, store.weightCount());
+
+        for (long userId = 0; userId < 1_000; userId++) {
+            for (long eventId = 0; eventId < 10; eventId++) {
+                assertTrue(store.removeWeight(userId, eventId));
+            }
+        }
+
+        assertEquals(0, store.weightCount());
+        assertFalse(store.removeWeight(0L, 0L));
+        store.forEachWeight((userId, eventId, weight) -> fail("Unexpected weight " + userId + ":" + eventId));
+    }
+
+    // Таблица многократно расширяется; после этого каждая пара читается со своим значением
+    private void assertPairsReachable(int pairs) {
+        AggregatorStateStore store = new PrimitiveAggregatorStateStore();
+        int eventsPerRow = 1_000;
+        for (int i = 0; i < pairs; i++) {
+            store.addMinWeightsSum(i / eventsPerRow, i / eventsPerRow + 1 + i % eventsPerRow, i);
+        }
+
+        assertEquals(pairs, store.pairCount());
+        for (int i = 0; i < pairs; i++) {
+            assertEquals(i, store.getMinWeightsSum(i / eventsPerRow, i / eventsPerRow + 1 + i % eventsPerRow));
+        }
+        long[] visited = new long[1];
+        store.forEachMinWeightsSum((eventA, eventB, sum) -> visited[0]++);
+        assertEquals(pairs, visited[0]);
+    }
+}
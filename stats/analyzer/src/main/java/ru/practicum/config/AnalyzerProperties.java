@@ -0,0 +1,75 @@
+package ru.practicum.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "analyzer")
+@Getter
+@Setter
+@ToString
+public class AnalyzerProperties {
+    private DecayConfig decay = new DecayConfig();
+    private SimilarityIndexConfig similarityIndex = new SimilarityIndexConfig();
+    private RecommendationCacheConfig recommendationCache = new RecommendationCacheConfig();
+    private SymmetricNeighborsConfig symmetricNeighbors = new SymmetricNeighborsConfig();
+
+    // Экспоненциальное затухание весов взаимодействий: за halfLife вес уменьшается вдвое.
+    // Взаимодействия, затухшие ниже pruneThreshold, удаляются раз в pruneInterval
+    @Getter
+    @Setter
+    @ToString
+    public static class DecayConfig {
+        private boolean enabled;
+        private Duration halfLife = Duration.ofDays(30);
+        private double pruneThreshold = 0.05;
+        private Duration pruneInterval = Duration.ofHours(1);
+    }
+
+    // Граф сходства в памяти: загружается из event_similarity при старте страницами по bootstrapPageSize строк
+    // и обновляется слушателем Kafka. При выключенном графе сходства читаются из базы
+    @Getter
+    @Setter
+    @ToString
+    public static class SimilarityIndexConfig {
+        private boolean enabled = true;
+        private int bootstrapPageSize = 10_000;
+    }
+
+    // Кеш первых topN рекомендаций пользователя на ttl, не больше maxUsers пользователей.
+    // Запросы с maxResults больше topN рассчитываются без кеша
+    @Getter
+    @Setter
+    @ToString
+    public static class RecommendationCacheConfig {
+        private boolean enabled = true;
+        private long maxUsers = 100_000;
+        private Duration ttl = Duration.ofMinutes(5);
+        private int topN = 50;
+        private PrecomputeConfig precompute = new PrecomputeConfig();
+    }
+
+    // Фоновый предрасчёт рекомендаций для пользователей с действиями за последние activeWindow
+    @Getter
+    @Setter
+    @ToString
+    public static class PrecomputeConfig {
+        private boolean enabled;
+        private Duration interval = Duration.ofMinutes(1);
+        private Duration activeWindow = Duration.ofMinutes(10);
+        private long maxUsers = 10_000;
+    }
+
+    // Чтение соседей из симметричной таблицы event_neighbor, когда граф в памяти выключен. Таблица заполняется
+    // миграцией из event_similarity, а затем сходства пишутся в обе таблицы независимо от этой настройки,
+    // поэтому её можно включать и выключать без повторного заполнения
+    @Getter
+    @Setter
+    @ToString
+    public static class SymmetricNeighborsConfig {
+        private boolean enabled;
+    }
+}
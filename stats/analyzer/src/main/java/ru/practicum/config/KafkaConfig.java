@@ -5,6 +5,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
 import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
 import ru.practicum.ewm.stats.avro.UserActionAvro;
 
@@ -31,6 +32,7 @@ public class KafkaConfig {
         ConcurrentKafkaListenerContainerFactory<String, EventSimilarityAvro> factory =
                 new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(similarityConsumerFactory);
+        batch(factory);
         return factory;
     }
 
@@ -46,9 +48,16 @@ public class KafkaConfig {
         ConcurrentKafkaListenerContainerFactory<String, UserActionAvro> factory =
                 new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(actionConsumerFactory);
+        batch(factory);
         return factory;
     }
 
+    // Записи одного poll передаются слушателю списком, смещения пачки фиксируются после успешного возврата
+    private void batch(ConcurrentKafkaListenerContainerFactory<?, ?> factory) {
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.BATCH);
+    }
+
     // Для маппинга из application.yaml
     private Map<String, Object> flattenMap(Map<String, Object> source) {
         Map<String, Object> result = new HashMap<>();
@@ -7,25 +7,40 @@ import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
 import ru.practicum.ewm.stats.avro.UserActionAvro;
 import org.springframework.kafka.annotation.KafkaListener;
 import ru.practicum.service.KafkaConsumerService;
+import ru.practicum.service.RecommendationCache;
 
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Пакетные слушатели: пачка poll записывается целиком, смещения фиксируются после её записи.
+// Кеш рекомендаций сбрасывается после возврата из транзакционного сервиса, то есть после фиксации пачки
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class KafkaConsumerListener {
 
     private final KafkaConsumerService consumerService;
+    private final RecommendationCache recommendationCache;
 
     @KafkaListener(topics = "${kafka.similarity-consumer.topic}", groupId = "${kafka.similarity-consumer.properties.group.id}",
             containerFactory = "similarityListenerContainerFactory")
-    public void handleSimilarity(EventSimilarityAvro avro) {
-        log.debug("Received similarity message: {}", avro);
-        consumerService.handleSimilarity(avro);
+    public void handleSimilarity(List<EventSimilarityAvro> avros) {
+        log.debug("Received {} similarity messages", avros.size());
+        consumerService.handleSimilarities(avros);
+        Set<Long> eventIds = new HashSet<>();
+        avros.forEach(avro -> {
+            eventIds.add(avro.getEventA());
+            eventIds.add(avro.getEventB());
+        });
+        recommendationCache.onSimilarityChanged(eventIds);
     }
 
     @KafkaListener(topics = "${kafka.action-consumer.topic}", groupId = "${kafka.action-consumer.properties.group.id}",
             containerFactory = "actionListenerContainerFactory")
-    public void handleUserAction(UserActionAvro avro) {
-        log.debug("Received user action message: {}", avro);
-        consumerService.handleUserAction(avro);
+    public void handleUserAction(List<UserActionAvro> avros) {
+        log.debug("Received {} user action messages", avros.size());
+        consumerService.handleUserActions(avros);
+        recommendationCache.onUserActivity(avros.stream().map(UserActionAvro::getUserId).distinct().toList());
     }
 }
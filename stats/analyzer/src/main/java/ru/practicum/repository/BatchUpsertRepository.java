@@ -0,0 +1,88 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.entity.EventSimilarity;
+import ru.practicum.entity.UserAction;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.List;
+
+// Запись пачек многострочными INSERT ... ON CONFLICT: одна команда на chunk строк вместо SELECT и INSERT/UPDATE
+// на каждую запись. Ключи внутри пачки должны быть уникальны — PostgreSQL не обновляет строку дважды одной командой
+@Repository
+@RequiredArgsConstructor
+public class BatchUpsertRepository {
+    // 5 параметров на строку: не больше 65535 параметров на команду
+    static final int ROWS_PER_STATEMENT = 1000;
+
+    private static final String SIMILARITY_INSERT =
+            "INSERT INTO event_similarity (event_a, event_b, score, updated_at) VALUES ";
+    private static final String SIMILARITY_ROW = "(?, ?, ?, ?)";
+    private static final String SIMILARITY_CONFLICT = " ON CONFLICT (event_a, event_b) DO UPDATE " +
+            "SET score = EXCLUDED.score, updated_at = EXCLUDED.updated_at";
+
+    private static final String USER_ACTION_INSERT =
+            "INSERT INTO user_action (user_id, event_id, action_type, weight, timestamp) VALUES ";
+    private static final String USER_ACTION_ROW = "(?, ?, ?, ?, ?)";
+    // Сохраняется больший вес: новое действие заменяет строку, только если его вес больше сохранённого,
+    // затухшего к моменту нового действия (при lambda = 0 — больше сохранённого веса)
+    private static final String USER_ACTION_CONFLICT = " ON CONFLICT (user_id, event_id) DO UPDATE " +
+            "SET action_type = EXCLUDED.action_type, weight = EXCLUDED.weight, timestamp = EXCLUDED.timestamp " +
+            "WHERE EXCLUDED.weight > user_action.weight " +
+            "* EXP(-? * GREATEST(0, EXTRACT(EPOCH FROM (EXCLUDED.timestamp - user_action.timestamp))))";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public int upsertSimilarities(List<EventSimilarity> similarities) {
+        int updated = 0;
+        for (int from = 0; from < similarities.size(); from += ROWS_PER_STATEMENT) {
+            List<EventSimilarity> chunk = similarities.subList(from, Math.min(from + ROWS_PER_STATEMENT, similarities.size()));
+            updated += jdbcTemplate.update(statement(SIMILARITY_INSERT, SIMILARITY_ROW, chunk.size(), SIMILARITY_CONFLICT),
+                    (PreparedStatement ps) -> {
+                        int index = 1;
+                        for (EventSimilarity similarity : chunk) {
+                            ps.setLong(index++, similarity.getId().getEventA());
+                            ps.setLong(index++, similarity.getId().getEventB());
+                            ps.setDouble(index++, similarity.getScore());
+                            ps.setTimestamp(index++, Timestamp.from(similarity.getUpdatedAt()));
+                        }
+                    });
+        }
+        return updated;
+    }
+
+    public int upsertUserActions(List<UserAction> actions, double lambdaPerSecond) {
+        int updated = 0;
+        for (int from = 0; from < actions.size(); from += ROWS_PER_STATEMENT) {
+            List<UserAction> chunk = actions.subList(from, Math.min(from + ROWS_PER_STATEMENT, actions.size()));
+            updated += jdbcTemplate.update(statement(USER_ACTION_INSERT, USER_ACTION_ROW, chunk.size(), USER_ACTION_CONFLICT),
+                    (PreparedStatement ps) -> {
+                        int index = 1;
+                        for (UserAction action : chunk) {
+                            ps.setLong(index++, action.getId().getUserId());
+                            ps.setLong(index++, action.getId().getEventId());
+                            ps.setString(index++, action.getActionType());
+                            ps.setDouble(index++, action.getWeight());
+                            ps.setTimestamp(index++, Timestamp.from(action.getTimestamp()));
+                        }
+                        ps.setDouble(index, lambdaPerSecond);
+                    });
+        }
+        return updated;
+    }
+
+    static String statement(String insert, String row, int rows, String conflict) {
+        StringBuilder sql = new StringBuilder(insert.length() + rows * (row.length() + 2) + conflict.length());
+        sql.append(insert);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(row);
+        }
+        return sql.append(conflict).toString();
+    }
+}
@@ -0,0 +1,62 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.entity.EventSimilarity;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+
+// Симметричная таблица соседей event_neighbor: пара (a, b) хранится строками (a, b) и (b, a),
+// поэтому соседи набора мероприятий выбираются одним диапазоном первичного ключа
+@Repository
+@RequiredArgsConstructor
+public class EventNeighborRepository {
+    private static final String INSERT = "INSERT INTO event_neighbor (event_id, neighbor_id, score, updated_at) VALUES ";
+    private static final String ROW = "(?, ?, ?, ?)";
+    private static final String CONFLICT = " ON CONFLICT (event_id, neighbor_id) DO UPDATE " +
+            "SET score = EXCLUDED.score, updated_at = EXCLUDED.updated_at";
+    static final String SELECT = "SELECT event_id, neighbor_id, score FROM event_neighbor " +
+            "WHERE event_id = ANY (?) ORDER BY event_id, score DESC";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public int upsert(List<EventSimilarity> similarities) {
+        int updated = 0;
+        int pairsPerStatement = BatchUpsertRepository.ROWS_PER_STATEMENT / 2;
+        for (int from = 0; from < similarities.size(); from += pairsPerStatement) {
+            List<EventSimilarity> chunk = similarities.subList(from, Math.min(from + pairsPerStatement, similarities.size()));
+            updated += jdbcTemplate.update(BatchUpsertRepository.statement(INSERT, ROW, chunk.size() * 2, CONFLICT),
+                    (PreparedStatement ps) -> {
+                        int index = 1;
+                        for (EventSimilarity similarity : chunk) {
+                            Timestamp updatedAt = Timestamp.from(similarity.getUpdatedAt());
+                            ps.setLong(index++, similarity.getId().getEventA());
+                            ps.setLong(index++, similarity.getId().getEventB());
+                            ps.setDouble(index++, similarity.getScore());
+                            ps.setTimestamp(index++, updatedAt);
+                            ps.setLong(index++, similarity.getId().getEventB());
+                            ps.setLong(index++, similarity.getId().getEventA());
+                            ps.setDouble(index++, similarity.getScore());
+                            ps.setTimestamp(index++, updatedAt);
+                        }
+                    });
+        }
+        return updated;
+    }
+
+    // Соседи мероприятий в порядке убывания оценки внутри каждого мероприятия
+    public List<EventNeighbor> findByEventIds(Collection<Long> eventIds) {
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(SELECT);
+            ps.setArray(1, connection.createArrayOf("bigint", eventIds.toArray()));
+            return ps;
+        }, (rs, rowNum) -> new EventNeighbor(rs.getLong("event_id"), rs.getLong("neighbor_id"), rs.getDouble("score")));
+    }
+
+    public record EventNeighbor(long eventId, long neighborId, double score) {
+    }
+}
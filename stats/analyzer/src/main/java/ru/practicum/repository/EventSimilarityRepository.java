@@ -1,10 +1,19 @@
 package ru.practicum.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import ru.practicum.entity.EventSimilarity;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface EventSimilarityRepository extends JpaRepository<EventSimilarity, EventSimilarity.EventSimilarityId> {
+    // Тексты запросов, план которых проверяется в AnalyzerSchemaPlanTest
+    String FIND_BY_EVENT_IDS = "SELECT * FROM event_similarity WHERE event_a IN :eventsA OR event_b IN :eventsB";
+
     List<EventSimilarity> findByIdEventAOrIdEventB(Long eventA, Long eventB);
+
+    // Все пары, в которых хотя бы одно мероприятие из набора: один запрос вместо запроса на каждое мероприятие
+    @Query(value = FIND_BY_EVENT_IDS, nativeQuery = true)
+    List<EventSimilarity> findByIdEventAInOrIdEventBIn(Collection<Long> eventsA, Collection<Long> eventsB);
 }
\ No newline at end of file
@@ -1,16 +1,32 @@
 package ru.practicum.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import ru.practicum.entity.UserAction;
 
 import java.util.List;
 
 public interface UserInteractionRepository extends JpaRepository<UserAction, UserAction.UserInteractionId> {
+    // Тексты запросов, план которых проверяется в AnalyzerSchemaPlanTest
+    String SUM_DECAYED_WEIGHTS_BY_EVENT_IDS =
+            "SELECT ua.event_id, SUM(ua.weight * EXP(-:lambda * EXTRACT(EPOCH FROM (NOW() - ua.timestamp)))) " +
+            "FROM user_action ua WHERE ua.event_id IN :eventIds GROUP BY ua.event_id";
 
     List<UserAction> findByIdUserIdOrderByTimestampDesc(Long userId);
 
+    List<UserAction> findTop10ByIdUserIdOrderByTimestampDesc(Long userId);
+
     @Query("SELECT ua.id.eventId, SUM(ua.weight) FROM UserAction ua WHERE ua.id.eventId IN :eventIds " +
             "GROUP BY ua.id.eventId")
     List<Object[]> sumMaxWeightsByEventIds(List<Long> eventIds);
-}
\ No newline at end of file
+
+    @Query(value = SUM_DECAYED_WEIGHTS_BY_EVENT_IDS, nativeQuery = true)
+    List<Object[]> sumDecayedWeightsByEventIds(List<Long> eventIds, double lambda);
+
+    // Удаляет взаимодействия, вес которых затух ниже порога
+    @Modifying
+    @Query(value = "DELETE FROM user_action ua " +
+            "WHERE ua.weight * EXP(-:lambda * EXTRACT(EPOCH FROM (NOW() - ua.timestamp))) < :threshold", nativeQuery = true)
+    int deleteDecayedBelow(double lambda, double threshold);
+}
@@ -4,64 +4,99 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import ru.practicum.entity.EventSimilarity;
 import ru.practicum.entity.UserAction;
 import ru.practicum.ewm.stats.avro.ActionTypeAvro;
 import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
 import ru.practicum.ewm.stats.avro.UserActionAvro;
-import ru.practicum.repository.EventSimilarityRepository;
-import ru.practicum.repository.UserInteractionRepository;
+import ru.practicum.repository.BatchUpsertRepository;
+import ru.practicum.repository.EventNeighborRepository;
 
-import java.util.Objects;
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
+// Пачка одного poll записывается одной транзакцией. Внутри пачки записи схлопываются по ключу строки:
+// для сходства остаётся последняя оценка пары, для действия — то, что сохранилось бы при поштучной обработке
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class KafkaConsumerService {
 
-    private final EventSimilarityRepository similarityRepository;
-    private final UserInteractionRepository interactionRepository;
+    private final BatchUpsertRepository batchUpsertRepository;
+    private final EventNeighborRepository eventNeighborRepository;
+    private final WeightDecay weightDecay;
+    private final SimilarityGraphIndex similarityIndex;
 
     @Transactional
-    public void handleSimilarity(EventSimilarityAvro avro) {
-        log.info("Processing similarity event: ");
-        log.debug("Processing similarity event: {}", avro);
-        EventSimilarity similarity = new EventSimilarity();
-        EventSimilarity.EventSimilarityId id = new EventSimilarity.EventSimilarityId();
-        id.setEventA(avro.getEventA());
-        id.setEventB(avro.getEventB());
-        similarity.setId(id);
-        similarity.setScore(avro.getScore());
-        similarity.setUpdatedAt(avro.getTimestamp());
+    public void handleSimilarities(List<EventSimilarityAvro> avros) {
+        log.debug("Processing {} similarity events", avros.size());
+        Map<PairKey, EventSimilarity> latest = new LinkedHashMap<>();
+        for (EventSimilarityAvro avro : avros) {
+            EventSimilarity similarity = new EventSimilarity();
+            EventSimilarity.EventSimilarityId id = new EventSimilarity.EventSimilarityId();
+            id.setEventA(avro.getEventA());
+            id.setEventB(avro.getEventB());
+            similarity.setId(id);
+            similarity.setScore(avro.getScore());
+            similarity.setUpdatedAt(avro.getTimestamp());
+            latest.put(new PairKey(avro.getEventA(), avro.getEventB()), similarity);
+        }
 
-        similarityRepository.save(similarity);
+        List<EventSimilarity> similarities = new ArrayList<>(latest.values());
+        // event_neighbor пишется всегда, даже если чтение из неё выключено: иначе после включения
+        // она отдавала бы оценки, устаревшие на время работы без неё
+        batchUpsertRepository.upsertSimilarities(similarities);
+        eventNeighborRepository.upsert(similarities);
+        if (similarityIndex.isEnabled()) {
+            updateIndexAfterCommit(similarities);
+        }
+        log.info("Saved {} similarities from {} events", similarities.size(), avros.size());
     }
 
-    @Transactional
-    public void handleUserAction(UserActionAvro avro) {
-        log.info("Processing user action: userId={}, eventId={}, actionType={}, timestamp={}",
-                avro.getUserId(), avro.getEventId(), avro.getActionType(), avro.getTimestamp());
-        UserAction.UserInteractionId id = new UserAction.UserInteractionId();
-        id.setUserId(avro.getUserId());
-        id.setEventId(avro.getEventId());
-
-        Optional<UserAction> existingAction = interactionRepository.findById(id);
-        UserAction action = existingAction.orElse(new UserAction());
-        action.setId(id);
-        action.setActionType(avro.getActionType().toString());
-        double newWeight = getWeightFromActionType(avro.getActionType());
+    // Граф в памяти обновляется только после фиксации: при откате пачка будет доставлена повторно,
+    // и до этого gRPC-запросы не должны видеть оценки, которых нет в базе
+    private void updateIndexAfterCommit(List<EventSimilarity> similarities) {
+        Runnable update = () -> similarities.forEach(similarity -> similarityIndex.put(
+                similarity.getId().getEventA(), similarity.getId().getEventB(), similarity.getScore()));
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            update.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                update.run();
+            }
+        });
+    }
 
-        if (Objects.isNull(action.getWeight()) || newWeight > action.getWeight()) {
-            action.setWeight(newWeight);
+    @Transactional
+    public void handleUserActions(List<UserActionAvro> avros) {
+        log.debug("Processing {} user actions", avros.size());
+        Map<PairKey, UserAction> strongest = new LinkedHashMap<>();
+        for (UserActionAvro avro : avros) {
+            UserAction action = new UserAction();
+            UserAction.UserInteractionId id = new UserAction.UserInteractionId();
+            id.setUserId(avro.getUserId());
+            id.setEventId(avro.getEventId());
+            action.setId(id);
+            action.setActionType(avro.getActionType().toString());
+            action.setWeight(getWeightFromActionType(avro.getActionType()));
             action.setTimestamp(avro.getTimestamp());
-            interactionRepository.save(action);
-            log.info("Saved user action: userId={}, eventId={}, weight={}, actionType={}",
-                    id.getUserId(), id.getEventId(), action.getWeight(), action.getActionType());
-        } else {
-            log.info("Skipped saving user action: userId={}, eventId={}, newWeight={} <= currentWeight={}",
-                    id.getUserId(), id.getEventId(), newWeight, action.getWeight());
+            // То же правило, что и в базе: в режиме затухания сравнивается затухший к моменту нового действия вес
+            strongest.merge(new PairKey(avro.getUserId(), avro.getEventId()), action, (current, candidate) ->
+                    candidate.getWeight() > weightDecay.decayed(current.getWeight(), current.getTimestamp(), candidate.getTimestamp())
+                            ? candidate : current);
         }
+
+        List<UserAction> actions = new ArrayList<>(strongest.values());
+        int updated = batchUpsertRepository.upsertUserActions(actions,
+                weightDecay.isEnabled() ? weightDecay.getLambdaPerSecond() : 0.0);
+        log.info("Saved {} of {} user actions from {} events", updated, actions.size(), avros.size());
     }
 
     private double getWeightFromActionType(ActionTypeAvro actionType) {
@@ -76,4 +111,7 @@ public class KafkaConsumerService {
                 throw new IllegalArgumentException("Неизвестный тип действия: " + actionType);
         }
     }
+
+    private record PairKey(long first, long second) {
+    }
 }
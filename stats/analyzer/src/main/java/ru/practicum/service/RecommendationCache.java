@@ -0,0 +1,202 @@
+package ru.practicum.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.practicum.config.AnalyzerProperties;
+import ru.practicum.ewm.stats.proto.RecommendedEventProto;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+
+// Кеш первых topN рекомендаций пользователя. Рекомендации зависят только от недавних мероприятий пользователя
+// и их сходств, поэтому запись сбрасывается при новых действиях пользователя или изменении сходства пары,
+// в которую входит одно из этих мероприятий. Сбрасывать нужно после фиксации транзакции записи,
+// иначе параллельный запрос может закешировать прежнее состояние базы.
+// Записи, затронутые изменением сходства, находятся по обратному индексу мероприятие -> пользователи.
+// Каждый сброс увеличивает поколение и помечает им пользователей и мероприятия; запись хранит поколение начала
+// расчёта и не остаётся в кеше, если её пользователь или исходные мероприятия помечены позже: так расчёт,
+// начатый до сброса (запрос или фоновый предрасчёт), не возвращает в кеш прежнее состояние.
+// Метрики: cache.gets/cache.size с тегом cache=recommendations и возраст отданной записи
+// analyzer.recommendations.cache.staleness
+@Slf4j
+@Component
+public class RecommendationCache {
+    private final AnalyzerProperties.RecommendationCacheConfig config;
+    private final Cache<Long, Entry> cache;
+    // Пользователи с записью в кеше по исходным мероприятиям записи
+    private final Map<Long, Set<Long>> usersByEvent = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    // Поколения последних сбросов: хранятся не дольше TTL записи, дольше расчёт не длится
+    private final Cache<Long, Long> userInvalidations;
+    private final Cache<Long, Long> eventChanges;
+    // Недавно активные пользователи для фонового предрасчёта
+    private final Cache<Long, Boolean> activeUsers;
+    private final Timer staleness;
+    private final Counter invalidations;
+
+    public RecommendationCache(AnalyzerProperties analyzerProperties, MeterRegistry meterRegistry) {
+        this.config = analyzerProperties.getRecommendationCache();
+        // Слушатель выполняется в потоке удаления, поэтому индекс не отстаёт от кеша
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(config.getMaxUsers())
+                .expireAfterWrite(config.getTtl())
+                .executor(Runnable::run)
+                .removalListener((Long userId, Entry entry, RemovalCause cause) -> unindex(userId, entry))
+                .recordStats()
+                .build();
+        this.userInvalidations = Caffeine.newBuilder()
+                .maximumSize(config.getMaxUsers())
+                .expireAfterWrite(config.getTtl())
+                .build();
+        this.eventChanges = Caffeine.newBuilder()
+                .maximumSize(config.getMaxUsers())
+                .expireAfterWrite(config.getTtl())
+                .build();
+        this.activeUsers = Caffeine.newBuilder()
+                .maximumSize(config.getPrecompute().getMaxUsers())
+                .expireAfterWrite(config.getPrecompute().getActiveWindow())
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "recommendations");
+        this.staleness = Timer.builder("analyzer.recommendations.cache.staleness")
+                .description("Age of cached recommendations when served")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.invalidations = Counter.builder("analyzer.recommendations.cache.invalidations")
+                .description("Cached recommendations dropped after new activity or similarity changes")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    public int getTopN() {
+        return config.getTopN();
+    }
+
+    public List<RecommendedEventProto> get(long userId, LongFunction<Recommendations> loader) {
+        Entry entry = cache.getIfPresent(userId);
+        if (entry == null) {
+            entry = load(userId, loader);
+        }
+        staleness.record(System.nanoTime() - entry.computedAtNanos(), TimeUnit.NANOSECONDS);
+        return entry.recommendations().events();
+    }
+
+    // Пересчёт без учёта в статистике обращений
+    public void refresh(long userId, LongFunction<Recommendations> loader) {
+        load(userId, loader);
+    }
+
+    public void onUserActivity(Collection<Long> userIds) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        // Пометка до удаления: расчёт, который запишет запись позже удаления, увидит её при проверке
+        long invalidated = generation.incrementAndGet();
+        userIds.forEach(userId -> userInvalidations.put(userId, invalidated));
+        cache.invalidateAll(userIds);
+        invalidations.increment(userIds.size());
+        if (config.getPrecompute().isEnabled()) {
+            userIds.forEach(userId -> activeUsers.put(userId, Boolean.TRUE));
+        }
+    }
+
+    public void onSimilarityChanged(Set<Long> eventIds) {
+        if (!config.isEnabled() || eventIds.isEmpty()) {
+            return;
+        }
+        long changed = generation.incrementAndGet();
+        Set<Long> userIds = new HashSet<>();
+        for (Long eventId : eventIds) {
+            eventChanges.put(eventId, changed);
+            Set<Long> users = usersByEvent.get(eventId);
+            if (users != null) {
+                userIds.addAll(users);
+            }
+        }
+        int dropped = 0;
+        for (Long userId : userIds) {
+            if (cache.asMap().remove(userId) != null) {
+                dropped++;
+            }
+        }
+        invalidations.increment(dropped);
+        log.debug("Similarity changes for {} events invalidated {} cached users", eventIds.size(), dropped);
+    }
+
+    // Недавно активные пользователи, для которых нет актуальной записи
+    public List<Long> usersToPrecompute() {
+        return activeUsers.asMap().keySet().stream()
+                .filter(userId -> !cache.asMap().containsKey(userId))
+                .toList();
+    }
+
+    // Рекомендации и недавние мероприятия пользователя, по которым они рассчитаны
+    public record Recommendations(List<RecommendedEventProto> events, Set<Long> sourceEventIds) {
+    }
+
+    // Запись добавляется в кеш и индекс до проверки поколения: сброс либо найдёт её по индексу,
+    // либо пометит пользователя или мероприятие раньше проверки, и тогда запись удаляется здесь
+    private Entry load(long userId, LongFunction<Recommendations> loader) {
+        long started = generation.get();
+        Entry entry = new Entry(loader.apply(userId), System.nanoTime(), started);
+        cache.put(userId, entry);
+        for (Long eventId : entry.recommendations().sourceEventIds()) {
+            usersByEvent.computeIfAbsent(eventId, id -> ConcurrentHashMap.newKeySet()).add(userId);
+        }
+        if (isStale(userId, entry)) {
+            cache.asMap().remove(userId, entry);
+        }
+        return entry;
+    }
+
+    private boolean isStale(long userId, Entry entry) {
+        if (isAfter(userInvalidations.getIfPresent(userId), entry.generation())) {
+            return true;
+        }
+        for (Long eventId : entry.recommendations().sourceEventIds()) {
+            if (isAfter(eventChanges.getIfPresent(eventId), entry.generation())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isAfter(Long stamp, long generation) {
+        return stamp != null && stamp > generation;
+    }
+
+    // Пользователь остаётся в индексе мероприятия, если его текущая запись рассчитана по тому же мероприятию
+    private void unindex(Long userId, Entry entry) {
+        if (userId == null || entry == null) {
+            return;
+        }
+        for (Long eventId : entry.recommendations().sourceEventIds()) {
+            usersByEvent.computeIfPresent(eventId, (id, users) -> {
+                Entry current = cache.asMap().get(userId);
+                if (current == null || !current.recommendations().sourceEventIds().contains(id)) {
+                    users.remove(userId);
+                }
+                return users.isEmpty() ? null : users;
+            });
+        }
+    }
+
+    private record Entry(Recommendations recommendations, long computedAtNanos, long generation) {
+    }
+}
@@ -0,0 +1,28 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// Периодически рассчитывает рекомендации недавно активных пользователей, запись которых сброшена или истекла,
+// чтобы их следующий запрос обслуживался из кеша
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "analyzer.recommendation-cache.precompute.enabled", havingValue = "true")
+public class RecommendationPrecomputer {
+
+    private final RecommendationService recommendationService;
+    private final RecommendationCache recommendationCache;
+
+    @Scheduled(fixedDelayString = "${analyzer.recommendation-cache.precompute.interval:PT1M}")
+    public void precompute() {
+        List<Long> userIds = recommendationCache.usersToPrecompute();
+        userIds.forEach(recommendationService::refreshRecommendationsForUser);
+        log.info("Precomputed recommendations for {} users", userIds.size());
+    }
+}
@@ -6,9 +6,12 @@ import org.springframework.stereotype.Service;
 import ru.practicum.entity.EventSimilarity;
 import ru.practicum.entity.UserAction;
 import ru.practicum.ewm.stats.proto.RecommendedEventProto;
+import ru.practicum.config.AnalyzerProperties;
+import ru.practicum.repository.EventNeighborRepository;
 import ru.practicum.repository.EventSimilarityRepository;
 import ru.practicum.repository.UserInteractionRepository;
 
+import java.time.Instant;
 import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -20,82 +23,109 @@ public class RecommendationService {
 
     private final EventSimilarityRepository similarityRepository;
     private final UserInteractionRepository interactionRepository;
+    private final WeightDecay weightDecay;
+    private final SimilarityGraphIndex similarityIndex;
+    private final RecommendationCache recommendationCache;
+    private final EventNeighborRepository eventNeighborRepository;
+    private final AnalyzerProperties analyzerProperties;
 
     public Stream<RecommendedEventProto> getRecommendationsForUser(long userId, long maxResults) {
         log.info("getRecommendationsForUser {}", userId);
-        //Получение maxResults последних взаимодействий пользователя
-        List<UserAction> userActions = interactionRepository.findByIdUserIdOrderByTimestampDesc(userId);
+        if (!recommendationCache.isEnabled() || maxResults > recommendationCache.getTopN()) {
+            return recommend(userId, maxResults).events().stream();
+        }
+        return recommendationCache.get(userId, id -> recommend(id, recommendationCache.getTopN())).stream()
+                .limit(maxResults);
+    }
+
+    public void refreshRecommendationsForUser(long userId) {
+        recommendationCache.refresh(userId, id -> recommend(id, recommendationCache.getTopN()));
+    }
+
+    // Последние взаимодействия читаются из базы, пары с ними — из графа сходства в памяти или одним запросом.
+    // Соседи кандидата — только недавние мероприятия пользователя, поэтому для оценки достаточно тех же пар
+    private RecommendationCache.Recommendations recommend(long userId, long maxResults) {
+        //Получение 10 последних взаимодействий пользователя
+        List<UserAction> userActions = interactionRepository.findTop10ByIdUserIdOrderByTimestampDesc(userId);
         if (userActions.isEmpty()) {
-            return Stream.empty();
+            return new RecommendationCache.Recommendations(List.of(), Set.of());
         }
-        List<Long> interactedEventIds = userActions.stream()
-                .map(action -> action.getId().getEventId())
-                .limit(10) // Ограничим 10 последними
-                .collect(Collectors.toList());
+        Map<Long, UserAction> actionsByEventId = new HashMap<>();
+        for (UserAction action : userActions) {
+            actionsByEventId.putIfAbsent(action.getId().getEventId(), action);
+        }
+        Set<Long> interactedEventIds = actionsByEventId.keySet();
 
-        //Поиск похожих мероприятий
-        Set<Long> candidateEventIds = interactedEventIds.stream()
-                .flatMap(eventId -> {
-                    List<EventSimilarity> similarities = similarityRepository.findByIdEventAOrIdEventB(eventId, eventId);
-                    return similarities.stream()
-                            .flatMap(s -> {
-                                Set<Long> events = new HashSet<>();
-                                events.add(s.getId().getEventA());
-                                events.add(s.getId().getEventB());
-                                return events.stream();
-                            });
-                })
-                .filter(eventId -> !interactedEventIds.contains(eventId))
-                .collect(Collectors.toSet());
+        //Поиск похожих мероприятий: соседи из числа мероприятий пользователя, сгруппированные по кандидату
+        Map<Long, List<Neighbor>> neighborsByCandidate = similarityIndex.isEnabled()
+                ? candidatesFromIndex(interactedEventIds)
+                : candidatesFromRepository(interactedEventIds);
 
         //Рассчет оценки для кандидатов
-        return candidateEventIds.stream()
-                .map(eventId -> {
-                    // Найти K ближайших соседей (K=5)
-                    List<EventSimilarity> neighbors = similarityRepository.findByIdEventAOrIdEventB(eventId, eventId)
-                            .stream()
-                            .filter(s -> interactedEventIds.contains(s.getId().getEventA()) ||
-                                    interactedEventIds.contains(s.getId().getEventB()))
-                            .sorted(Comparator.comparing(EventSimilarity::getScore).reversed())
-                            .limit(5)
-                            .collect(Collectors.toList());
+        Instant now = Instant.now();
+        List<RecommendedEventProto> recommendations = neighborsByCandidate.entrySet().stream()
+                .map(candidate -> {
+                    // K ближайших соседей (K=5)
+                    List<Neighbor> neighbors = candidate.getValue();
+                    neighbors.sort(Comparator.comparingDouble(Neighbor::score).reversed());
 
                     //Поиск взвешенной оценки
                     double weightedSum = 0.0;
                     double similaritySum = 0.0;
-                    for (EventSimilarity neighbor : neighbors) {
-                        long neighborEventId = neighbor.getId().getEventA().equals(eventId) ?
-                                neighbor.getId().getEventB() : neighbor.getId().getEventA();
-                        UserAction action = userActions.stream()
-                                .filter(a -> a.getId().getEventId().equals(neighborEventId))
-                                .findFirst()
-                                .orElse(null);
-                        if (Objects.nonNull(action)) {
-                            weightedSum += neighbor.getScore() * action.getWeight();
-                            similaritySum += neighbor.getScore();
-                        }
+                    for (Neighbor neighbor : neighbors.subList(0, Math.min(5, neighbors.size()))) {
+                        UserAction action = actionsByEventId.get(neighbor.eventId());
+                        weightedSum += neighbor.score() * weightDecay.decayed(action.getWeight(), action.getTimestamp(), now);
+                        similaritySum += neighbor.score();
                     }
                     double score = similaritySum > 0 ? weightedSum / similaritySum : 0.0;
 
                     return RecommendedEventProto.newBuilder()
-                            .setEventId(eventId)
+                            .setEventId(candidate.getKey())
                             .setScore(score)
                             .build();
                 })
                 .sorted(Comparator.comparingDouble(RecommendedEventProto::getScore).reversed())
-                .limit(maxResults);
+                .limit(maxResults)
+                .toList();
+        return new RecommendationCache.Recommendations(recommendations, Set.copyOf(interactedEventIds));
     }
 
     public Stream<RecommendedEventProto> getSimilarEvents(long eventId, long userId, long maxResults) {
         log.info("getSimilarEvents to {}", userId);
-        //Поиск похожих мероприятий
-        List<EventSimilarity> similarities = similarityRepository.findByIdEventAOrIdEventB(eventId, eventId);
-
         //Исключить мероприятия, с которыми пользователь взаимодействовал
-        List<Long> interactedEventIds = interactionRepository.findByIdUserIdOrderByTimestampDesc(userId)
+        Set<Long> interactedEventIds = interactionRepository.findByIdUserIdOrderByTimestampDesc(userId)
                 .stream()
                 .map(action -> action.getId().getEventId())
-                .collect(Collectors.toList());
+                .collect(Collectors.toSet());
+
+        if (similarityIndex.isEnabled()) {
+            //Соседи в графе уже упорядочены по убыванию оценки
+            SimilarityGraphIndex.Neighbors neighbors = similarityIndex.neighbors(eventId);
+            List<RecommendedEventProto> results = new ArrayList<>();
+            for (int i = 0; i < neighbors.size() && results.size() < maxResults; i++) {
+                if (!interactedEventIds.contains(neighbors.eventId(i))) {
+                    results.add(RecommendedEventProto.newBuilder()
+                            .setEventId(neighbors.eventId(i))
+                            .setScore(neighbors.score(i))
+                            .build());
+                }
+            }
+            return results.stream();
+        }
+
+        if (analyzerProperties.getSymmetricNeighbors().isEnabled()) {
+            //Соседи из симметричной таблицы уже упорядочены по убыванию оценки
+            return eventNeighborRepository.findByEventIds(List.of(eventId)).stream()
+                    .filter(neighbor -> !interactedEventIds.contains(neighbor.neighborId()))
+                    .limit(maxResults)
+                    .map(neighbor -> RecommendedEventProto.newBuilder()
+                            .setEventId(neighbor.neighborId())
+                            .setScore(neighbor.score())
+                            .build());
+        }
+
+        //Поиск похожих мероприятий
+        List<EventSimilarity> similarities = similarityRepository.findByIdEventAOrIdEventB(eventId, eventId);
 
         //Поиск maxResult самых похожих
         return similarities.stream()
@@ -121,11 +151,13 @@ public class RecommendationService {
                 return Stream.empty();
             }
             //Получить сумму максимальных весов для каждого eventId
-            List<Object[]> weightSums = interactionRepository.sumMaxWeightsByEventIds(eventIds);
+            List<Object[]> weightSums = weightDecay.isEnabled()
+                    ? interactionRepository.sumDecayedWeightsByEventIds(eventIds, weightDecay.getLambdaPerSecond())
+                    : interactionRepository.sumMaxWeightsByEventIds(eventIds);
             Map<Long, Double> weights = weightSums.stream()
                     .collect(Collectors.toMap(
-                            row -> (Long) row[0], // event_id
-                            row -> (Double) row[1], // sum of weights
+                            row -> ((Number) row[0]).longValue(), // event_id
+                            row -> ((Number) row[1]).doubleValue(), // sum of weights
                             (a, b) -> a
                     ));
             List<RecommendedEventProto> results = eventIds.stream()
@@ -141,4 +173,47 @@ public class RecommendationService {
             throw new RuntimeException("Failed to calculate interactions weight", e);
         }
     }
-}
\ No newline at end of file
+
+    private Map<Long, List<Neighbor>> candidatesFromIndex(Set<Long> interactedEventIds) {
+        Map<Long, List<Neighbor>> neighborsByCandidate = new HashMap<>();
+        for (long interactedEventId : interactedEventIds) {
+            SimilarityGraphIndex.Neighbors neighbors = similarityIndex.neighbors(interactedEventId);
+            for (int i = 0; i < neighbors.size(); i++) {
+                if (!interactedEventIds.contains(neighbors.eventId(i))) {
+                    neighborsByCandidate.computeIfAbsent(neighbors.eventId(i), id -> new ArrayList<>())
+                            .add(new Neighbor(interactedEventId, neighbors.score(i)));
+                }
+            }
+        }
+        return neighborsByCandidate;
+    }
+
+    // Все пары с мероприятиями пользователя одним запросом; учитываются пары ровно с одним таким мероприятием
+    private Map<Long, List<Neighbor>> candidatesFromRepository(Set<Long> interactedEventIds) {
+        Map<Long, List<Neighbor>> neighborsByCandidate = new HashMap<>();
+        if (analyzerProperties.getSymmetricNeighbors().isEnabled()) {
+            for (EventNeighborRepository.EventNeighbor neighbor : eventNeighborRepository.findByEventIds(interactedEventIds)) {
+                if (!interactedEventIds.contains(neighbor.neighborId())) {
+                    neighborsByCandidate.computeIfAbsent(neighbor.neighborId(), id -> new ArrayList<>())
+                            .add(new Neighbor(neighbor.eventId(), neighbor.score()));
+                }
+            }
+            return neighborsByCandidate;
+        }
+        for (EventSimilarity similarity : similarityRepository.findByIdEventAInOrIdEventBIn(interactedEventIds, interactedEventIds)) {
+            long eventA = similarity.getId().getEventA();
+            long eventB = similarity.getId().getEventB();
+            boolean interactedA = interactedEventIds.contains(eventA);
+            if (interactedA != interactedEventIds.contains(eventB)) {
+                long candidateEventId = interactedA ? eventB : eventA;
+                neighborsByCandidate.computeIfAbsent(candidateEventId, id -> new ArrayList<>())
+                        .add(new Neighbor(interactedA ? eventA : eventB, similarity.getScore()));
+            }
+        }
+        return neighborsByCandidate;
+    }
+
+    // Мероприятие пользователя, похожее на кандидата, и оценка их сходства
+    private record Neighbor(long eventId, double score) {
+    }
+}
@@ -0,0 +1,164 @@
+package ru.practicum.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import ru.practicum.config.AnalyzerProperties;
+import ru.practicum.entity.EventSimilarity;
+import ru.practicum.repository.EventSimilarityRepository;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Граф сходства в памяти: для каждого мероприятия — соседи в порядке убывания оценки на примитивных массивах.
+// Списки соседей неизменяемы и заменяются целиком, поэтому gRPC-потоки читают граф без блокировок,
+// а обновляет его поток слушателя Kafka. База остаётся хранилищем для загрузки графа при старте
+@Slf4j
+@Component
+public class SimilarityGraphIndex {
+    private final EventSimilarityRepository similarityRepository;
+    private final AnalyzerProperties.SimilarityIndexConfig config;
+    private final Map<Long, Neighbors> adjacency = new ConcurrentHashMap<>();
+
+    public SimilarityGraphIndex(EventSimilarityRepository similarityRepository, AnalyzerProperties analyzerProperties) {
+        this.similarityRepository = similarityRepository;
+        this.config = analyzerProperties.getSimilarityIndex();
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    // Загружается до запуска слушателей Kafka, поэтому обновления из топика не перезаписываются данными таблицы
+    @PostConstruct
+    public void load() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        long started = System.nanoTime();
+        Map<Long, NeighborsBuilder> builders = new HashMap<>();
+        Pageable pageable = PageRequest.of(0, config.getBootstrapPageSize(), Sort.by("id.eventA", "id.eventB"));
+        long pairs = 0;
+        Page<EventSimilarity> page;
+        do {
+            page = similarityRepository.findAll(pageable);
+            for (EventSimilarity similarity : page) {
+                long eventA = similarity.getId().getEventA();
+                long eventB = similarity.getId().getEventB();
+                builders.computeIfAbsent(eventA, id -> new NeighborsBuilder()).add(eventB, similarity.getScore());
+                builders.computeIfAbsent(eventB, id -> new NeighborsBuilder()).add(eventA, similarity.getScore());
+                pairs++;
+            }
+            pageable = page.nextPageable();
+        } while (page.hasNext());
+        builders.forEach((eventId, builder) -> adjacency.put(eventId, builder.build()));
+        log.info("Similarity graph loaded: {} events, {} pairs in {} ms", adjacency.size(), pairs,
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    public void put(long eventA, long eventB, double score) {
+        adjacency.compute(eventA, (id, neighbors) -> (neighbors == null ? Neighbors.EMPTY : neighbors).with(eventB, score));
+        adjacency.compute(eventB, (id, neighbors) -> (neighbors == null ? Neighbors.EMPTY : neighbors).with(eventA, score));
+    }
+
+    public Neighbors neighbors(long eventId) {
+        return adjacency.getOrDefault(eventId, Neighbors.EMPTY);
+    }
+
+    public int eventCount() {
+        return adjacency.size();
+    }
+
+    public static final class Neighbors {
+        static final Neighbors EMPTY = new Neighbors(new long[0], new double[0]);
+
+        private final long[] eventIds;
+        private final double[] scores;
+
+        private Neighbors(long[] eventIds, double[] scores) {
+            this.eventIds = eventIds;
+            this.scores = scores;
+        }
+
+        public int size() {
+            return eventIds.length;
+        }
+
+        public long eventId(int index) {
+            return eventIds[index];
+        }
+
+        public double score(int index) {
+            return scores[index];
+        }
+
+        // Копия с новой оценкой соседа: прежняя позиция соседа убирается, новая находится по оценке
+        Neighbors with(long eventId, double score) {
+            int existing = -1;
+            for (int i = 0; i < eventIds.length; i++) {
+                if (eventIds[i] == eventId) {
+                    existing = i;
+                    break;
+                }
+            }
+            int size = existing >= 0 ? eventIds.length : eventIds.length + 1;
+            long[] newEventIds = new long[size];
+            double[] newScores = new double[size];
+            int position = 0;
+            boolean inserted = false;
+            for (int i = 0; i < eventIds.length; i++) {
+                if (i == existing) {
+                    continue;
+                }
+                if (!inserted && score > scores[i]) {
+                    newEventIds[position] = eventId;
+                    newScores[position++] = score;
+                    inserted = true;
+                }
+                newEventIds[position] = eventIds[i];
+                newScores[position++] = scores[i];
+            }
+            if (!inserted) {
+                newEventIds[position] = eventId;
+                newScores[position] = score;
+            }
+            return new Neighbors(newEventIds, newScores);
+        }
+    }
+
+    private static final class NeighborsBuilder {
+        private long[] eventIds = new long[4];
+        private double[] scores = new double[4];
+        private int size;
+
+        void add(long eventId, double score) {
+            if (size == eventIds.length) {
+                eventIds = Arrays.copyOf(eventIds, size << 1);
+                scores = Arrays.copyOf(scores, size << 1);
+            }
+            eventIds[size] = eventId;
+            scores[size++] = score;
+        }
+
+        Neighbors build() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Double.compare(scores[b], scores[a]));
+            long[] sortedEventIds = new long[size];
+            double[] sortedScores = new double[size];
+            for (int i = 0; i < size; i++) {
+                sortedEventIds[i] = eventIds[order[i]];
+                sortedScores[i] = scores[order[i]];
+            }
+            return new Neighbors(sortedEventIds, sortedScores);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.config.AnalyzerProperties;
+import ru.practicum.repository.UserInteractionRepository;
+
+// Периодически удаляет затухшие взаимодействия, чтобы таблица не росла за пределами окна затухания
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "analyzer.decay.enabled", havingValue = "true")
+public class UserActionPruner {
+
+    private final UserInteractionRepository interactionRepository;
+    private final AnalyzerProperties analyzerProperties;
+    private final WeightDecay weightDecay;
+
+    @Scheduled(fixedDelayString = "${analyzer.decay.prune-interval:PT1H}")
+    @Transactional
+    public void prune() {
+        int deleted = interactionRepository.deleteDecayedBelow(weightDecay.getLambdaPerSecond(),
+                analyzerProperties.getDecay().getPruneThreshold());
+        log.info("Pruned {} decayed user actions", deleted);
+    }
+}
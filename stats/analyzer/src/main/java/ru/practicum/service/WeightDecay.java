@@ -0,0 +1,39 @@
+package ru.practicum.service;
+
+import org.springframework.stereotype.Component;
+import ru.practicum.config.AnalyzerProperties;
+
+import java.time.Duration;
+import java.time.Instant;
+
+// Ленивое затухание весов: в базе хранится исходный вес и время взаимодействия,
+// а затухание применяется при чтении
+@Component
+public class WeightDecay {
+    private final boolean enabled;
+    // Коэффициент затухания в секунду: ln 2 / halfLife
+    private final double lambdaPerSecond;
+
+    public WeightDecay(AnalyzerProperties analyzerProperties) {
+        AnalyzerProperties.DecayConfig config = analyzerProperties.getDecay();
+        this.enabled = config.isEnabled();
+        this.lambdaPerSecond = Math.log(2) / config.getHalfLife().toSeconds();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public double getLambdaPerSecond() {
+        return lambdaPerSecond;
+    }
+
+    // Вес взаимодействия, совершённого в момент timestamp, к моменту now
+    public double decayed(double weight, Instant timestamp, Instant now) {
+        if (!enabled || timestamp == null) {
+            return weight;
+        }
+        long seconds = Math.max(0, Duration.between(timestamp, now).toSeconds());
+        return weight * Math.exp(-lambdaPerSecond * seconds);
+    }
+}
@@ -1,6 +1,4 @@
---DROP TABLE IF EXISTS event_similarity;
---DROP TABLE IF EXISTS user_action;
-
+-- Исходная схема анализатора. IF NOT EXISTS: базы, созданные до перехода на миграции, принимаются как есть
 CREATE TABLE IF NOT EXISTS event_similarity (
     event_a BIGINT NOT NULL,
     event_b BIGINT NOT NULL,
@@ -17,4 +15,4 @@ CREATE TABLE IF NOT EXISTS user_action (
     weight DOUBLE PRECISION NOT NULL,
     timestamp TIMESTAMP WITH TIME ZONE NOT NULL,
     PRIMARY KEY (user_id, event_id)
-);
\ No newline at end of file
+);
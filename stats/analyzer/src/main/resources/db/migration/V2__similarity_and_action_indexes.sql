@@ -0,0 +1,13 @@
+-- Оценка пары обновляется постоянно. Индексы event_similarity не содержат score и updated_at, поэтому
+-- обновление остаётся HOT (без записи в индексы), если на странице есть свободное место: его оставляет fillfactor
+ALTER TABLE event_similarity SET (fillfactor = 80);
+
+-- Выборки event_a = ? OR event_b = ? (и IN по обоим столбцам): сторону event_a обслуживает первичный ключ,
+-- сторону event_b — этот индекс, вместе они дают BitmapOr вместо полного просмотра таблицы
+CREATE INDEX IF NOT EXISTS event_similarity_event_b_idx ON event_similarity (event_b, event_a);
+
+-- Последние действия пользователя: WHERE user_id = ? ORDER BY timestamp DESC LIMIT n без сортировки
+CREATE INDEX IF NOT EXISTS user_action_user_timestamp_idx ON user_action (user_id, timestamp DESC);
+
+-- Суммы весов по мероприятиям (в том числе с затуханием по timestamp) читаются только из индекса
+CREATE INDEX IF NOT EXISTS user_action_event_covering_idx ON user_action (event_id) INCLUDE (weight, timestamp);
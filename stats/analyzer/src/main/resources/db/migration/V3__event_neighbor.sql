@@ -0,0 +1,15 @@
+-- Симметричная таблица соседей: каждая пара хранится в обоих направлениях, поэтому соседи мероприятия
+-- читаются диапазоном первичного ключа без OR. Заполняется, если включено analyzer.symmetric-neighbors.enabled
+CREATE TABLE IF NOT EXISTS event_neighbor (
+    event_id BIGINT NOT NULL,
+    neighbor_id BIGINT NOT NULL,
+    score DOUBLE PRECISION NOT NULL,
+    updated_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (event_id, neighbor_id)
+) WITH (fillfactor = 80);
+
+INSERT INTO event_neighbor (event_id, neighbor_id, score, updated_at)
+SELECT event_a, event_b, score, updated_at FROM event_similarity
+UNION ALL
+SELECT event_b, event_a, score, updated_at FROM event_similarity
+ON CONFLICT DO NOTHING;
@@ -0,0 +1,113 @@
+package ru.practicum.repository;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.StringJoiner;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Планы запросов анализатора на схеме из миграций: проверяются тексты запросов репозиториев с подставленными
+// параметрами. Нужен Docker: без него тест пропускается
+@Testcontainers(disabledWithoutDocker = true)
+public class AnalyzerSchemaPlanTest {
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16.1");
+
+    private static Connection connection;
+
+    @BeforeAll
+    public static void migrateAndSeed() throws SQLException {
+        Flyway.configure()
+                .dataSource(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword())
+                .load()
+                .migrate();
+        connection = DriverManager.getConnection(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+        try (Statement statement = connection.createStatement()) {
+            // 2000 мероприятий по 50 соседей и 10000 пользователей по 20 действий
+            statement.execute("INSERT INTO event_similarity (event_a, event_b, score, updated_at) "
+                    + "SELECT a, a + d, random(), now() FROM generate_series(1, 2000) a, generate_series(1, 50) d");
+            statement.execute("INSERT INTO event_neighbor (event_id, neighbor_id, score, updated_at) "
+                    + "SELECT event_a, event_b, score, updated_at FROM event_similarity "
+                    + "UNION ALL SELECT event_b, event_a, score, updated_at FROM event_similarity");
+            statement.execute("INSERT INTO user_action (user_id, event_id, action_type, weight, timestamp) "
+                    + "SELECT u, (u * 7 + e) % 2000 + 1, 'VIEW', 0.4, now() - e * interval '1 minute' "
+                    + "FROM generate_series(1, 10000) u, generate_series(1, 20) e");
+            // Карта видимости нужна для Index Only Scan
+            statement.execute("VACUUM ANALYZE");
+        }
+    }
+
+    @AfterAll
+    public static void close() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    public void similaritiesOfEvents_thenBothColumnsServedByIndexes() throws SQLException {
+        String plan = explain(EventSimilarityRepository.FIND_BY_EVENT_IDS
+                .replace(":eventsA", "(10, 20, 30)")
+                .replace(":eventsB", "(10, 20, 30)"));
+
+        assertTrue(plan.contains("event_similarity_event_b_idx"), plan);
+        assertTrue(plan.contains("event_similarity_pkey"), plan);
+        assertFalse(plan.contains("Seq Scan on event_similarity"), plan);
+    }
+
+    @Test
+    public void recentActionsOfUser_thenReadInIndexOrderWithoutSort() throws SQLException {
+        String plan = explain("SELECT * FROM user_action WHERE user_id = 42 ORDER BY timestamp DESC LIMIT 10");
+
+        assertTrue(plan.contains("user_action_user_timestamp_idx"), plan);
+        assertFalse(plan.contains("Sort"), plan);
+    }
+
+    @Test
+    public void weightSumsOfEvents_thenIndexOnlyScan() throws SQLException {
+        String plan = explain(UserInteractionRepository.SUM_DECAYED_WEIGHTS_BY_EVENT_IDS
+                .replace(":lambda", "0.001")
+                .replace(":eventIds", "(10, 20, 30)"));
+
+        assertTrue(plan.contains("Index Only Scan using user_action_event_covering_idx"), plan);
+    }
+
+    @Test
+    public void neighborsOfEvents_thenPrimaryKeyRange() throws SQLException {
+        String plan = explain(EventNeighborRepository.SELECT.replace("?", "'{10, 20, 30}'::bigint[]"));
+
+        assertTrue(plan.contains("event_neighbor_pkey"), plan);
+        assertFalse(plan.contains("Seq Scan on event_neighbor"), plan);
+    }
+
+    @Test
+    public void similarityTable_thenFillfactorLeavesRoomForHotUpdates() throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(
+                     "SELECT array_to_string(reloptions, ',') FROM pg_class WHERE relname = 'event_similarity'")) {
+            assertTrue(rs.next());
+            assertTrue(rs.getString(1).contains("fillfactor=80"), rs.getString(1));
+        }
+    }
+
+    private String explain(String sql) throws SQLException {
+        StringJoiner plan = new StringJoiner("\n");
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("EXPLAIN " + sql)) {
+            while (rs.next()) {
+                plan.add(rs.getString(1));
+            }
+        }
+        return plan.toString();
+    }
+}
@@ -0,0 +1,163 @@
+package ru.practicum.repository;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.practicum.entity.EventSimilarity;
+import ru.practicum.entity.UserAction;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Многострочные upsert на схеме из миграций. Нужен Docker: без него тест пропускается
+@Testcontainers(disabledWithoutDocker = true)
+public class BatchUpsertRepositoryTest {
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16.1");
+
+    // Вес затухает вдвое за час
+    private static final double LAMBDA_PER_SECOND = Math.log(2) / Duration.ofHours(1).toSeconds();
+    private static final Instant NOW = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+    private static JdbcTemplate jdbcTemplate;
+    private static BatchUpsertRepository repository;
+
+    @BeforeAll
+    public static void migrate() {
+        Flyway.configure()
+                .dataSource(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword())
+                .load()
+                .migrate();
+        jdbcTemplate = new JdbcTemplate(
+                new DriverManagerDataSource(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword()));
+        repository = new BatchUpsertRepository(jdbcTemplate);
+    }
+
+    @BeforeEach
+    public void truncate() {
+        jdbcTemplate.execute("TRUNCATE event_similarity, user_action");
+    }
+
+    @Test
+    public void statement_thenOneInsertWithRowPerRecordAndConflictClause() {
+        String sql = BatchUpsertRepository.statement("INSERT INTO t (a, b) VALUES ", "(?, ?)", 3,
+                " ON CONFLICT (a) DO NOTHING");
+
+        assertEquals("INSERT INTO t (a, b) VALUES (?, ?), (?, ?), (?, ?) ON CONFLICT (a) DO NOTHING", sql);
+    }
+
+    @Test
+    public void upsertSimilarities_whenMoreRowsThanStatementLimit_thenAllChunksWritten() {
+        int rows = BatchUpsertRepository.ROWS_PER_STATEMENT * 2 + 500;
+        List<EventSimilarity> similarities = new ArrayList<>();
+        for (long eventA = 1; eventA <= rows; eventA++) {
+            similarities.add(similarity(eventA, eventA + 1, 0.5));
+        }
+
+        assertEquals(rows, repository.upsertSimilarities(similarities));
+        assertEquals(rows, count("event_similarity"));
+    }
+
+    @Test
+    public void upsertSimilarities_whenPairExists_thenScoreReplaced() {
+        repository.upsertSimilarities(List.of(similarity(1, 2, 0.5), similarity(1, 3, 0.1)));
+
+        repository.upsertSimilarities(List.of(similarity(1, 2, 0.2)));
+
+        assertEquals(2, count("event_similarity"));
+        assertEquals(0.2, jdbcTemplate.queryForObject(
+                "SELECT score FROM event_similarity WHERE event_a = 1 AND event_b = 2", Double.class));
+    }
+
+    @Test
+    public void upsertUserActions_whenMoreRowsThanStatementLimit_thenAllChunksWritten() {
+        int rows = BatchUpsertRepository.ROWS_PER_STATEMENT + 1;
+        List<UserAction> actions = new ArrayList<>();
+        for (long userId = 1; userId <= rows; userId++) {
+            actions.add(action(userId, 10, "VIEW", 0.4, NOW));
+        }
+
+        assertEquals(rows, repository.upsertUserActions(actions, LAMBDA_PER_SECOND));
+        assertEquals(rows, count("user_action"));
+    }
+
+    @Test
+    public void upsertUserActions_whenNewWeightBelowDecayedWeight_thenStoredActionKept() {
+        repository.upsertUserActions(List.of(action(1, 10, "LIKE", 1.0, NOW)), LAMBDA_PER_SECOND);
+
+        // Через час сохранённый вес затух до 0.5
+        repository.upsertUserActions(List.of(action(1, 10, "VIEW", 0.4, NOW.plus(Duration.ofHours(1)))),
+                LAMBDA_PER_SECOND);
+
+        assertEquals("LIKE", actionType(1, 10));
+        assertEquals(1.0, weight(1, 10));
+    }
+
+    @Test
+    public void upsertUserActions_whenNewWeightAboveDecayedWeight_thenActionReplaced() {
+        repository.upsertUserActions(List.of(action(1, 10, "LIKE", 1.0, NOW)), LAMBDA_PER_SECOND);
+
+        repository.upsertUserActions(List.of(action(1, 10, "REGISTER", 0.6, NOW.plus(Duration.ofHours(1)))),
+                LAMBDA_PER_SECOND);
+
+        assertEquals("REGISTER", actionType(1, 10));
+        assertEquals(0.6, weight(1, 10));
+    }
+
+    @Test
+    public void upsertUserActions_whenNoDecay_thenOnlyLargerWeightReplaces() {
+        repository.upsertUserActions(List.of(action(1, 10, "LIKE", 1.0, NOW)), 0.0);
+
+        repository.upsertUserActions(List.of(action(1, 10, "REGISTER", 0.6, NOW.plus(Duration.ofHours(1)))), 0.0);
+
+        assertEquals("LIKE", actionType(1, 10));
+    }
+
+    private long count(String table) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM " + table, Long.class);
+    }
+
+    private String actionType(long userId, long eventId) {
+        return jdbcTemplate.queryForObject("SELECT action_type FROM user_action WHERE user_id = ? AND event_id = ?",
+                String.class, userId, eventId);
+    }
+
+    private double weight(long userId, long eventId) {
+        return jdbcTemplate.queryForObject("SELECT weight FROM user_action WHERE user_id = ? AND event_id = ?",
+                Double.class, userId, eventId);
+    }
+
+    private EventSimilarity similarity(long eventA, long eventB, double score) {
+        EventSimilarity.EventSimilarityId id = new EventSimilarity.EventSimilarityId();
+        id.setEventA(eventA);
+        id.setEventB(eventB);
+        EventSimilarity similarity = new EventSimilarity();
+        similarity.setId(id);
+        similarity.setScore(score);
+        similarity.setUpdatedAt(NOW);
+        return similarity;
+    }
+
+    private UserAction action(long userId, long eventId, String actionType, double weight, Instant timestamp) {
+        UserAction.UserInteractionId id = new UserAction.UserInteractionId();
+        id.setUserId(userId);
+        id.setEventId(eventId);
+        UserAction action = new UserAction();
+        action.setId(id);
+        action.setActionType(actionType);
+        action.setWeight(weight);
+        action.setTimestamp(timestamp);
+        return action;
+    }
+}
@@ -0,0 +1,80 @@
+package ru.practicum.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.config.AnalyzerProperties;
+import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
+import ru.practicum.repository.BatchUpsertRepository;
+import ru.practicum.repository.EventNeighborRepository;
+import ru.practicum.repository.EventSimilarityRepository;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.springframework.transaction.support.TransactionSynchronization.STATUS_ROLLED_BACK;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.clearSynchronization;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.getSynchronizations;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.initSynchronization;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.isSynchronizationActive;
+
+public class KafkaConsumerServiceTest {
+    private final AnalyzerProperties properties = new AnalyzerProperties();
+    private final SimilarityGraphIndex similarityIndex =
+            new SimilarityGraphIndex(mock(EventSimilarityRepository.class), properties);
+    private final EventNeighborRepository eventNeighborRepository = mock(EventNeighborRepository.class);
+    private final KafkaConsumerService service = new KafkaConsumerService(mock(BatchUpsertRepository.class),
+            eventNeighborRepository, new WeightDecay(properties), similarityIndex);
+
+    @AfterEach
+    public void clear() {
+        if (isSynchronizationActive()) {
+            clearSynchronization();
+        }
+    }
+
+    @Test
+    public void handleSimilarities_whenTransactionCommitted_thenIndexUpdatedAfterCommit() {
+        initSynchronization();
+        service.handleSimilarities(List.of(similarity(1, 2, 0.5)));
+        assertEquals(0, similarityIndex.neighbors(1).size());
+
+        getSynchronizations().forEach(synchronization -> synchronization.afterCommit());
+
+        assertEquals(1, similarityIndex.neighbors(1).size());
+        assertEquals(0.5, similarityIndex.neighbors(1).score(0));
+    }
+
+    @Test
+    public void handleSimilarities_whenTransactionRolledBack_thenIndexNotUpdated() {
+        initSynchronization();
+        service.handleSimilarities(List.of(similarity(1, 2, 0.5)));
+
+        getSynchronizations().forEach(synchronization -> synchronization.afterCompletion(STATUS_ROLLED_BACK));
+
+        assertEquals(0, similarityIndex.neighbors(1).size());
+    }
+
+    @Test
+    public void handleSimilarities_whenNeighborReadsDisabled_thenNeighborTableStillWritten() {
+        initSynchronization();
+        properties.getSymmetricNeighbors().setEnabled(false);
+
+        service.handleSimilarities(List.of(similarity(1, 2, 0.5)));
+
+        verify(eventNeighborRepository).upsert(argThat(similarities -> similarities.size() == 1
+                && similarities.get(0).getScore() == 0.5));
+    }
+
+    private EventSimilarityAvro similarity(long eventA, long eventB, double score) {
+        return EventSimilarityAvro.newBuilder()
+                .setEventA(eventA)
+                .setEventB(eventB)
+                .setScore(score)
+                .setTimestamp(Instant.now())
+                .build();
+    }
+}
@@ -0,0 +1,108 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.practicum.config.AnalyzerProperties;
+import ru.practicum.ewm.stats.proto.RecommendedEventProto;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RecommendationCacheTest {
+    private final RecommendationCache cache = new RecommendationCache(new AnalyzerProperties(), new SimpleMeterRegistry());
+
+    @Test
+    public void onSimilarityChanged_whenEventChanged_thenOnlyUsersWithThatSourceEventReloaded() {
+        CountingLoader first = new CountingLoader(Set.of(10L));
+        CountingLoader second = new CountingLoader(Set.of(20L));
+        cache.get(1, first);
+        cache.get(2, second);
+
+        cache.onSimilarityChanged(Set.of(10L));
+        cache.get(1, first);
+        cache.get(2, second);
+
+        assertEquals(2, first.calls.get());
+        assertEquals(1, second.calls.get());
+    }
+
+    @Test
+    public void onSimilarityChanged_whenUserReloadedWithOtherSources_thenPreviousSourceNoLongerInvalidates() {
+        cache.get(1, new CountingLoader(Set.of(10L)));
+        cache.onUserActivity(List.of(1L));
+        CountingLoader reloaded = new CountingLoader(Set.of(20L));
+        cache.get(1, reloaded);
+
+        cache.onSimilarityChanged(Set.of(10L));
+        cache.get(1, reloaded);
+
+        assertEquals(1, reloaded.calls.get());
+    }
+
+    @Test
+    public void get_whenSimilarityChangedDuringLoad_thenResultNotCached() {
+        CountingLoader loader = new CountingLoader(Set.of(10L),
+                () -> cache.onSimilarityChanged(Set.of(10L)));
+
+        List<RecommendedEventProto> served = cache.get(1, loader);
+        cache.get(1, loader);
+
+        assertEquals(1, served.size());
+        assertEquals(2, loader.calls.get());
+    }
+
+    @Test
+    public void get_whenUserActiveDuringLoad_thenResultNotCached() {
+        CountingLoader loader = new CountingLoader(Set.of(10L),
+                () -> cache.onUserActivity(List.of(1L)));
+
+        cache.get(1, loader);
+        cache.get(1, loader);
+
+        assertEquals(2, loader.calls.get());
+    }
+
+    @Test
+    public void refresh_whenSimilarityChangedDuringLoad_thenResultNotCached() {
+        cache.refresh(1, new CountingLoader(Set.of(10L), () -> cache.onSimilarityChanged(Set.of(10L))));
+        CountingLoader loader = new CountingLoader(Set.of(10L));
+
+        cache.get(1, loader);
+
+        assertEquals(1, loader.calls.get());
+        assertEquals(List.of(), cache.usersToPrecompute());
+    }
+
+    // Считает расчёты; действие во время первого расчёта имитирует сброс, пришедший параллельно
+    private static class CountingLoader implements LongFunction<RecommendationCache.Recommendations> {
+        private final AtomicInteger calls = new AtomicInteger();
+        private final Set<Long> sourceEventIds;
+        private final Runnable duringFirstLoad;
+
+        private CountingLoader(Set<Long> sourceEventIds) {
+            this(sourceEventIds, () -> {
+            });
+        }
+
+        private CountingLoader(Set<Long> sourceEventIds, Runnable duringFirstLoad) {
+            this.sourceEventIds = sourceEventIds;
+            this.duringFirstLoad = duringFirstLoad;
+        }
+
+        @Override
+        public RecommendationCache.Recommendations apply(long userId) {
+            if (calls.incrementAndGet() == 1) {
+                duringFirstLoad.run();
+            }
+            RecommendedEventProto event = RecommendedEventProto.newBuilder()
+                    .setEventId(100 + userId)
+                    .setScore(1.0)
+                    .build();
+            return new RecommendationCache.Recommendations(List.of(event), sourceEventIds);
+        }
+    }
+}
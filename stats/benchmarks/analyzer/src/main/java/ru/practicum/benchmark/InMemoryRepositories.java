@@ -0,0 +1,107 @@
+package ru.practicum.benchmark;
+
+import ru.practicum.entity.EventSimilarity;
+import ru.practicum.entity.UserAction;
+import ru.practicum.repository.EventSimilarityRepository;
+import ru.practicum.repository.UserInteractionRepository;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+// Репозитории анализатора в памяти: бенчмарк измеряет логику расчёта рекомендаций без базы данных.
+// Реализованы только методы, которые вызывает RecommendationService; выборки возвращают новые списки, как JPA.
+// Каждый вызов метода репозитория считается одним обращением к базе
+final class InMemoryRepositories {
+    private final Map<Long, List<EventSimilarity>> similaritiesByEvent = new HashMap<>();
+    private final Map<Long, List<UserAction>> actionsByUser = new HashMap<>();
+    private final Map<Long, List<UserAction>> actionsByEvent = new HashMap<>();
+    private long queries;
+
+    void addSimilarity(EventSimilarity similarity) {
+        similaritiesByEvent.computeIfAbsent(similarity.getId().getEventA(), id -> new ArrayList<>()).add(similarity);
+        similaritiesByEvent.computeIfAbsent(similarity.getId().getEventB(), id -> new ArrayList<>()).add(similarity);
+    }
+
+    void addAction(UserAction action) {
+        actionsByUser.computeIfAbsent(action.getId().getUserId(), id -> new ArrayList<>()).add(action);
+        actionsByEvent.computeIfAbsent(action.getId().getEventId(), id -> new ArrayList<>()).add(action);
+    }
+
+    // Упорядочивает действия пользователей от последнего к первому, как findByIdUserIdOrderByTimestampDesc
+    void sortActions() {
+        actionsByUser.values().forEach(actions -> actions.sort(Comparator.comparing(UserAction::getTimestamp).reversed()));
+    }
+
+    long queries() {
+        return queries;
+    }
+
+    @SuppressWarnings("unchecked")
+    EventSimilarityRepository similarityRepository() {
+        return proxy(EventSimilarityRepository.class, (method, args) -> switch (method) {
+            case "findByIdEventAOrIdEventB" -> findSimilarities(List.of((Long) args[0], (Long) args[1]));
+            case "findByIdEventAInOrIdEventBIn" -> findSimilarities(union((Collection<Long>) args[0], (Collection<Long>) args[1]));
+            default -> throw new UnsupportedOperationException(method);
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    UserInteractionRepository interactionRepository() {
+        return proxy(UserInteractionRepository.class, (method, args) -> switch (method) {
+            case "findByIdUserIdOrderByTimestampDesc" -> new ArrayList<>(actionsByUser.getOrDefault((Long) args[0], List.of()));
+            case "findTop10ByIdUserIdOrderByTimestampDesc" -> {
+                List<UserAction> actions = actionsByUser.getOrDefault((Long) args[0], List.of());
+                yield new ArrayList<>(actions.subList(0, Math.min(10, actions.size())));
+            }
+            case "sumMaxWeightsByEventIds" -> sumWeights((List<Long>) args[0]);
+            default -> throw new UnsupportedOperationException(method);
+        });
+    }
+
+    private List<EventSimilarity> findSimilarities(Collection<Long> eventIds) {
+        Set<EventSimilarity> similarities = new LinkedHashSet<>();
+        for (Long eventId : eventIds) {
+            similarities.addAll(similaritiesByEvent.getOrDefault(eventId, List.of()));
+        }
+        return new ArrayList<>(similarities);
+    }
+
+    private static Set<Long> union(Collection<Long> eventsA, Collection<Long> eventsB) {
+        Set<Long> eventIds = new LinkedHashSet<>(eventsA);
+        eventIds.addAll(eventsB);
+        return eventIds;
+    }
+
+    private List<Object[]> sumWeights(List<Long> eventIds) {
+        List<Object[]> rows = new ArrayList<>();
+        for (Long eventId : new LinkedHashSet<>(eventIds)) {
+            List<UserAction> actions = actionsByEvent.get(eventId);
+            if (actions != null) {
+                rows.add(new Object[]{eventId, actions.stream().mapToDouble(UserAction::getWeight).sum()});
+            }
+        }
+        return rows;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T proxy(Class<T> type, BiFunction<String, Object[], Object> handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) ->
+                switch (method.getName()) {
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "InMemory" + type.getSimpleName();
+                    default -> {
+                        queries++;
+                        yield handler.apply(method.getName(), args);
+                    }
+                });
+    }
+}
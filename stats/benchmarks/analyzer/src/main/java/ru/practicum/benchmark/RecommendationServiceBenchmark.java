@@ -0,0 +1,181 @@
+package ru.practicum.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.practicum.config.AnalyzerProperties;
+import ru.practicum.entity.EventSimilarity;
+import ru.practicum.entity.UserAction;
+import ru.practicum.ewm.stats.proto.RecommendedEventProto;
+import ru.practicum.repository.EventNeighborRepository;
+import ru.practicum.service.RecommendationCache;
+import ru.practicum.service.RecommendationService;
+import ru.practicum.service.SimilarityGraphIndex;
+import ru.practicum.service.WeightDecay;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Расчёт рекомендаций анализатором над репозиториями в памяти: измеряется обработка выборок,
+// но не запросы к базе данных. После каждой итерации печатается число обращений к репозиториям на запрос:
+// оно не должно зависеть от размера каталога и истории пользователя
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class RecommendationServiceBenchmark {
+    private static final int USERS = 10_000;
+    private static final int MAX_RESULTS = 10;
+    private static final int REQUESTS = 1 << 10;
+
+    @Param({"1000", "10000"})
+    public int events;
+
+    // Число сохранённых соседей мероприятия (top-K агрегатора)
+    @Param({"20"})
+    public int neighbors;
+
+    @Param({"UNIFORM", "ZIPF"})
+    public Popularity popularity;
+
+    @Param({"20", "100"})
+    public int actionsPerUser;
+
+    // Чтение сходств из графа в памяти или из репозитория
+    @Param({"true", "false"})
+    public boolean similarityIndex;
+
+    private InMemoryRepositories repositories;
+    private RecommendationService recommendationService;
+    private long[] userIds;
+    private long[] eventIds;
+    private List<List<Long>> eventIdBatches;
+    private int next;
+    private long requests;
+
+    @Setup
+    public void setUp() {
+        repositories = new InMemoryRepositories();
+        AnalyzerProperties analyzerProperties = new AnalyzerProperties();
+        analyzerProperties.getSimilarityIndex().setEnabled(similarityIndex);
+        // Измеряется расчёт рекомендаций, а не чтение из кеша
+        analyzerProperties.getRecommendationCache().setEnabled(false);
+        SimilarityGraphIndex graphIndex = new SimilarityGraphIndex(repositories.similarityRepository(), analyzerProperties);
+        SplittableRandom random = new SplittableRandom(42);
+        Sampler sampler = new Sampler(popularity, events);
+        Instant updatedAt = Instant.ofEpochMilli(InteractionGenerator.START_MILLIS);
+        // Соседи выбираются по популярности: популярные мероприятия похожи на многие другие
+        Set<Long> pairs = new HashSet<>();
+        for (long eventA = 0; eventA < events; eventA++) {
+            for (int i = 0; i < neighbors; i++) {
+                long eventB = sampler.next(random);
+                if (eventB != eventA && pairs.add(Math.min(eventA, eventB) * events + Math.max(eventA, eventB))) {
+                    EventSimilarity similarity = similarity(eventA, eventB, random.nextDouble(), updatedAt);
+                    repositories.addSimilarity(similarity);
+                    graphIndex.put(similarity.getId().getEventA(), similarity.getId().getEventB(), similarity.getScore());
+                }
+            }
+        }
+
+        // В базе хранится одно действие на пару (пользователь, мероприятие) с максимальным весом
+        Map<Long, Map<Long, UserAction>> actions = new HashMap<>();
+        new InteractionGenerator(USERS, Popularity.UNIFORM, events, popularity, 7)
+                .generate(USERS * actionsPerUser)
+                .forEach(interaction -> actions.computeIfAbsent(interaction.userId(), id -> new HashMap<>())
+                        .merge(interaction.eventId(), action(interaction), (current, updated) ->
+                                updated.getWeight() > current.getWeight() ? updated : current));
+        actions.values().forEach(userActions -> userActions.values().forEach(repositories::addAction));
+        repositories.sortActions();
+
+        recommendationService = new RecommendationService(repositories.similarityRepository(),
+                repositories.interactionRepository(), new WeightDecay(analyzerProperties), graphIndex,
+                new RecommendationCache(analyzerProperties, new SimpleMeterRegistry()),
+                // Симметричная таблица соседей выключена, и репозиторий не вызывается
+                new EventNeighborRepository(null), analyzerProperties);
+
+        userIds = new long[REQUESTS];
+        eventIds = new long[REQUESTS];
+        eventIdBatches = new ArrayList<>(REQUESTS);
+        for (int i = 0; i < REQUESTS; i++) {
+            userIds[i] = random.nextInt(USERS);
+            eventIds[i] = sampler.next(random);
+            List<Long> batch = new ArrayList<>(MAX_RESULTS);
+            for (int j = 0; j < MAX_RESULTS; j++) {
+                batch.add(sampler.next(random));
+            }
+            eventIdBatches.add(batch);
+        }
+    }
+
+    @Benchmark
+    public List<RecommendedEventProto> getRecommendationsForUser() {
+        int request = nextRequest();
+        return recommendationService.getRecommendationsForUser(userIds[request], MAX_RESULTS).toList();
+    }
+
+    @Benchmark
+    public List<RecommendedEventProto> getSimilarEvents() {
+        int request = nextRequest();
+        return recommendationService.getSimilarEvents(eventIds[request], userIds[request], MAX_RESULTS).toList();
+    }
+
+    @Benchmark
+    public List<RecommendedEventProto> getInteractionsCount() {
+        return recommendationService.getInteractionsCount(eventIdBatches.get(nextRequest())).toList();
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportRoundTrips() {
+        System.out.printf("%n%.2f repository round trips per request%n", (double) repositories.queries() / requests);
+    }
+
+    private int nextRequest() {
+        requests++;
+        int request = next;
+        next = (next + 1) & (REQUESTS - 1);
+        return request;
+    }
+
+    private static EventSimilarity similarity(long eventA, long eventB, double score, Instant updatedAt) {
+        EventSimilarity.EventSimilarityId id = new EventSimilarity.EventSimilarityId();
+        id.setEventA(Math.min(eventA, eventB));
+        id.setEventB(Math.max(eventA, eventB));
+        EventSimilarity similarity = new EventSimilarity();
+        similarity.setId(id);
+        similarity.setScore(score);
+        similarity.setUpdatedAt(updatedAt);
+        return similarity;
+    }
+
+    private static UserAction action(Interaction interaction) {
+        UserAction.UserInteractionId id = new UserAction.UserInteractionId();
+        id.setUserId(interaction.userId());
+        id.setEventId(interaction.eventId());
+        UserAction action = new UserAction();
+        action.setId(id);
+        action.setActionType(interaction.kind().name());
+        action.setWeight(interaction.kind().getWeight());
+        action.setTimestamp(Instant.ofEpochMilli(interaction.timestampMillis()));
+        return action;
+    }
+}
@@ -0,0 +1,109 @@
+package ru.practicum.benchmark;
+
+import kafka.deserialization.EventSimilarityDeserializer;
+import kafka.deserialization.UserActionDeserializer;
+import kafka.serialization.AvroSerializer;
+import kafka.serialization.SchemaFingerprint;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.practicum.ewm.stats.avro.ActionTypeAvro;
+import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+// Сериализация и десериализация сообщений топиков действий и сходства
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class AvroSerdeBenchmark {
+    private static final String ACTIONS_TOPIC = "stats.user-actions.v1";
+    private static final String SIMILARITY_TOPIC = "stats.events-similarity.v1";
+
+    private AvroSerializer serializer;
+    private UserActionDeserializer userActionDeserializer;
+    private EventSimilarityDeserializer similarityDeserializer;
+    private UserActionAvro action;
+    private EventSimilarityAvro similarity;
+    private byte[] actionBytes;
+    private byte[] similarityBytes;
+    private Headers fingerprintHeaders;
+    private UserActionAvro reuse;
+
+    @Setup
+    public void setUp() {
+        serializer = new AvroSerializer();
+        userActionDeserializer = new UserActionDeserializer();
+        similarityDeserializer = new EventSimilarityDeserializer();
+        Instant timestamp = Instant.ofEpochMilli(InteractionGenerator.START_MILLIS);
+        action = UserActionAvro.newBuilder()
+                .setUserId(123_456L)
+                .setEventId(7_890L)
+                .setActionType(ActionTypeAvro.REGISTER)
+                .setTimestamp(timestamp)
+                .build();
+        similarity = EventSimilarityAvro.newBuilder()
+                .setEventA(7_890L)
+                .setEventB(12_345L)
+                .setScore(0.42)
+                .setTimestamp(timestamp)
+                .build();
+        actionBytes = serializer.serialize(ACTIONS_TOPIC, action);
+        similarityBytes = serializer.serialize(SIMILARITY_TOPIC, similarity);
+        fingerprintHeaders = new RecordHeaders();
+        fingerprintHeaders.add(SchemaFingerprint.HEADER,
+                SchemaFingerprint.toBytes(SchemaFingerprint.of(UserActionAvro.getClassSchema())));
+        reuse = new UserActionAvro();
+    }
+
+    @Benchmark
+    public byte[] serializeUserAction() {
+        return serializer.serialize(ACTIONS_TOPIC, action);
+    }
+
+    @Benchmark
+    public UserActionAvro deserializeUserAction() {
+        return userActionDeserializer.deserialize(ACTIONS_TOPIC, actionBytes);
+    }
+
+    // Чтение с выбором читателя по отпечатку схемы из заголовка
+    @Benchmark
+    public UserActionAvro deserializeUserActionWithFingerprint() {
+        return userActionDeserializer.deserialize(ACTIONS_TOPIC, fingerprintHeaders, actionBytes);
+    }
+
+    // Чтение в переиспользуемую запись, как при восстановлении состояния из changelog
+    @Benchmark
+    public UserActionAvro deserializeUserActionReusingRecord() {
+        return userActionDeserializer.deserialize(ACTIONS_TOPIC, null, actionBytes, reuse);
+    }
+
+    @Benchmark
+    public UserActionAvro roundTripUserAction() {
+        return userActionDeserializer.deserialize(ACTIONS_TOPIC, serializer.serialize(ACTIONS_TOPIC, action));
+    }
+
+    @Benchmark
+    public byte[] serializeEventSimilarity() {
+        return serializer.serialize(SIMILARITY_TOPIC, similarity);
+    }
+
+    @Benchmark
+    public EventSimilarityAvro deserializeEventSimilarity() {
+        return similarityDeserializer.deserialize(SIMILARITY_TOPIC, similarityBytes);
+    }
+}
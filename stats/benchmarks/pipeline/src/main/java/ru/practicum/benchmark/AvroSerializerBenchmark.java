@@ -0,0 +1,97 @@
+package ru.practicum.benchmark;
+
+import kafka.serialization.AvroSerializer;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.common.serialization.Serializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.practicum.ewm.stats.avro.ActionTypeAvro;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Пропускная способность сериализации действий в коллекторе до и после кеширования писателей
+// и буферов потоков: java -jar target/benchmarks.jar AvroSerializerBenchmark -prof gc
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AvroSerializerBenchmark {
+    private static final String TOPIC = "stats.user-actions.v1";
+    private static final int ACTIONS = 1 << 12;
+
+    @State(Scope.Benchmark)
+    public static class Actions {
+        private UserActionAvro[] actions;
+
+        @Setup
+        public void generate() {
+            List<Interaction> interactions = new InteractionGenerator(10_000, Popularity.UNIFORM, 1_000, Popularity.ZIPF, 42)
+                    .generate(ACTIONS);
+            actions = new UserActionAvro[ACTIONS];
+            for (int i = 0; i < ACTIONS; i++) {
+                Interaction interaction = interactions.get(i);
+                actions[i] = UserActionAvro.newBuilder()
+                        .setUserId(interaction.userId())
+                        .setEventId(interaction.eventId())
+                        .setActionType(ActionTypeAvro.values()[interaction.kind().ordinal()])
+                        .setTimestamp(Instant.ofEpochMilli(interaction.timestampMillis()))
+                        .build();
+            }
+        }
+    }
+
+    // Сериализатор одного потока: прежняя реализация не потокобезопасна
+    @State(Scope.Thread)
+    public static class ThreadSerializer {
+        @Param({"legacy", "cached"})
+        public String implementation;
+
+        private Serializer<SpecificRecordBase> serializer;
+        private int next;
+
+        @Setup
+        public void setUp() {
+            serializer = "legacy".equals(implementation) ? new LegacyAvroSerializer() : new AvroSerializer();
+        }
+    }
+
+    // Один сериализатор на все потоки, как у продюсера коллектора, который вызывают потоки gRPC
+    @State(Scope.Benchmark)
+    public static class SharedSerializer {
+        private final AvroSerializer serializer = new AvroSerializer();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+    }
+
+    @Benchmark
+    public byte[] serialize(Actions actions, ThreadSerializer state) {
+        byte[] bytes = state.serializer.serialize(TOPIC, actions.actions[state.next]);
+        state.next = (state.next + 1) & (ACTIONS - 1);
+        return bytes;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public byte[] serializeShared(Actions actions, SharedSerializer shared, Cursor cursor) {
+        byte[] bytes = shared.serializer.serialize(TOPIC, actions.actions[cursor.next]);
+        cursor.next = (cursor.next + 1) & (ACTIONS - 1);
+        return bytes;
+    }
+}
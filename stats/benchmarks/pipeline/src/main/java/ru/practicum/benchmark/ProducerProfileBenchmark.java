@@ -0,0 +1,142 @@
+package ru.practicum.benchmark;
+
+import kafka.serialization.AvroSerializer;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+import ru.practicum.ewm.stats.avro.ActionTypeAvro;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.kafka.KafkaProducerProperties;
+import ru.practicum.kafka.ProducerProfile;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Профили продюсера коллектора на встроенном брокере (или на внешнем, если задан -p bootstrapServers=host:port):
+// пропускная способность пачками с подтверждением всех записей и задержка подтверждения одиночной записи.
+// java -jar target/benchmarks.jar ProducerProfileBenchmark
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ProducerProfileBenchmark {
+    private static final String TOPIC = "stats.user-actions.producer-profile-benchmark";
+    private static final int BATCH = 10_000;
+    private static final int ACTIONS = 1 << 14;
+
+    @State(Scope.Benchmark)
+    public static class Broker {
+        @Param("")
+        public String bootstrapServers;
+
+        private EmbeddedKafkaBroker embedded;
+
+        @Setup(Level.Trial)
+        public void start() {
+            if (bootstrapServers.isEmpty()) {
+                embedded = new EmbeddedKafkaKraftBroker(1, 3, TOPIC);
+                embedded.afterPropertiesSet();
+                bootstrapServers = embedded.getBrokersAsString();
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() {
+            if (embedded != null) {
+                embedded.destroy();
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Producer {
+        @Param({"DEFAULT", "LOW_LATENCY", "THROUGHPUT", "DURABLE"})
+        public ProducerProfile profile;
+
+        private KafkaProducer<String, SpecificRecordBase> producer;
+        private UserActionAvro[] actions;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void create(Broker broker) {
+            KafkaProducerProperties properties = new KafkaProducerProperties();
+            properties.setBootstrapServer(broker.bootstrapServers);
+            properties.setKeySerializeClass(StringSerializer.class.getName());
+            properties.setValueSerializeClass(AvroSerializer.class.getName());
+            properties.setProfile(profile);
+            producer = new KafkaProducer<>(properties.setProperties());
+
+            List<Interaction> interactions = new InteractionGenerator(100_000, Popularity.UNIFORM, 10_000, Popularity.ZIPF, 42)
+                    .generate(ACTIONS);
+            actions = new UserActionAvro[ACTIONS];
+            for (int i = 0; i < ACTIONS; i++) {
+                Interaction interaction = interactions.get(i);
+                actions[i] = UserActionAvro.newBuilder()
+                        .setUserId(interaction.userId())
+                        .setEventId(interaction.eventId())
+                        .setActionType(ActionTypeAvro.values()[interaction.kind().ordinal()])
+                        .setTimestamp(Instant.ofEpochMilli(interaction.timestampMillis()))
+                        .build();
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void close() {
+            producer.close();
+        }
+
+        private ProducerRecord<String, SpecificRecordBase> nextRecord() {
+            UserActionAvro action = actions[next++ & (ACTIONS - 1)];
+            return new ProducerRecord<>(TOPIC, String.valueOf(action.getUserId()), action);
+        }
+    }
+
+    // Записей в секунду: пачка считается отправленной, когда брокер подтвердил каждую запись
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(BATCH)
+    public int sendBatch(Producer producer) {
+        AtomicInteger acknowledged = new AtomicInteger();
+        for (int i = 0; i < BATCH; i++) {
+            producer.producer.send(producer.nextRecord(), (metadata, e) -> {
+                if (e == null) {
+                    acknowledged.incrementAndGet();
+                }
+            });
+        }
+        producer.producer.flush();
+        if (acknowledged.get() != BATCH) {
+            throw new IllegalStateException("Acknowledged " + acknowledged.get() + " of " + BATCH + " records");
+        }
+        return acknowledged.get();
+    }
+
+    // Распределение задержки от send() до подтверждения одиночной записи без фоновой нагрузки (p50, p99 в отчёте JMH)
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public RecordMetadata sendAndAwait(Producer producer) throws ExecutionException, InterruptedException {
+        return producer.producer.send(producer.nextRecord()).get();
+    }
+}
@@ -0,0 +1,110 @@
+package ru.practicum.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.practicum.ewm.stats.avro.ActionTypeAvro;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.service.SimilarityMerger;
+import ru.practicum.service.SimilaritySink;
+import ru.practicum.service.UserActionAggregator;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Пропускная способность общего слияния при параллельной обработке партиций: каждый поток JMH — обработчик
+// своей партиции с отдельными пользователями, все партиции сливаются в один SimilarityMerger.
+// Рост суммарной пропускной способности с числом партиций показывает, что слияния не сериализуются:
+// java -jar target/benchmarks.jar SimilarityMergerScalingBenchmark -t 1
+// java -jar target/benchmarks.jar SimilarityMergerScalingBenchmark -t 4
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SimilarityMergerScalingBenchmark {
+    private static final int ACTIONS = 1 << 18;
+    // Действия каждой партиции, применяемые до замера
+    private static final int PREFILL = 1 << 16;
+
+    @State(Scope.Benchmark)
+    public static class Shared {
+        @Param({"1000", "10000"})
+        public int events;
+
+        @Param({"20000"})
+        public int users;
+
+        @Param({"UNIFORM", "ZIPF"})
+        public Popularity popularity;
+
+        private final AtomicInteger partitions = new AtomicInteger();
+        private UserActionAggregator aggregator;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            aggregator = new UserActionAggregator(new SimilarityMerger());
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Partition {
+        private int partition;
+        private UserActionAvro[] actions;
+        private SimilaritySink sink;
+        private double checksum;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void generate(Shared shared) {
+            partition = shared.partitions.getAndIncrement();
+            // Пользователи распределены по партициям по ключу, поэтому у каждой партиции свои пользователи
+            long userOffset = (long) partition * shared.users;
+            List<Interaction> interactions = new InteractionGenerator(shared.users, Popularity.UNIFORM,
+                    shared.events, shared.popularity, 42 + partition).generate(ACTIONS);
+            actions = new UserActionAvro[ACTIONS];
+            for (int i = 0; i < ACTIONS; i++) {
+                Interaction interaction = interactions.get(i);
+                actions[i] = UserActionAvro.newBuilder()
+                        .setUserId(userOffset + interaction.userId())
+                        .setEventId(interaction.eventId())
+                        .setActionType(ActionTypeAvro.values()[interaction.kind().ordinal()])
+                        .setTimestamp(Instant.ofEpochMilli(interaction.timestampMillis()))
+                        .build();
+            }
+            sink = (eventA, eventB, score, timestamp) -> checksum += score;
+        }
+
+        // JMH выполняет Setup состояния Shared раньше зависящих от него: партиция заполняет новый агрегатор
+        @Setup(Level.Iteration)
+        public void prefill(Shared shared) {
+            for (int i = 0; i < PREFILL; i++) {
+                shared.aggregator.updateState(actions[i], partition, sink);
+            }
+            next = PREFILL;
+        }
+
+        private UserActionAvro nextAction() {
+            UserActionAvro action = actions[next];
+            next = next + 1 < ACTIONS ? next + 1 : PREFILL;
+            return action;
+        }
+    }
+
+    @Benchmark
+    public double updateState(Shared shared, Partition partition) {
+        shared.aggregator.updateState(partition.nextAction(), partition.partition, partition.sink);
+        return partition.checksum;
+    }
+}
@@ -0,0 +1,99 @@
+package ru.practicum.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.practicum.ewm.stats.avro.ActionTypeAvro;
+import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.service.SimilarityMerger;
+import ru.practicum.service.SimilaritySink;
+import ru.practicum.service.UserActionAggregator;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Стоимость обработки одного действия агрегатором на прогретом состоянии.
+// Выделение памяти на действие: java -jar target/benchmarks.jar UserActionAggregatorBenchmark -prof gc
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class UserActionAggregatorBenchmark {
+    private static final int ACTIONS = 1 << 19;
+    // Действия, применяемые до замера: состояние заполнено, как у работающего агрегатора
+    private static final int PREFILL = 1 << 17;
+
+    @Param({"1000", "10000"})
+    public int events;
+
+    @Param({"20000", "100000"})
+    public int users;
+
+    @Param({"UNIFORM", "ZIPF"})
+    public Popularity popularity;
+
+    private UserActionAvro[] actions;
+    private UserActionAggregator aggregator;
+    private SimilaritySink sink;
+    private double checksum;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        List<Interaction> interactions = new InteractionGenerator(users, Popularity.UNIFORM, events, popularity, 42)
+                .generate(ACTIONS);
+        actions = new UserActionAvro[ACTIONS];
+        for (int i = 0; i < ACTIONS; i++) {
+            Interaction interaction = interactions.get(i);
+            actions[i] = UserActionAvro.newBuilder()
+                    .setUserId(interaction.userId())
+                    .setEventId(interaction.eventId())
+                    .setActionType(ActionTypeAvro.values()[interaction.kind().ordinal()])
+                    .setTimestamp(Instant.ofEpochMilli(interaction.timestampMillis()))
+                    .build();
+        }
+        // Сумма оценок возвращается из бенчмарка, чтобы расчёт не был устранён JIT-компилятором
+        sink = (eventA, eventB, score, timestamp) -> checksum += score;
+    }
+
+    @Setup(Level.Iteration)
+    public void prefill() {
+        aggregator = new UserActionAggregator(new SimilarityMerger());
+        for (int i = 0; i < PREFILL; i++) {
+            aggregator.updateState(actions[i], 0, sink);
+        }
+        next = PREFILL;
+    }
+
+    @Benchmark
+    public double updateState() {
+        aggregator.updateState(nextAction(), 0, sink);
+        return checksum;
+    }
+
+    // Прежний контракт со списком записей Avro: для сравнения выделения памяти с передачей в sink
+    @Benchmark
+    public List<EventSimilarityAvro> updateStateToList() {
+        return aggregator.updateState(nextAction(), 0);
+    }
+
+    // После конца потока действия повторяются: повторные действия не меняют веса и обрабатываются быстрее
+    private UserActionAvro nextAction() {
+        UserActionAvro action = actions[next];
+        next = next + 1 < ACTIONS ? next + 1 : PREFILL;
+        return action;
+    }
+}
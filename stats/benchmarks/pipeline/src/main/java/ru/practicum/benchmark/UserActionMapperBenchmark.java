@@ -0,0 +1,62 @@
+package ru.practicum.benchmark;
+
+import com.google.protobuf.Timestamp;
+import org.mapstruct.factory.Mappers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.ewm.stats.proto.ActionTypeProto;
+import ru.practicum.ewm.stats.proto.UserActionProto;
+import ru.practicum.mapper.UserActionMapper;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Преобразование действия из gRPC-сообщения коллектора в запись Avro
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class UserActionMapperBenchmark {
+    private static final int ACTIONS = 1 << 12;
+
+    private UserActionMapper mapper;
+    private UserActionProto[] actions;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        mapper = Mappers.getMapper(UserActionMapper.class);
+        List<Interaction> interactions = new InteractionGenerator(10_000, Popularity.UNIFORM, 1_000, Popularity.ZIPF, 42)
+                .generate(ACTIONS);
+        actions = new UserActionProto[ACTIONS];
+        for (int i = 0; i < ACTIONS; i++) {
+            Interaction interaction = interactions.get(i);
+            actions[i] = UserActionProto.newBuilder()
+                    .setUserId(interaction.userId())
+                    .setEventId(interaction.eventId())
+                    .setActionType(ActionTypeProto.forNumber(interaction.kind().ordinal()))
+                    .setTimestamp(Timestamp.newBuilder()
+                            .setSeconds(interaction.timestampMillis() / 1_000)
+                            .setNanos((int) (interaction.timestampMillis() % 1_000) * 1_000_000))
+                    .build();
+        }
+    }
+
+    @Benchmark
+    public UserActionAvro mapToAvro() {
+        UserActionAvro action = mapper.mapToAvro(actions[next]);
+        next = (next + 1) & (ACTIONS - 1);
+        return action;
+    }
+}
@@ -0,0 +1,18 @@
+package ru.practicum.benchmark;
+
+// Тип действия в синтетическом потоке; порядок совпадает с ActionTypeAvro и ActionTypeProto
+public enum ActionKind {
+    VIEW(0.4),
+    REGISTER(0.8),
+    LIKE(1.0);
+
+    private final double weight;
+
+    ActionKind(double weight) {
+        this.weight = weight;
+    }
+
+    public double getWeight() {
+        return weight;
+    }
+}
@@ -0,0 +1,4 @@
+package ru.practicum.benchmark;
+
+public record Interaction(long userId, long eventId, ActionKind kind, long timestampMillis) {
+}
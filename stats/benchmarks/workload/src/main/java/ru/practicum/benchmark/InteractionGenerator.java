@@ -0,0 +1,39 @@
+package ru.practicum.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+// Детерминированный поток действий пользователей для бенчмарков: мероприятия выбираются
+// по распределению популярности, пользователи — по распределению активности.
+// Просмотры преобладают, как в реальном потоке: 70% просмотров, 20% регистраций, 10% лайков
+public final class InteractionGenerator {
+    public static final long START_MILLIS = 1_767_225_600_000L;
+
+    private final Sampler users;
+    private final Sampler events;
+    private final SplittableRandom random;
+    private long timestampMillis = START_MILLIS;
+
+    public InteractionGenerator(int users, Popularity userActivity, int events, Popularity eventPopularity, long seed) {
+        this.users = new Sampler(userActivity, users);
+        this.events = new Sampler(eventPopularity, events);
+        this.random = new SplittableRandom(seed);
+    }
+
+    public Interaction next() {
+        int roll = random.nextInt(10);
+        ActionKind kind = roll < 7 ? ActionKind.VIEW : roll < 9 ? ActionKind.REGISTER : ActionKind.LIKE;
+        // Действия следуют с интервалом в секунду
+        timestampMillis += 1_000;
+        return new Interaction(users.next(random), events.next(random), kind, timestampMillis);
+    }
+
+    public List<Interaction> generate(int count) {
+        List<Interaction> interactions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            interactions.add(next());
+        }
+        return interactions;
+    }
+}
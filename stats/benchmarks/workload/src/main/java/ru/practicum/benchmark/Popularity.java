@@ -0,0 +1,8 @@
+package ru.practicum.benchmark;
+
+// Распределение популярности мероприятий (или активности пользователей) в синтетическом потоке
+public enum Popularity {
+    UNIFORM,
+    // Закон Ципфа с показателем 1: частота элемента ранга r пропорциональна 1 / r
+    ZIPF
+}
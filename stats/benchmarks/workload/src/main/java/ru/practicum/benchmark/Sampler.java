@@ -0,0 +1,48 @@
+package ru.practicum.benchmark;
+
+import java.util.SplittableRandom;
+
+// Выбор идентификатора из [0, size) по заданному распределению
+public final class Sampler {
+    private static final double ZIPF_EXPONENT = 1.0;
+
+    private final int size;
+    // Накопленные вероятности рангов; null для равномерного распределения
+    private final double[] cumulative;
+
+    public Sampler(Popularity popularity, int size) {
+        this.size = size;
+        this.cumulative = popularity == Popularity.ZIPF ? zipfCumulative(size) : null;
+    }
+
+    public long next(SplittableRandom random) {
+        if (cumulative == null) {
+            return random.nextInt(size);
+        }
+        double point = random.nextDouble();
+        int low = 0;
+        int high = size - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (cumulative[middle] < point) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static double[] zipfCumulative(int size) {
+        double[] cumulative = new double[size];
+        double total = 0.0;
+        for (int rank = 0; rank < size; rank++) {
+            total += 1.0 / Math.pow(rank + 1, ZIPF_EXPONENT);
+            cumulative[rank] = total;
+        }
+        for (int rank = 0; rank < size; rank++) {
+            cumulative[rank] /= total;
+        }
+        return cumulative;
+    }
+}
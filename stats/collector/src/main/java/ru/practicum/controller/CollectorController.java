@@ -8,10 +8,12 @@ import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.server.service.GrpcService;
 import org.springframework.beans.factory.annotation.Value;
 import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.ewm.stats.proto.UserActionBatchProto;
 import ru.practicum.ewm.stats.proto.UserActionControllerGrpc;
 import ru.practicum.ewm.stats.proto.UserActionProto;
-import ru.practicum.kafka.KafkaCollectorProducer;
+import ru.practicum.ingestion.CollectorIngestion;
 import ru.practicum.mapper.UserActionMapper;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 
 @GrpcService
@@ -20,25 +22,99 @@ import io.grpc.stub.StreamObserver;
 public class CollectorController extends UserActionControllerGrpc.UserActionControllerImplBase {
     @Value("${kafka.producer.topics.user-actions}")
     private String topic;
-    private final KafkaCollectorProducer kafkaCollectorProducer;
+    private final CollectorIngestion collectorIngestion;
     private final UserActionMapper userActionMapper;
 
     @Override
     public void collectUserAction(UserActionProto request, StreamObserver<Empty> responseObserver) {
         try {
             log.info("Обработка контроллером collectUserAction сообщения UserActionProto {}", request);
-            UserActionAvro avro = userActionMapper.mapToAvro(request);
-            kafkaCollectorProducer.send(topic, avro);
+            send(request);
             responseObserver.onNext(Empty.getDefaultInstance());
             responseObserver.onCompleted();
             log.debug("Успешная обработка события {}", request);
         } catch (Exception e) {
             log.error("Error processing request: request={}, type={}, error={}", request, e.getMessage(), e);
-            responseObserver.onError(new StatusRuntimeException(
-                    Status.INTERNAL
-                            .withDescription(e.getLocalizedMessage())
-                            .withCause(e)
-            ));
+            responseObserver.onError(toStatusException(e));
         }
     }
+
+    // Клиентский поток действий: ответ отправляется один раз после завершения потока клиентом.
+    // Следующее сообщение запрашивается только после того, как предыдущее принято в буфер, поэтому при заполненном
+    // буфере управление потоком gRPC притормаживает клиента
+    @Override
+    public StreamObserver<UserActionProto> collectUserActions(StreamObserver<Empty> responseObserver) {
+        ServerCallStreamObserver<Empty> serverObserver = (ServerCallStreamObserver<Empty>) responseObserver;
+        serverObserver.disableAutoRequest();
+        serverObserver.request(1);
+        return new StreamObserver<>() {
+            private long received;
+            private boolean failed;
+
+            @Override
+            public void onNext(UserActionProto request) {
+                if (failed) {
+                    return;
+                }
+                try {
+                    send(request);
+                    received++;
+                    serverObserver.request(1);
+                } catch (Exception e) {
+                    failed = true;
+                    log.error("Error processing streamed action: request={}, error={}", request, e.getMessage(), e);
+                    responseObserver.onError(toStatusException(e));
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                log.warn("Поток действий прерван клиентом после {} действий: {}", received, t.getMessage());
+            }
+
+            @Override
+            public void onCompleted() {
+                if (failed) {
+                    return;
+                }
+                log.info("Обработан поток из {} действий", received);
+                responseObserver.onNext(Empty.getDefaultInstance());
+                responseObserver.onCompleted();
+            }
+        };
+    }
+
+    @Override
+    public void collectUserActionBatch(UserActionBatchProto request, StreamObserver<Empty> responseObserver) {
+        try {
+            log.info("Обработка контроллером collectUserActionBatch пакета из {} действий", request.getActionsCount());
+            for (UserActionProto action : request.getActionsList()) {
+                send(action);
+            }
+            responseObserver.onNext(Empty.getDefaultInstance());
+            responseObserver.onCompleted();
+        } catch (Exception e) {
+            log.error("Error processing batch: size={}, error={}", request.getActionsCount(), e.getMessage(), e);
+            responseObserver.onError(toStatusException(e));
+        }
+    }
+
+    private void send(UserActionProto request) throws InterruptedException {
+        UserActionAvro avro = userActionMapper.mapToAvro(request);
+        // Ключ по userId: все действия пользователя попадают в одну партицию агрегатора
+        if (!collectorIngestion.offer(topic, String.valueOf(avro.getUserId()), avro)) {
+            throw new StatusRuntimeException(Status.RESOURCE_EXHAUSTED.withDescription("Буфер приёма действий заполнен"));
+        }
+    }
+
+    private StatusRuntimeException toStatusException(Exception e) {
+        if (e instanceof StatusRuntimeException statusException) {
+            return statusException;
+        }
+        return new StatusRuntimeException(
+                Status.INTERNAL
+                        .withDescription(e.getLocalizedMessage())
+                        .withCause(e)
+        );
+    }
 }
@@ -0,0 +1,227 @@
+package ru.practicum.ingestion;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.KafkaException;
+import org.springframework.stereotype.Service;
+import ru.practicum.kafka.KafkaCollectorProducer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Приём действий перед продюсером. gRPC-потоки кладут записи в ограниченный кольцевой буфер и получают отказ,
+// если места нет дольше offerTimeout. Один поток разбирает буфер: пока брокер принимает записи, они уходят
+// в продюсер; когда продюсер отказывает (буфер продюсера полон дольше max.block.ms или истёк delivery.timeout.ms),
+// записи сбрасываются в журнал на диске, и все следующие записи идут туда же. Журнал отправляется повторно
+// пакетами в порядке записи; после его опустошения приём снова идёт напрямую в продюсер.
+// После первого отказа остаток пакета не отправляется: дождавшись обратных вызовов уже отправленных записей,
+// поток сбрасывает отвергнутые и оставшиеся записи в порядке приёма.
+// Доставка — не менее одного раза: пакет, отправленный частично, повторяется целиком.
+// Ошибка итерации не останавливает поток: при ошибке журнала пакет сохраняется и повторяется после паузы,
+// при прочих ошибках пакет отбрасывается с записью в лог
+@Slf4j
+@Service
+public class CollectorIngestion {
+    private static final long POLL_TIMEOUT_MILLIS = 50;
+
+    private final KafkaCollectorProducer producer;
+    private final IngestionProperties properties;
+    private final BlockingQueue<PendingRecord> buffer;
+    // Записи, отвергнутые продюсером в обратном вызове: переносятся в журнал потоком приёма
+    private final ConcurrentLinkedQueue<PendingRecord> rejected = new ConcurrentLinkedQueue<>();
+    private final List<PendingRecord> drained = new ArrayList<>();
+    private SpillLog spillLog;
+    private List<PendingRecord> replayBatch = List.of();
+    private long nextReplayNanos;
+    // Записи отправлены напрямую, и их обратные вызовы могли ещё не выполниться
+    private boolean inFlight;
+    private volatile boolean spilling;
+    private volatile boolean running;
+    private Thread worker;
+
+    public CollectorIngestion(KafkaCollectorProducer producer, IngestionProperties properties) {
+        this.producer = producer;
+        this.properties = properties;
+        this.buffer = new ArrayBlockingQueue<>(properties.getCapacity());
+    }
+
+    @PostConstruct
+    public void start() {
+        spillLog = new SpillLog(Path.of(properties.getSpillDirectory()), properties.getSegmentBytes());
+        spilling = !spillLog.isEmpty();
+        running = true;
+        worker = new Thread(this::run, "collector-ingestion");
+        worker.start();
+        log.info("Приём действий запущен: {}", properties);
+    }
+
+    // false — буфер заполнен, запись не принята
+    public boolean offer(String topic, String key, SpecificRecordBase value) throws InterruptedException {
+        return buffer.offer(new PendingRecord(topic, key, value),
+                properties.getOfferTimeout().toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public int remainingCapacity() {
+        return buffer.remainingCapacity();
+    }
+
+    public boolean isSpilling() {
+        return spilling;
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        running = false;
+        worker.join();
+        // Принятое, но не отправленное сохраняется в журнал и отправится после перезапуска
+        buffer.drainTo(drained);
+        if (!drained.isEmpty() || !rejected.isEmpty()) {
+            spilling = true;
+            spillDrained(0);
+        }
+        spillLog.close();
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                // Пакет, не обработанный из-за ошибки, повторяется до приёма новых записей
+                if (drained.isEmpty()) {
+                    PendingRecord record = buffer.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                    if (record != null) {
+                        drained.add(record);
+                        buffer.drainTo(drained, properties.getReplayBatchSize() - 1);
+                    }
+                }
+                if (spilling) {
+                    spillDrained(0);
+                } else if (!drained.isEmpty()) {
+                    sendDrained();
+                }
+                if (spilling && System.nanoTime() - nextReplayNanos >= 0) {
+                    replay();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                log.error("Ошибка журнала сброса, {} записей будут сброшены повторно через {}", drained.size(),
+                        properties.getRetryInterval(), e);
+                if (!backOff()) {
+                    return;
+                }
+            } catch (RuntimeException e) {
+                log.error("Ошибка приёма действий, {} записей отброшено", drained.size(), e);
+                drained.clear();
+                if (!backOff()) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // false — поток прерван во время паузы
+    private boolean backOff() {
+        try {
+            Thread.sleep(properties.getRetryInterval().toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void sendDrained() throws IOException {
+        for (int i = 0; i < drained.size(); i++) {
+            // Продюсер отверг запись в обратном вызове: остаток пакета сбрасывается после неё
+            if (spilling) {
+                spillDrained(i);
+                return;
+            }
+            PendingRecord record = drained.get(i);
+            try {
+                producer.send(record.topic(), record.key(), record.value(), (metadata, e) -> {
+                    if (e != null) {
+                        spilling = true;
+                        rejected.add(record);
+                    }
+                });
+                inFlight = true;
+            } catch (KafkaException e) {
+                log.warn("Продюсер не принял запись, приём переключается на журнал сброса: {}", e.getMessage());
+                spilling = true;
+                spillDrained(i);
+                return;
+            }
+        }
+        drained.clear();
+    }
+
+    // Сбрасывает записи пакета, начиная с from. Сначала дожидается обратных вызовов отправленных записей,
+    // чтобы отвергнутые продюсером попали в журнал раньше принятых после них
+    private void spillDrained(int from) throws IOException {
+        if (inFlight) {
+            producer.flush();
+            inFlight = false;
+        }
+        PendingRecord record;
+        // Запись удаляется из очереди только после записи в журнал: при ошибке журнала она сбросится повторно
+        while ((record = rejected.peek()) != null) {
+            spillLog.append(record);
+            rejected.poll();
+        }
+        for (int i = from; i < drained.size(); i++) {
+            spillLog.append(drained.get(i));
+        }
+        spillLog.sync();
+        drained.clear();
+    }
+
+    private void replay() throws IOException, InterruptedException {
+        if (replayBatch.isEmpty()) {
+            replayBatch = spillLog.read(properties.getReplayBatchSize());
+            if (replayBatch.isEmpty() && rejected.isEmpty()) {
+                spilling = false;
+                log.info("Журнал сброса отправлен, приём идёт напрямую в продюсер");
+                return;
+            }
+        }
+        if (send(replayBatch)) {
+            spillLog.commit(replayBatch.size());
+            replayBatch = List.of();
+        } else {
+            nextReplayNanos = System.nanoTime() + properties.getRetryInterval().toNanos();
+        }
+    }
+
+    private boolean send(List<PendingRecord> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + properties.getReplayTimeout().toNanos();
+        try {
+            List<Future<RecordMetadata>> futures = new ArrayList<>(batch.size());
+            for (PendingRecord record : batch) {
+                futures.add(producer.send(record.topic(), record.key(), record.value(), null));
+            }
+            for (Future<RecordMetadata> future : futures) {
+                future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+            return true;
+        } catch (KafkaException | ExecutionException | TimeoutException e) {
+            log.warn("Брокер недоступен, повторная отправка {} записей журнала отложена: {}", batch.size(),
+                    e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package ru.practicum.ingestion;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ToString
+@Configuration
+@ConfigurationProperties(prefix = "collector.ingestion")
+public class IngestionProperties {
+    // Ёмкость кольцевого буфера перед продюсером
+    private int capacity = 65_536;
+    // Сколько gRPC-поток ждёт места в буфере, прежде чем ответить RESOURCE_EXHAUSTED
+    private Duration offerTimeout = Duration.ofMillis(100);
+    private String spillDirectory = "data/collector-spill";
+    private long segmentBytes = 64L * 1024 * 1024;
+    private int replayBatchSize = 500;
+    // Ожидание подтверждения брокера для пакета повторной отправки
+    private Duration replayTimeout = Duration.ofSeconds(5);
+    // Пауза между попытками повторной отправки, пока брокер недоступен
+    private Duration retryInterval = Duration.ofSeconds(1);
+}
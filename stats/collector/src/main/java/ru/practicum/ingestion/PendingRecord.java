@@ -0,0 +1,6 @@
+package ru.practicum.ingestion;
+
+import org.apache.avro.specific.SpecificRecordBase;
+
+public record PendingRecord(String topic, String key, SpecificRecordBase value) {
+}
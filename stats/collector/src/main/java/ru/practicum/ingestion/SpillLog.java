@@ -0,0 +1,211 @@
+package ru.practicum.ingestion;
+
+import kafka.deserialization.AvroDeserializer;
+import kafka.serialization.AvroSerializer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.avro.specific.SpecificData;
+import org.apache.avro.specific.SpecificRecordBase;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+// Журнал записей, не принятых брокером: сегменты segment-<номер>.log только дописываются и удаляются целиком
+// после подтверждённой повторной отправки всех своих записей. Запись в сегменте: топик, ключ, класс записи и её
+// Avro-байты. Сегменты, оставшиеся после перезапуска, отправляются первыми. Записанное попадает на диск
+// (fsync) при sync() и при закрытии сегмента. Не потокобезопасен: рассчитан на поток приёма коллектора
+@Slf4j
+public class SpillLog implements Closeable {
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final AvroSerializer serializer = new AvroSerializer();
+    private final Map<String, AvroDeserializer<SpecificRecordBase>> deserializers = new HashMap<>();
+    // Закрытые сегменты в порядке записи; первый из них читается
+    private final Deque<Path> segments = new ArrayDeque<>();
+    private final List<Path> consumed = new ArrayList<>();
+    private long nextSegment;
+    private Path activeSegment;
+    private FileChannel channel;
+    private DataOutputStream writer;
+    private long activeBytes;
+    // Дописанное с последнего sync() ещё может находиться только в кеше ОС
+    private boolean unsynced;
+    private DataInputStream reader;
+    private long records;
+
+    public SpillLog(Path directory, long segmentBytes) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                files.filter(SpillLog::isSegment)
+                        .sorted((a, b) -> Long.compare(sequence(a), sequence(b)))
+                        .forEach(segments::add);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть каталог сброса " + directory, e);
+        }
+        nextSegment = segments.isEmpty() ? 0 : sequence(segments.peekLast()) + 1;
+        if (!segments.isEmpty()) {
+            log.info("Найдено {} сегментов сброса для повторной отправки в {}", segments.size(), directory);
+        }
+    }
+
+    public void append(PendingRecord record) throws IOException {
+        if (writer == null) {
+            activeSegment = directory.resolve(SEGMENT_PREFIX + nextSegment++ + SEGMENT_SUFFIX);
+            channel = FileChannel.open(activeSegment, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            writer = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            activeBytes = 0;
+        }
+        byte[] value = serializer.serialize(record.topic(), record.value());
+        int before = writer.size();
+        writer.writeUTF(record.topic());
+        writer.writeUTF(record.key());
+        writer.writeUTF(record.value().getClass().getName());
+        writer.writeInt(value.length);
+        writer.write(value);
+        activeBytes += writer.size() - before;
+        records++;
+        unsynced = true;
+        if (activeBytes >= segmentBytes) {
+            roll();
+        }
+    }
+
+    // Записывает на диск всё дописанное в текущий сегмент; вызывается после каждого сброшенного пакета
+    public void sync() throws IOException {
+        if (!unsynced) {
+            return;
+        }
+        writer.flush();
+        channel.force(false);
+        unsynced = false;
+    }
+
+    // Следующие записи в порядке сброса. Прочитанное становится недоступным, а сегменты удаляются только после
+    // commit(), поэтому при сбое отправки вызывающий код повторяет уже прочитанный пакет сам
+    public List<PendingRecord> read(int max) throws IOException {
+        List<PendingRecord> batch = new ArrayList<>(Math.min(max, 1024));
+        while (batch.size() < max) {
+            if (reader == null) {
+                if (segments.isEmpty()) {
+                    if (writer == null) {
+                        break;
+                    }
+                    // Дописываемый сегмент закрывается, чтобы прочитать его целиком
+                    roll();
+                }
+                reader = new DataInputStream(new BufferedInputStream(Files.newInputStream(segments.peekFirst())));
+            }
+            PendingRecord record = readRecord(reader);
+            if (record == null) {
+                reader.close();
+                reader = null;
+                consumed.add(segments.pollFirst());
+                continue;
+            }
+            batch.add(record);
+        }
+        return batch;
+    }
+
+    // Подтверждает отправку прочитанных записей: полностью прочитанные сегменты удаляются
+    public void commit(int count) throws IOException {
+        records = Math.max(0, records - count);
+        for (Path segment : consumed) {
+            Files.deleteIfExists(segment);
+        }
+        consumed.clear();
+    }
+
+    public boolean isEmpty() {
+        return writer == null && segments.isEmpty() && reader == null;
+    }
+
+    // Записи, сброшенные за время работы процесса и ещё не подтверждённые
+    public long size() {
+        return records;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writer != null) {
+            roll();
+        }
+        if (reader != null) {
+            reader.close();
+            reader = null;
+        }
+    }
+
+    private void roll() throws IOException {
+        sync();
+        writer.close();
+        writer = null;
+        channel = null;
+        segments.addLast(activeSegment);
+        activeSegment = null;
+    }
+
+    private PendingRecord readRecord(DataInputStream input) throws IOException {
+        String topic;
+        try {
+            topic = input.readUTF();
+        } catch (EOFException e) {
+            return null;
+        }
+        try {
+            String key = input.readUTF();
+            String type = input.readUTF();
+            byte[] value = new byte[input.readInt()];
+            input.readFully(value);
+            return new PendingRecord(topic, key, deserializer(type).deserialize(topic, value));
+        } catch (EOFException e) {
+            // Запись, оборванная при аварийной остановке, не восстанавливается
+            log.warn("Сегмент сброса оборван на незавершённой записи топика {}", topic);
+            return null;
+        }
+    }
+
+    private AvroDeserializer<SpecificRecordBase> deserializer(String type) {
+        return deserializers.computeIfAbsent(type, name -> {
+            try {
+                return new AvroDeserializer<>(SpecificData.get().getSchema(Class.forName(name)));
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException("Неизвестный класс записи в сегменте сброса: " + name, e);
+            }
+        });
+    }
+
+    private static boolean isSegment(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+    }
+
+    private static long sequence(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
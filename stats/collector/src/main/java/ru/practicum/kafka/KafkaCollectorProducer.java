@@ -1,35 +1,28 @@
 package ru.practicum.kafka;
 
 import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
 import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.clients.producer.Callback;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerRecord;
-import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.clients.producer.RecordMetadata;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
-import java.util.Objects;
+import java.util.concurrent.Future;
 
 @Service
 @RequiredArgsConstructor
-@Slf4j
 public class KafkaCollectorProducer {
     private final @Qualifier("customKafkaProducerFactory") KafkaProducer<String, SpecificRecordBase> kafkaProducer;
 
-    public void send(String topic, SpecificRecordBase data) {
-        try {
-            kafkaProducer.send(new ProducerRecord<>(topic, data),
-                    (metadata, e) -> {
-                        if (Objects.nonNull(e)) {
-                            log.error("[{}] Ошибка отправки: {}", topic, e.getMessage());
-                        } else {
-                            log.info("Отправлено в {} - {}", topic, metadata.partition());
-                        }
-                    });
-        } catch (KafkaException ex) {
-            log.error("Ошибка при отправлении сообщения:", ex);
-            throw new KafkaException("Ошибка при отправлении сообщения", ex);
-        }
+    // Отправка без перехвата ошибок: исключение продюсера и результат доставки обрабатывает вызывающий код
+    public Future<RecordMetadata> send(String topic, String key, SpecificRecordBase data, Callback callback) {
+        return kafkaProducer.send(new ProducerRecord<>(topic, key, data), callback);
+    }
+
+    // Ждёт завершения всех отправленных записей: после возврата обратные вызовы всех отправок выполнены
+    public void flush() {
+        kafkaProducer.flush();
     }
 }
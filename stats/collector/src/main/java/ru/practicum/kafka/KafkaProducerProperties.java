@@ -8,6 +8,9 @@ import org.apache.kafka.clients.producer.ProducerConfig;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
 
@@ -20,6 +23,11 @@ public class KafkaProducerProperties {
     private String bootstrapServer;
     private String keySerializeClass;
     private String valueSerializeClass;
+    // Сколько send() ждёт метаданных или места в буфере продюсера; дальше запись уходит в журнал сброса
+    private Duration maxBlock = Duration.ofSeconds(1);
+    private ProducerProfile profile = ProducerProfile.DEFAULT;
+    // Произвольные настройки клиента Kafka поверх профиля, например config."[linger.ms]": 10
+    private Map<String, String> config = new LinkedHashMap<>();
 
     public Properties setProperties() {
         if (Objects.isNull(bootstrapServer)) {
@@ -38,12 +46,15 @@ public class KafkaProducerProperties {
         properties.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServer);
         properties.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, keySerializeClass);
         properties.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, valueSerializeClass);
+        properties.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, String.valueOf(maxBlock.toMillis()));
+        properties.putAll(profile.getSettings());
+        properties.putAll(config);
         return properties;
     }
 
     @PostConstruct
     public void init() {
-        log.info("Loaded Kafka producer config: bootstrap={}, keySerializer={}, valueSerializer={}",
-                bootstrapServer, keySerializeClass, valueSerializeClass);
+        log.info("Loaded Kafka producer config: bootstrap={}, keySerializer={}, valueSerializer={}, profile={}, config={}",
+                bootstrapServer, keySerializeClass, valueSerializeClass, profile, config);
     }
 }
\ No newline at end of file
@@ -0,0 +1,41 @@
+package ru.practicum.kafka;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+
+import java.util.Map;
+
+// Готовые наборы настроек продюсера. DEFAULT оставляет значения клиента Kafka без изменений
+public enum ProducerProfile {
+    DEFAULT(Map.of()),
+    // Запись уходит сразу, без ожидания пакета и сжатия; подтверждение только от лидера
+    LOW_LATENCY(Map.of(
+            ProducerConfig.LINGER_MS_CONFIG, "0",
+            ProducerConfig.COMPRESSION_TYPE_CONFIG, "none",
+            ProducerConfig.ACKS_CONFIG, "1",
+            ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, "false")),
+    // Крупные сжатые пакеты с небольшой задержкой на их накопление
+    THROUGHPUT(Map.of(
+            ProducerConfig.LINGER_MS_CONFIG, "20",
+            ProducerConfig.BATCH_SIZE_CONFIG, "262144",
+            ProducerConfig.BUFFER_MEMORY_CONFIG, "67108864",
+            ProducerConfig.COMPRESSION_TYPE_CONFIG, "lz4",
+            ProducerConfig.ACKS_CONFIG, "1",
+            ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, "false")),
+    // Подтверждение всеми репликами и идемпотентность: без потерь и дублей при повторах
+    DURABLE(Map.of(
+            ProducerConfig.LINGER_MS_CONFIG, "5",
+            ProducerConfig.COMPRESSION_TYPE_CONFIG, "lz4",
+            ProducerConfig.ACKS_CONFIG, "all",
+            ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, "true",
+            ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, "5"));
+
+    private final Map<String, String> settings;
+
+    ProducerProfile(Map<String, String> settings) {
+        this.settings = settings;
+    }
+
+    public Map<String, String> getSettings() {
+        return settings;
+    }
+}
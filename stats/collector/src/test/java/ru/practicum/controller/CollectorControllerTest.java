@@ -0,0 +1,221 @@
+package ru.practicum.controller;
+
+import com.google.protobuf.Empty;
+import com.google.protobuf.Timestamp;
+import io.grpc.ForwardingServerCall;
+import io.grpc.Grpc;
+import io.grpc.InsecureChannelCredentials;
+import io.grpc.InsecureServerCredentials;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.Server;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.ewm.stats.proto.ActionTypeProto;
+import ru.practicum.ewm.stats.proto.UserActionBatchProto;
+import ru.practicum.ewm.stats.proto.UserActionControllerGrpc;
+import ru.practicum.ewm.stats.proto.UserActionProto;
+import ru.practicum.ingestion.CollectorIngestion;
+import ru.practicum.ingestion.IngestionProperties;
+import ru.practicum.kafka.KafkaCollectorProducer;
+import ru.practicum.mapper.UserActionMapperImpl;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Сервер на loopback-порту: in-process транспорт из стартера (1.63) несовместим с grpc-core 1.71 коллектора
+public class CollectorControllerTest {
+    private static final String TOPIC = "stats.user-actions.v1";
+
+    // Сообщения, запрошенные контроллером у транспорта через ServerCall.request
+    private final AtomicInteger requested = new AtomicInteger();
+    private Server server;
+    private ManagedChannel channel;
+
+    @AfterEach
+    public void stopServer() {
+        if (channel != null) {
+            channel.shutdownNow();
+        }
+        if (server != null) {
+            server.shutdownNow();
+        }
+    }
+
+    @Test
+    public void collectUserActionBatch_whenBufferHasRoom_thenAcknowledgedAfterAllOffered() throws Exception {
+        CollectorIngestion ingestion = ingestion(10);
+        start(ingestion);
+
+        Empty response = UserActionControllerGrpc.newBlockingStub(channel)
+                .collectUserActionBatch(UserActionBatchProto.newBuilder()
+                        .addActions(action(1))
+                        .addActions(action(2))
+                        .addActions(action(3))
+                        .build());
+
+        assertEquals(Empty.getDefaultInstance(), response);
+        assertEquals(7, ingestion.remainingCapacity());
+    }
+
+    @Test
+    public void collectUserActionBatch_whenBufferFull_thenResourceExhausted() throws Exception {
+        start(ingestion(1));
+
+        StatusRuntimeException e = assertThrows(StatusRuntimeException.class, () ->
+                UserActionControllerGrpc.newBlockingStub(channel)
+                        .collectUserActionBatch(UserActionBatchProto.newBuilder()
+                                .addActions(action(1))
+                                .addActions(action(2))
+                                .build()));
+
+        assertEquals(Status.Code.RESOURCE_EXHAUSTED, e.getStatus().getCode());
+    }
+
+    // Автоматический запрос сообщений отключён: следующее сообщение потока запрашивается только после того,
+    // как предыдущее принято в буфер
+    @Test
+    public void collectUserActions_whenOfferBlocked_thenNextMessageNotRequested() throws Exception {
+        CountDownLatch offered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Long> accepted = new CopyOnWriteArrayList<>();
+        CollectorIngestion ingestion = mock(CollectorIngestion.class);
+        when(ingestion.offer(eq(TOPIC), anyString(), any())).thenAnswer(invocation -> {
+            offered.countDown();
+            release.await();
+            accepted.add(((UserActionAvro) invocation.getArgument(2)).getEventId());
+            return true;
+        });
+        start(ingestion);
+        StreamResult result = new StreamResult();
+        UserActionControllerGrpc.newStub(channel).collectUserActions(result);
+
+        result.requestStream.onNext(action(1));
+        result.requestStream.onNext(action(2));
+        assertTrue(offered.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertEquals(1, requested.get());
+        assertTrue(accepted.isEmpty());
+
+        release.countDown();
+        await(() -> requested.get() == 3, "next messages requested");
+        result.requestStream.onCompleted();
+
+        assertEquals(Empty.getDefaultInstance(), result.response.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of(1L, 2L), accepted);
+    }
+
+    // Буфер заполнен дольше offerTimeout (100 мс): поток завершается с RESOURCE_EXHAUSTED
+    @Test
+    public void collectUserActions_whenBufferFullLongerThanOfferTimeout_thenResourceExhausted() throws Exception {
+        start(ingestion(1));
+        StreamResult result = new StreamResult();
+        UserActionControllerGrpc.newStub(channel).collectUserActions(result);
+
+        long started = System.nanoTime();
+        result.requestStream.onNext(action(1));
+        result.requestStream.onNext(action(2));
+
+        Throwable error = result.response.handle((response, e) -> e).get(5, TimeUnit.SECONDS);
+        assertEquals(Status.Code.RESOURCE_EXHAUSTED, Status.fromThrowable(error).getCode());
+        assertTrue(System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    private void start(CollectorIngestion ingestion) throws Exception {
+        CollectorController controller = new CollectorController(ingestion, new UserActionMapperImpl());
+        ReflectionTestUtils.setField(controller, "topic", TOPIC);
+        server = Grpc.newServerBuilderForPort(0, InsecureServerCredentials.create())
+                .addService(ServerInterceptors.intercept(controller, new RequestCounter()))
+                .build()
+                .start();
+        channel = Grpc.newChannelBuilder("localhost:" + server.getPort(), InsecureChannelCredentials.create()).build();
+    }
+
+    // Приём без запущенного потока отправки: буфер только заполняется
+    private static CollectorIngestion ingestion(int capacity) {
+        IngestionProperties properties = new IngestionProperties();
+        properties.setCapacity(capacity);
+        properties.setOfferTimeout(Duration.ofMillis(100));
+        return new CollectorIngestion(mock(KafkaCollectorProducer.class), properties);
+    }
+
+    private static UserActionProto action(long eventId) {
+        return UserActionProto.newBuilder()
+                .setUserId(1)
+                .setEventId(eventId)
+                .setActionType(ActionTypeProto.ACTION_VIEW)
+                .setTimestamp(Timestamp.newBuilder().setSeconds(1).build())
+                .build();
+    }
+
+    private static void await(BooleanSupplier condition, String description) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting for: " + description);
+            Thread.sleep(10);
+        }
+    }
+
+    private final class RequestCounter implements ServerInterceptor {
+        @Override
+        public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                     ServerCallHandler<ReqT, RespT> next) {
+            return next.startCall(new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+                @Override
+                public void request(int numMessages) {
+                    requested.addAndGet(numMessages);
+                    super.request(numMessages);
+                }
+            }, headers);
+        }
+    }
+
+    private static final class StreamResult implements ClientResponseObserver<UserActionProto, Empty> {
+        private final CompletableFuture<Empty> response = new CompletableFuture<>();
+        private volatile ClientCallStreamObserver<UserActionProto> requestStream;
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<UserActionProto> requestStream) {
+            this.requestStream = requestStream;
+        }
+
+        @Override
+        public void onNext(Empty value) {
+            response.complete(value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            response.completeExceptionally(t);
+        }
+
+        @Override
+        public void onCompleted() {
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package ru.practicum.ingestion;
+
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.practicum.ewm.stats.avro.ActionTypeAvro;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.kafka.KafkaCollectorProducer;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNotNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CollectorIngestionFailureTest {
+    private static final String TOPIC = "stats.user-actions.failure-test";
+
+    @TempDir
+    Path spillDirectory;
+    private final KafkaCollectorProducer producer = mock(KafkaCollectorProducer.class);
+
+    // Продюсер отвергает первую запись: остаток пакета не отправляется, а весь пакет сбрасывается по порядку
+    @Test
+    public void offer_whenRecordRejected_thenRestOfBatchSpilledInOrder() throws Exception {
+        when(producer.send(anyString(), anyString(), any(), any())).thenAnswer(invocation -> {
+            Callback callback = invocation.getArgument(3);
+            TimeoutException error = new TimeoutException("Broker is down");
+            if (callback != null) {
+                callback.onCompletion(null, error);
+            }
+            return CompletableFuture.failedFuture(error);
+        });
+        IngestionProperties properties = properties();
+        CollectorIngestion ingestion = new CollectorIngestion(producer, properties);
+        ingestion.start();
+        try {
+            offer(ingestion, 0, 10);
+            await(() -> ingestion.remainingCapacity() == properties.getCapacity(), "buffer drained");
+        } finally {
+            ingestion.stop();
+        }
+
+        verify(producer, times(1)).send(anyString(), anyString(), any(), isNotNull());
+        try (SpillLog spillLog = new SpillLog(spillDirectory, properties.getSegmentBytes())) {
+            List<PendingRecord> spilled = spillLog.read(100);
+            assertEquals(10, spilled.size());
+            for (int i = 0; i < spilled.size(); i++) {
+                assertEquals(i, ((UserActionAvro) spilled.get(i).value()).getEventId());
+            }
+        }
+    }
+
+    // Непредвиденная ошибка отбрасывает пакет, но поток приёма продолжает работу
+    @Test
+    public void offer_whenProducerFailsUnexpectedly_thenWorkerKeepsRunning() throws Exception {
+        AtomicInteger sends = new AtomicInteger();
+        when(producer.send(anyString(), anyString(), any(), any())).thenAnswer(invocation -> {
+            if (sends.getAndIncrement() == 0) {
+                throw new IllegalStateException("Unexpected failure");
+            }
+            return CompletableFuture.completedFuture(null);
+        });
+        CollectorIngestion ingestion = new CollectorIngestion(producer, properties());
+        ingestion.start();
+        try {
+            offer(ingestion, 0, 1);
+            await(() -> sends.get() == 1, "first record sent");
+            offer(ingestion, 1, 2);
+            await(() -> sends.get() == 2, "next record sent");
+            assertFalse(ingestion.isSpilling());
+        } finally {
+            ingestion.stop();
+        }
+    }
+
+    private IngestionProperties properties() {
+        IngestionProperties properties = new IngestionProperties();
+        properties.setSpillDirectory(spillDirectory.toString());
+        properties.setRetryInterval(Duration.ofMillis(50));
+        properties.setReplayTimeout(Duration.ofMillis(200));
+        return properties;
+    }
+
+    private void offer(CollectorIngestion ingestion, long fromEventId, long toEventId) throws InterruptedException {
+        for (long eventId = fromEventId; eventId < toEventId; eventId++) {
+            UserActionAvro action = UserActionAvro.newBuilder()
+                    .setUserId(1)
+                    .setEventId(eventId)
+                    .setActionType(ActionTypeAvro.VIEW)
+                    .setTimestamp(Instant.now())
+                    .build();
+            assertTrue(ingestion.offer(TOPIC, "1", action));
+        }
+    }
+
+    private static void await(BooleanSupplier condition, String description) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting for: " + description);
+            Thread.sleep(20);
+        }
+    }
+}
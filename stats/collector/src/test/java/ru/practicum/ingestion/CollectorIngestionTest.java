@@ -0,0 +1,142 @@
+package ru.practicum.ingestion;
+
+import kafka.deserialization.UserActionDeserializer;
+import kafka.serialization.AvroSerializer;
+import kafka.server.KafkaServer;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.kafka.test.EmbeddedKafkaZKBroker;
+import ru.practicum.ewm.stats.avro.ActionTypeAvro;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.kafka.KafkaCollectorProducer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CollectorIngestionTest {
+    private static final String TOPIC = "stats.user-actions.ingestion-test";
+    private static final int ACTIONS = 200;
+
+    @TempDir
+    Path spillDirectory;
+    private EmbeddedKafkaZKBroker broker;
+
+    @BeforeEach
+    public void startBroker() throws IOException {
+        // Порт фиксируется заранее: после перезапуска брокер должен слушать тот же адрес
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        broker = new EmbeddedKafkaZKBroker(1, false, 1, TOPIC).kafkaPorts(port);
+        broker.afterPropertiesSet();
+    }
+
+    @AfterEach
+    public void stopBroker() {
+        broker.destroy();
+    }
+
+    @Test
+    public void offer_whenBrokerRestarted_thenSpilledActionsReplayedInOrder() throws Exception {
+        IngestionProperties properties = new IngestionProperties();
+        properties.setSpillDirectory(spillDirectory.toString());
+        properties.setRetryInterval(Duration.ofMillis(200));
+        properties.setReplayTimeout(Duration.ofSeconds(2));
+        KafkaProducer<String, SpecificRecordBase> kafkaProducer = new KafkaProducer<>(Map.of(
+                ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString(),
+                ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class,
+                ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, AvroSerializer.class,
+                ProducerConfig.MAX_BLOCK_MS_CONFIG, 500,
+                ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG, 500,
+                ProducerConfig.DELIVERY_TIMEOUT_MS_CONFIG, 1000));
+        CollectorIngestion ingestion = new CollectorIngestion(new KafkaCollectorProducer(kafkaProducer), properties);
+        ingestion.start();
+        try {
+            offer(ingestion, 0, ACTIONS);
+            await(() -> ingestion.remainingCapacity() == properties.getCapacity(), "buffer drained");
+            kafkaProducer.flush();
+
+            KafkaServer server = broker.getKafkaServer(0);
+            server.shutdown();
+            server.awaitShutdown();
+            offer(ingestion, ACTIONS, 2 * ACTIONS);
+            await(ingestion::isSpilling, "spilling while broker is down");
+
+            server.startup();
+            await(() -> !ingestion.isSpilling(), "spill log replayed");
+        } finally {
+            ingestion.stop();
+            kafkaProducer.close();
+        }
+
+        // Доставка не менее одного раза: повторы допустимы, но первые вхождения идут в порядке приёма
+        List<Long> delivered = new ArrayList<>(consume(2 * ACTIONS));
+        assertEquals(2 * ACTIONS, delivered.size());
+        for (int i = 0; i < delivered.size(); i++) {
+            assertEquals(i, delivered.get(i));
+        }
+    }
+
+    private void offer(CollectorIngestion ingestion, long fromEventId, long toEventId) throws InterruptedException {
+        for (long eventId = fromEventId; eventId < toEventId; eventId++) {
+            UserActionAvro action = UserActionAvro.newBuilder()
+                    .setUserId(1)
+                    .setEventId(eventId)
+                    .setActionType(ActionTypeAvro.VIEW)
+                    .setTimestamp(Instant.now())
+                    .build();
+            assertTrue(ingestion.offer(TOPIC, "1", action));
+        }
+    }
+
+    private Set<Long> consume(int expected) {
+        Set<Long> eventIds = new LinkedHashSet<>();
+        try (KafkaConsumer<String, UserActionAvro> consumer = new KafkaConsumer<>(Map.of(
+                ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString(),
+                ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class,
+                ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, UserActionDeserializer.class))) {
+            TopicPartition partition = new TopicPartition(TOPIC, 0);
+            consumer.assign(List.of(partition));
+            consumer.seekToBeginning(List.of(partition));
+            long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+            while (eventIds.size() < expected && System.nanoTime() < deadline) {
+                for (ConsumerRecord<String, UserActionAvro> record : consumer.poll(Duration.ofMillis(200))) {
+                    eventIds.add(record.value().getEventId());
+                }
+            }
+        }
+        return eventIds;
+    }
+
+    private static void await(BooleanSupplier condition, String description) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting for: " + description);
+            Thread.sleep(50);
+        }
+    }
+}
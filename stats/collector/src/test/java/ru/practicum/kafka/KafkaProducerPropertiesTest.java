@@ -0,0 +1,80 @@
+package ru.practicum.kafka;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class KafkaProducerPropertiesTest {
+
+    @Test
+    public void setProperties_whenDefaultProfile_thenOnlyRequiredSettings() {
+        Properties properties = producerProperties().setProperties();
+
+        assertEquals("localhost:9092", properties.get(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG));
+        assertEquals("key.Serializer", properties.get(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG));
+        assertEquals("value.Serializer", properties.get(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG));
+        assertEquals("1000", properties.get(ProducerConfig.MAX_BLOCK_MS_CONFIG));
+        assertEquals(4, properties.size());
+    }
+
+    @Test
+    public void setProperties_whenProfileSet_thenProfileSettingsApplied() {
+        KafkaProducerProperties producerProperties = producerProperties();
+        producerProperties.setProfile(ProducerProfile.THROUGHPUT);
+        producerProperties.setMaxBlock(Duration.ofMillis(250));
+
+        Properties properties = producerProperties.setProperties();
+
+        assertEquals("20", properties.get(ProducerConfig.LINGER_MS_CONFIG));
+        assertEquals("lz4", properties.get(ProducerConfig.COMPRESSION_TYPE_CONFIG));
+        assertEquals("1", properties.get(ProducerConfig.ACKS_CONFIG));
+        assertEquals("250", properties.get(ProducerConfig.MAX_BLOCK_MS_CONFIG));
+    }
+
+    @Test
+    public void setProperties_whenConfigOverridesProfileAndDefaults_thenConfigWins() {
+        KafkaProducerProperties producerProperties = producerProperties();
+        producerProperties.setProfile(ProducerProfile.THROUGHPUT);
+        producerProperties.getConfig().put(ProducerConfig.LINGER_MS_CONFIG, "5");
+        producerProperties.getConfig().put(ProducerConfig.MAX_BLOCK_MS_CONFIG, "3000");
+
+        Properties properties = producerProperties.setProperties();
+
+        assertEquals("5", properties.get(ProducerConfig.LINGER_MS_CONFIG));
+        assertEquals("3000", properties.get(ProducerConfig.MAX_BLOCK_MS_CONFIG));
+        assertEquals("lz4", properties.get(ProducerConfig.COMPRESSION_TYPE_CONFIG));
+    }
+
+    @Test
+    public void setProperties_whenLowLatencyProfile_thenNoSettingsFromOtherProfiles() {
+        KafkaProducerProperties producerProperties = producerProperties();
+        producerProperties.setProfile(ProducerProfile.LOW_LATENCY);
+
+        Properties properties = producerProperties.setProperties();
+
+        assertEquals("0", properties.get(ProducerConfig.LINGER_MS_CONFIG));
+        assertFalse(properties.containsKey(ProducerConfig.BATCH_SIZE_CONFIG));
+    }
+
+    @Test
+    public void setProperties_whenBootstrapServerMissing_thenFails() {
+        KafkaProducerProperties producerProperties = producerProperties();
+        producerProperties.setBootstrapServer(null);
+
+        assertThrows(IllegalStateException.class, producerProperties::setProperties);
+    }
+
+    private KafkaProducerProperties producerProperties() {
+        KafkaProducerProperties producerProperties = new KafkaProducerProperties();
+        producerProperties.setBootstrapServer("localhost:9092");
+        producerProperties.setKeySerializeClass("key.Serializer");
+        producerProperties.setValueSerializeClass("value.Serializer");
+        return producerProperties;
+    }
+}
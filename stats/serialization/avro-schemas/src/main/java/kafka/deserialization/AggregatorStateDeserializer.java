@@ -0,0 +1,10 @@
+package kafka.deserialization;
+
+import ru.practicum.ewm.stats.avro.AggregatorStateAvro;
+
+public class AggregatorStateDeserializer extends AvroDeserializer<AggregatorStateAvro> {
+
+    public AggregatorStateDeserializer() {
+        super(AggregatorStateAvro.getClassSchema());
+    }
+}
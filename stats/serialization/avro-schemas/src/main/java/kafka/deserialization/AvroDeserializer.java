@@ -1,40 +1,136 @@
 package kafka.deserialization;
 
+import kafka.serialization.SchemaFingerprint;
 import org.apache.avro.Schema;
+import org.apache.avro.SchemaCompatibility;
+import org.apache.avro.SchemaParseException;
 import org.apache.avro.io.BinaryDecoder;
 import org.apache.avro.io.DatumReader;
 import org.apache.avro.io.DecoderFactory;
 import org.apache.avro.specific.SpecificDatumReader;
 import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.common.config.ConfigException;
 import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
 import org.apache.kafka.common.serialization.Deserializer;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
+// Декодер переиспользуется потоком, а запись — вызывающим кодом через deserialize(..., reuse).
+// Если продюсер передаёт отпечаток схемы в заголовке, сообщение читается читателем для этой версии схемы:
+// читатели для зарегистрированных схем создаются один раз, и разрешение схем не повторяется на каждое сообщение.
+// Прежние версии схемы перечисляются в avro.writer.schemas: ресурсы .avsc из classpath через запятую
 public class AvroDeserializer<T extends SpecificRecordBase> implements Deserializer<T> {
+    public static final String WRITER_SCHEMAS_CONFIG = "avro.writer.schemas";
     private final DecoderFactory decoderFactory;
+    private final Schema schema;
     private final DatumReader<T> reader;
+    private final Map<Long, DatumReader<T>> readersByFingerprint = new ConcurrentHashMap<>();
+    private final ThreadLocal<BinaryDecoder> decoders = new ThreadLocal<>();
 
     public AvroDeserializer(DecoderFactory decoderFactory, Schema schema) {
         this.decoderFactory = decoderFactory;
+        this.schema = schema;
         this.reader = new SpecificDatumReader<>(schema);
+        readersByFingerprint.put(SchemaFingerprint.of(schema), reader);
     }
 
     public AvroDeserializer(Schema schema) {
         this(DecoderFactory.get(), schema);
     }
 
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        for (String resource : resources(configs.get(WRITER_SCHEMAS_CONFIG))) {
+            registerWriterSchema(loadSchema(resource));
+        }
+    }
+
+    // Регистрирует прежнюю (или будущую) версию схемы, сообщения которой приводятся к текущей схеме.
+    // Несовместимая схема отклоняется сразу, а не при чтении первого сообщения
+    public void registerWriterSchema(Schema writerSchema) {
+        SchemaCompatibility.SchemaPairCompatibility compatibility =
+                SchemaCompatibility.checkReaderWriterCompatibility(schema, writerSchema);
+        if (compatibility.getType() != SchemaCompatibility.SchemaCompatibilityType.COMPATIBLE) {
+            throw new ConfigException("Схема " + writerSchema.getFullName() + " несовместима с текущей: "
+                    + compatibility.getDescription());
+        }
+        readersByFingerprint.put(SchemaFingerprint.of(writerSchema), new SpecificDatumReader<>(writerSchema, schema));
+    }
+
     @Override
     public T deserialize(String topic, byte[] data) {
-        try {
-            if (Objects.nonNull(data)) {
-                BinaryDecoder decoder = decoderFactory.binaryDecoder(data, null);
-                return this.reader.read(null, decoder);
-            }
+        return deserialize(topic, null, data, null);
+    }
+
+    @Override
+    public T deserialize(String topic, Headers headers, byte[] data) {
+        return deserialize(topic, headers, data, null);
+    }
+
+    // Заполняет переданную запись вместо создания новой; вызывающий код не должен хранить её между вызовами
+    public T deserialize(String topic, Headers headers, byte[] data, T reuse) {
+        if (Objects.isNull(data)) {
             return null;
+        }
+        DatumReader<T> datumReader = getReader(topic, headers);
+        try {
+            BinaryDecoder decoder = decoderFactory.binaryDecoder(data, decoders.get());
+            decoders.set(decoder);
+            return datumReader.read(reuse, decoder);
         } catch (Exception e) {
-            throw new SerializationException("Ошибка десериализации данных из топика [" + topic + "]");
+            throw new SerializationException("Ошибка десериализации данных из топика [" + topic + "]", e);
+        }
+    }
+
+    private DatumReader<T> getReader(String topic, Headers headers) {
+        Header header = Objects.isNull(headers) ? null : headers.lastHeader(SchemaFingerprint.HEADER);
+        if (Objects.isNull(header)) {
+            return reader;
+        }
+        long fingerprint;
+        try {
+            fingerprint = SchemaFingerprint.fromBytes(header.value());
+        } catch (IllegalArgumentException e) {
+            throw new SerializationException("Некорректный отпечаток схемы в сообщении из топика [" + topic + "]", e);
         }
+        DatumReader<T> fingerprintReader = readersByFingerprint.get(fingerprint);
+        if (Objects.isNull(fingerprintReader)) {
+            throw new SerializationException("Неизвестная версия схемы " + schema.getFullName() + ": "
+                    + Long.toHexString(fingerprint));
+        }
+        return fingerprintReader;
+    }
+
+    private static List<String> resources(Object value) {
+        if (Objects.isNull(value)) {
+            return List.of();
+        }
+        Collection<?> values = value instanceof Collection<?> collection
+                ? collection
+                : Arrays.asList(String.valueOf(value).split(","));
+        return values.stream()
+                .map(resource -> String.valueOf(resource).trim())
+                .filter(resource -> !resource.isEmpty())
+                .toList();
     }
 
-}
\ No newline at end of file
+    private static Schema loadSchema(String resource) {
+        try (InputStream input = AvroDeserializer.class.getClassLoader().getResourceAsStream(resource)) {
+            if (Objects.isNull(input)) {
+                throw new ConfigException(WRITER_SCHEMAS_CONFIG, resource, "Схема не найдена в classpath");
+            }
+            return new Schema.Parser().parse(input);
+        } catch (IOException | SchemaParseException e) {
+            throw new ConfigException(WRITER_SCHEMAS_CONFIG, resource, "Не удалось прочитать схему: " + e.getMessage());
+        }
+    }
+}
@@ -7,30 +7,109 @@ import org.apache.avro.io.EncoderFactory;
 import org.apache.avro.specific.SpecificDatumWriter;
 import org.apache.avro.specific.SpecificRecordBase;
 import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
 import org.apache.kafka.common.serialization.Serializer;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
+// Продюсер вызывает сериализатор из потоков, отправляющих записи, поэтому общие данные только неизменяемые:
+// писатели кешируются по классу записи, а кодировщик и буфер у каждого потока свои.
+// При avro.schema.fingerprint.header=true в заголовок сообщения добавляется отпечаток схемы записи
 @Slf4j
 public class AvroSerializer implements Serializer<SpecificRecordBase> {
+    public static final String FINGERPRINT_HEADER_CONFIG = "avro.schema.fingerprint.header";
+    private static final int INITIAL_BUFFER_SIZE = 256;
+    // Буфер, выросший сверх этого размера из-за крупной записи, не удерживается потоком
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1 << 20;
+
     private final EncoderFactory encoderFactory = EncoderFactory.get();
-    private BinaryEncoder encoder;
+    private final Map<Class<?>, RecordWriter> writers = new ConcurrentHashMap<>();
+    private final ThreadLocal<OutputBuffer> buffers = ThreadLocal.withInitial(OutputBuffer::new);
+    private boolean fingerprintHeader;
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        fingerprintHeader = Boolean.parseBoolean(String.valueOf(configs.get(FINGERPRINT_HEADER_CONFIG)));
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, SpecificRecordBase data) {
+        if (fingerprintHeader && Objects.nonNull(data) && Objects.nonNull(headers)) {
+            headers.add(SchemaFingerprint.HEADER, getWriter(data).fingerprint());
+        }
+        return serialize(topic, data);
+    }
 
     public byte[] serialize(String topic, SpecificRecordBase data) {
-        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-            byte[] result = null;
-            encoder = encoderFactory.binaryEncoder(out, encoder);
-            if (Objects.nonNull(data)) {
-                DatumWriter<SpecificRecordBase> writer = new SpecificDatumWriter<>(data.getSchema());
-                writer.write(data, encoder);
-                encoder.flush();
-                result = out.toByteArray();
-            }
-            return result;
+        if (Objects.isNull(data)) {
+            return null;
+        }
+        OutputBuffer buffer = buffers.get();
+        try {
+            // Прямой кодировщик пишет в буфер потока без собственной буферизации: байты копируются один раз,
+            // в массив итогового размера
+            buffer.encoder = encoderFactory.directBinaryEncoder(buffer, buffer.encoder);
+            getWriter(data).writer().write(data, buffer.encoder);
+            return buffer.toByteArray();
         } catch (IOException ex) {
             throw new SerializationException("Ошибка сериализации данных для топика [" + topic + "]", ex);
+        } finally {
+            buffer.reset();
+        }
+    }
+
+    private RecordWriter getWriter(SpecificRecordBase data) {
+        RecordWriter writer = writers.get(data.getClass());
+        if (writer == null) {
+            writer = writers.computeIfAbsent(data.getClass(), type -> new RecordWriter(
+                    new SpecificDatumWriter<>(data.getSchema()),
+                    SchemaFingerprint.toBytes(SchemaFingerprint.of(data.getSchema()))));
+        }
+        return writer;
+    }
+
+    private record RecordWriter(DatumWriter<SpecificRecordBase> writer, byte[] fingerprint) {
+    }
+
+    // Растущий буфер потока без синхронизации ByteArrayOutputStream
+    private static final class OutputBuffer extends OutputStream {
+        private byte[] bytes = new byte[INITIAL_BUFFER_SIZE];
+        private int size;
+        private BinaryEncoder encoder;
+
+        @Override
+        public void write(int b) {
+            ensureCapacity(size + 1);
+            bytes[size++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] source, int offset, int length) {
+            ensureCapacity(size + length);
+            System.arraycopy(source, offset, bytes, size, length);
+            size += length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+
+        void reset() {
+            size = 0;
+            if (bytes.length > MAX_RETAINED_BUFFER_SIZE) {
+                bytes = new byte[INITIAL_BUFFER_SIZE];
+            }
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length << 1));
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,30 @@
+package kafka.serialization;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
+
+import java.nio.ByteBuffer;
+
+// Отпечаток схемы записи (CRC-64-AVRO канонической формы), передаваемый в заголовке сообщения:
+// по нему потребитель выбирает читателя для версии схемы, которой записано сообщение
+public final class SchemaFingerprint {
+    public static final String HEADER = "avro.schema.fingerprint";
+
+    private SchemaFingerprint() {
+    }
+
+    public static long of(Schema schema) {
+        return SchemaNormalization.parsingFingerprint64(schema);
+    }
+
+    public static byte[] toBytes(long fingerprint) {
+        return ByteBuffer.allocate(Long.BYTES).putLong(fingerprint).array();
+    }
+
+    public static long fromBytes(byte[] bytes) {
+        if (bytes == null || bytes.length != Long.BYTES) {
+            throw new IllegalArgumentException("Invalid schema fingerprint header");
+        }
+        return ByteBuffer.wrap(bytes).getLong();
+    }
+}
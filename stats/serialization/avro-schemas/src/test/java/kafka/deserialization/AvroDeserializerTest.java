@@ -0,0 +1,110 @@
+package kafka.deserialization;
+
+import kafka.serialization.AvroSerializer;
+import kafka.serialization.SchemaFingerprint;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+import ru.practicum.ewm.stats.avro.ActionTypeAvro;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class AvroDeserializerTest {
+    private static final String TOPIC = "stats.user-actions.v1";
+    private static final String OLD_SCHEMA = "avro/user-action-v0.avsc";
+
+    @Test
+    public void deserialize_whenOldWriterSchemaConfigured_thenReadWithCurrentSchema() throws IOException {
+        Schema oldSchema = loadSchema();
+        UserActionDeserializer deserializer = new UserActionDeserializer();
+        deserializer.configure(Map.of(AvroDeserializer.WRITER_SCHEMAS_CONFIG, OLD_SCHEMA), false);
+
+        UserActionAvro action = deserializer.deserialize(TOPIC, fingerprintHeaders(oldSchema), writeOld(oldSchema));
+
+        assertEquals(1, action.getUserId());
+        assertEquals(2, action.getEventId());
+        assertEquals(ActionTypeAvro.LIKE, action.getActionType());
+        assertEquals(Instant.ofEpochMilli(1_000), action.getTimestamp());
+    }
+
+    @Test
+    public void deserialize_whenFingerprintUnknown_thenSerializationException() throws IOException {
+        Schema oldSchema = loadSchema();
+        UserActionDeserializer deserializer = new UserActionDeserializer();
+
+        assertThrows(SerializationException.class,
+                () -> deserializer.deserialize(TOPIC, fingerprintHeaders(oldSchema), writeOld(oldSchema)));
+    }
+
+    @Test
+    public void deserialize_whenFingerprintHeaderMalformed_thenSerializationException() {
+        RecordHeaders headers = new RecordHeaders();
+        headers.add(SchemaFingerprint.HEADER, new byte[]{1, 2, 3});
+
+        assertThrows(SerializationException.class,
+                () -> new UserActionDeserializer().deserialize(TOPIC, headers, new byte[0]));
+    }
+
+    // Без заголовка сообщение читается текущей схемой
+    @Test
+    public void deserialize_whenFingerprintHeaderMissing_thenReadWithCurrentSchema() {
+        UserActionAvro expected = UserActionAvro.newBuilder()
+                .setUserId(3)
+                .setEventId(4)
+                .setActionType(ActionTypeAvro.VIEW)
+                .setTimestamp(Instant.ofEpochMilli(2_000))
+                .build();
+        byte[] data = new AvroSerializer().serialize(TOPIC, expected);
+
+        assertEquals(expected, new UserActionDeserializer().deserialize(TOPIC, new RecordHeaders(), data));
+    }
+
+    @Test
+    public void configure_whenSchemaResourceMissing_thenConfigException() {
+        UserActionDeserializer deserializer = new UserActionDeserializer();
+
+        assertThrows(ConfigException.class, () -> deserializer.configure(
+                Map.of(AvroDeserializer.WRITER_SCHEMAS_CONFIG, "avro/missing.avsc"), false));
+    }
+
+    private Schema loadSchema() throws IOException {
+        try (InputStream input = getClass().getClassLoader().getResourceAsStream(OLD_SCHEMA)) {
+            return new Schema.Parser().parse(input);
+        }
+    }
+
+    private RecordHeaders fingerprintHeaders(Schema schema) {
+        RecordHeaders headers = new RecordHeaders();
+        headers.add(SchemaFingerprint.HEADER, SchemaFingerprint.toBytes(SchemaFingerprint.of(schema)));
+        return headers;
+    }
+
+    private byte[] writeOld(Schema oldSchema) throws IOException {
+        GenericRecord record = new GenericData.Record(oldSchema);
+        record.put("userId", 1L);
+        record.put("eventId", 2L);
+        record.put("source", "web");
+        record.put("actionType", new GenericData.EnumSymbol(oldSchema.getField("actionType").schema(), "LIKE"));
+        record.put("timestamp", 1_000L);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, null);
+        new GenericDatumWriter<GenericRecord>(oldSchema).write(record, encoder);
+        encoder.flush();
+        return out.toByteArray();
+    }
+}
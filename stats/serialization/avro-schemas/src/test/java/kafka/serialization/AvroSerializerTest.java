@@ -0,0 +1,167 @@
+package kafka.serialization;
+
+import kafka.deserialization.EventSimilarityDeserializer;
+import kafka.deserialization.UserActionDeserializer;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+import ru.practicum.ewm.stats.avro.ActionTypeAvro;
+import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class AvroSerializerTest {
+    private static final String TOPIC = "stats.user-actions.v1";
+
+    @Test
+    public void serialize_whenDeserialized_thenSameRecords() {
+        AvroSerializer serializer = new AvroSerializer();
+        UserActionAvro action = action(Long.MAX_VALUE, 7, ActionTypeAvro.REGISTER);
+        EventSimilarityAvro similarity = EventSimilarityAvro.newBuilder()
+                .setEventA(1)
+                .setEventB(2)
+                .setScore(0.75)
+                .setTimestamp(Instant.ofEpochMilli(5_000))
+                .build();
+
+        assertEquals(action, new UserActionDeserializer()
+                .deserialize(TOPIC, new RecordHeaders(), serializer.serialize(TOPIC, action)));
+        assertEquals(similarity, new EventSimilarityDeserializer()
+                .deserialize(TOPIC, new RecordHeaders(), serializer.serialize(TOPIC, similarity)));
+    }
+
+    // Буфер потока переиспользуется: после крупной записи в следующую не попадают байты предыдущей
+    @Test
+    public void serialize_whenRecordsOfDifferentSizes_thenEachEncodedIndependently() throws IOException {
+        AvroSerializer serializer = new AvroSerializer();
+        String large = "x".repeat(2 << 20);
+        String medium = "y".repeat(300);
+        UserActionAvro small = action(1, 2, ActionTypeAvro.VIEW);
+
+        assertEquals(large, text(serializer.serialize(TOPIC, new Payload(large))));
+        assertEquals(medium, text(serializer.serialize(TOPIC, new Payload(medium))));
+        assertArrayEquals(new AvroSerializer().serialize(TOPIC, small), serializer.serialize(TOPIC, small));
+        assertEquals(small, new UserActionDeserializer()
+                .deserialize(TOPIC, new RecordHeaders(), serializer.serialize(TOPIC, small)));
+    }
+
+    @Test
+    public void serialize_whenCalledFromSeveralThreads_thenBuffersNotShared() throws Exception {
+        AvroSerializer serializer = new AvroSerializer();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                long userId = thread;
+                futures.add(executor.submit(() -> {
+                    UserActionDeserializer deserializer = new UserActionDeserializer();
+                    for (long eventId = 0; eventId < 1_000; eventId++) {
+                        UserActionAvro action = action(userId, eventId << (eventId % 40), ActionTypeAvro.LIKE);
+                        assertEquals(action, deserializer.deserialize(TOPIC, new RecordHeaders(),
+                                serializer.serialize(TOPIC, action)));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void serialize_whenFingerprintHeaderEnabled_thenHeaderMatchesRecordSchema() {
+        AvroSerializer serializer = new AvroSerializer();
+        serializer.configure(Map.of(AvroSerializer.FINGERPRINT_HEADER_CONFIG, "true"), false);
+        UserActionAvro action = action(1, 2, ActionTypeAvro.LIKE);
+        RecordHeaders headers = new RecordHeaders();
+
+        byte[] data = serializer.serialize(TOPIC, headers, action);
+
+        Header header = headers.lastHeader(SchemaFingerprint.HEADER);
+        assertArrayEquals(SchemaFingerprint.toBytes(SchemaFingerprint.of(UserActionAvro.getClassSchema())), header.value());
+        assertEquals(action, new UserActionDeserializer().deserialize(TOPIC, headers, data));
+    }
+
+    @Test
+    public void serialize_whenFingerprintHeaderNotConfigured_thenNoHeader() {
+        AvroSerializer serializer = new AvroSerializer();
+        serializer.configure(Map.of(), false);
+        RecordHeaders headers = new RecordHeaders();
+
+        serializer.serialize(TOPIC, headers, action(1, 2, ActionTypeAvro.LIKE));
+
+        assertNull(headers.lastHeader(SchemaFingerprint.HEADER));
+    }
+
+    @Test
+    public void serialize_whenRecordNull_thenNullWithoutHeader() {
+        AvroSerializer serializer = new AvroSerializer();
+        serializer.configure(Map.of(AvroSerializer.FINGERPRINT_HEADER_CONFIG, "true"), false);
+        RecordHeaders headers = new RecordHeaders();
+
+        assertNull(serializer.serialize(TOPIC, headers, null));
+        assertNull(headers.lastHeader(SchemaFingerprint.HEADER));
+    }
+
+    private UserActionAvro action(long userId, long eventId, ActionTypeAvro actionType) {
+        return UserActionAvro.newBuilder()
+                .setUserId(userId)
+                .setEventId(eventId)
+                .setActionType(actionType)
+                .setTimestamp(Instant.ofEpochMilli(1_000))
+                .build();
+    }
+
+    private String text(byte[] data) throws IOException {
+        GenericRecord record = new GenericDatumReader<GenericRecord>(Payload.SCHEMA)
+                .read(null, DecoderFactory.get().binaryDecoder(data, null));
+        return record.get("text").toString();
+    }
+
+    // Запись произвольного размера: сгенерированные записи проекта не больше начального буфера
+    private static final class Payload extends SpecificRecordBase {
+        private static final Schema SCHEMA = SchemaBuilder.record("Payload").namespace("kafka.serialization")
+                .fields().requiredString("text").endRecord();
+
+        private CharSequence text;
+
+        private Payload(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public Schema getSchema() {
+            return SCHEMA;
+        }
+
+        @Override
+        public Object get(int field) {
+            return text;
+        }
+
+        @Override
+        public void put(int field, Object value) {
+            text = (CharSequence) value;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package ru.practicum.controller;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.protobuf.Empty;
+import io.grpc.StatusRuntimeException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.devh.boot.grpc.client.inject.GrpcClient;
+import org.springframework.stereotype.Service;
+import ru.practicum.ewm.stats.proto.UserActionBatchProto;
+import ru.practicum.ewm.stats.proto.UserActionControllerGrpc;
+import ru.practicum.ewm.stats.proto.UserActionProto;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Фоновая отправка действий пакетами: вызывающий поток только ставит действие в ограниченную очередь,
+// а пакет уходит в коллектор асинхронным вызовом при накоплении batchSize действий или раз в flushInterval.
+// В полёте не больше одного пакета, поэтому действия доставляются в порядке поступления
+@Slf4j
+@Service
+public class UserActionBatchSender {
+
+    @GrpcClient("collector")
+    private UserActionControllerGrpc.UserActionControllerFutureStub futureStub;
+
+    @GrpcClient("collector")
+    private UserActionControllerGrpc.UserActionControllerBlockingStub blockingStub;
+
+    private final UserActionSenderProperties properties;
+    private final BlockingQueue<UserActionProto> queue;
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final AtomicBoolean inFlight = new AtomicBoolean();
+    private final Counter sentCounter;
+    private final Counter overflowCounter;
+    private final Counter failedCounter;
+    private final Counter retryCounter;
+    private final Timer successTimer;
+    private final Timer failureTimer;
+    private ScheduledExecutorService executor;
+
+    public UserActionBatchSender(UserActionSenderProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        Gauge.builder("stats.client.user-actions.queue.depth", queue, BlockingQueue::size)
+                .description("User actions waiting to be sent to the collector")
+                .register(meterRegistry);
+        this.sentCounter = Counter.builder("stats.client.user-actions.sent")
+                .description("User actions delivered to the collector")
+                .register(meterRegistry);
+        this.overflowCounter = droppedCounter(meterRegistry, "overflow");
+        this.failedCounter = droppedCounter(meterRegistry, "failed");
+        this.retryCounter = Counter.builder("stats.client.user-actions.retries")
+                .description("Repeated attempts to send a batch of user actions")
+                .register(meterRegistry);
+        this.successTimer = sendTimer(meterRegistry, "success");
+        this.failureTimer = sendTimer(meterRegistry, "failure");
+    }
+
+    @PostConstruct
+    public void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-action-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = properties.getFlushInterval().toMillis();
+        executor.scheduleWithFixedDelay(this::flush, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        log.info("User action sender started: {}", properties);
+    }
+
+    // Возвращает false, если действие отброшено из-за переполнения очереди
+    public boolean send(UserActionProto action) {
+        if (!enqueue(action)) {
+            overflowCounter.increment();
+            log.debug("User action queue is full, action dropped: {}", action);
+            return false;
+        }
+        if (queue.size() >= properties.getBatchSize() && flushRequested.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::flush);
+            } catch (RejectedExecutionException e) {
+                flushRequested.set(false);
+            }
+        }
+        return true;
+    }
+
+    public void flush() {
+        flushRequested.set(false);
+        if (!inFlight.compareAndSet(false, true)) {
+            // Следующий пакет отправится по завершении текущего
+            return;
+        }
+        UserActionBatchProto batch = nextBatch();
+        if (batch.getActionsCount() == 0) {
+            inFlight.set(false);
+            return;
+        }
+        sendBatch(batch, 1);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(properties.getDeadline().toMillis() * 2, TimeUnit.MILLISECONDS);
+        // Остаток очереди отправляется синхронно, одной попыткой на пакет
+        UserActionBatchProto batch;
+        while ((batch = nextBatch()).getActionsCount() > 0) {
+            try {
+                blockingStub.withDeadlineAfter(properties.getDeadline().toMillis(), TimeUnit.MILLISECONDS)
+                        .collectUserActionBatch(batch);
+                sentCounter.increment(batch.getActionsCount());
+            } catch (StatusRuntimeException e) {
+                failedCounter.increment(batch.getActionsCount());
+                log.error("Failed to send {} user actions on shutdown", batch.getActionsCount(), e);
+            }
+        }
+    }
+
+    private boolean enqueue(UserActionProto action) {
+        if (properties.getOverflowPolicy() == UserActionSenderProperties.OverflowPolicy.DROP) {
+            return queue.offer(action);
+        }
+        try {
+            return queue.offer(action, properties.getBlockTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private UserActionBatchProto nextBatch() {
+        UserActionBatchProto.Builder batch = UserActionBatchProto.newBuilder();
+        UserActionProto action;
+        while (batch.getActionsCount() < properties.getBatchSize() && (action = queue.poll()) != null) {
+            batch.addActions(action);
+        }
+        return batch.build();
+    }
+
+    private void sendBatch(UserActionBatchProto batch, int attempt) {
+        long started = System.nanoTime();
+        Futures.addCallback(futureStub.withDeadlineAfter(properties.getDeadline().toMillis(), TimeUnit.MILLISECONDS)
+                .collectUserActionBatch(batch), new FutureCallback<>() {
+                    @Override
+                    public void onSuccess(Empty result) {
+                        successTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                        sentCounter.increment(batch.getActionsCount());
+                        log.debug("Sent batch of {} user actions", batch.getActionsCount());
+                        completed();
+                    }
+
+                    @Override
+                    public void onFailure(Throwable t) {
+                        failureTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                        retryOrDrop(batch, attempt, t);
+                    }
+                }, MoreExecutors.directExecutor());
+    }
+
+    private void retryOrDrop(UserActionBatchProto batch, int attempt, Throwable error) {
+        if (attempt < properties.getMaxAttempts()) {
+            long backoffMillis = backoffMillis(attempt);
+            log.warn("Failed to send batch of {} user actions, attempt {}, retry in {} ms: {}",
+                    batch.getActionsCount(), attempt, backoffMillis, error.getMessage());
+            try {
+                executor.schedule(() -> sendBatch(batch, attempt + 1), backoffMillis, TimeUnit.MILLISECONDS);
+                retryCounter.increment();
+                return;
+            } catch (RejectedExecutionException e) {
+                log.warn("User action sender is stopped, batch is not retried");
+            }
+        }
+        failedCounter.increment(batch.getActionsCount());
+        log.error("Dropped batch of {} user actions after {} attempts", batch.getActionsCount(), attempt, error);
+        completed();
+    }
+
+    private void completed() {
+        inFlight.set(false);
+        if (queue.size() >= properties.getBatchSize()) {
+            flush();
+        }
+    }
+
+    private long backoffMillis(int attempt) {
+        long backoff = properties.getInitialBackoff().toMillis() << Math.min(attempt - 1, 20);
+        return Math.min(backoff, properties.getMaxBackoff().toMillis());
+    }
+
+    private static Counter droppedCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("stats.client.user-actions.dropped")
+                .description("User actions dropped without delivery to the collector")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    private static Timer sendTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("stats.client.user-actions.send.latency")
+                .description("Latency of sending a batch of user actions to the collector")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
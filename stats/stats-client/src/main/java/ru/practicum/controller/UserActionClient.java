@@ -17,18 +17,22 @@ public class UserActionClient {
     @GrpcClient("collector")
     private UserActionControllerGrpc.UserActionControllerBlockingStub client;
 
+    private final UserActionBatchSender batchSender;
+    private final UserActionSenderProperties properties;
+
+    public UserActionClient(UserActionBatchSender batchSender, UserActionSenderProperties properties) {
+        this.batchSender = batchSender;
+        this.properties = properties;
+    }
+
+    // В асинхронном режиме не ждёт коллектор и не выбрасывает исключений: сбои учитываются метриками отправителя
     public void sendUserAction(long userId, long eventId, ActionTypeProto actionType, Instant timestamp) {
-        log.info("IN HERE");
+        if (properties.getMode() == UserActionSenderProperties.SendMode.ASYNC) {
+            sendUserActionAsync(userId, eventId, actionType, timestamp);
+            return;
+        }
         try {
-            UserActionProto request = UserActionProto.newBuilder()
-                    .setUserId(userId)
-                    .setEventId(eventId)
-                    .setActionType(actionType)
-                    .setTimestamp(com.google.protobuf.Timestamp.newBuilder()
-                            .setSeconds(timestamp.getEpochSecond())
-                            .setNanos(timestamp.getNano())
-                            .build())
-                    .build();
+            UserActionProto request = toProto(userId, eventId, actionType, timestamp);
 
             client.collectUserAction(request);
             log.debug("Sent user action: userId={}, eventId={}, actionType={}", userId, eventId, actionType);
@@ -37,4 +41,21 @@ public class UserActionClient {
             throw new RuntimeException("gRPC call failed", e);
         }
     }
+
+    // Отправка без ожидания ответа коллектора: действие уходит в фоновом пакете
+    public void sendUserActionAsync(long userId, long eventId, ActionTypeProto actionType, Instant timestamp) {
+        batchSender.send(toProto(userId, eventId, actionType, timestamp));
+    }
+
+    private UserActionProto toProto(long userId, long eventId, ActionTypeProto actionType, Instant timestamp) {
+        return UserActionProto.newBuilder()
+                .setUserId(userId)
+                .setEventId(eventId)
+                .setActionType(actionType)
+                .setTimestamp(com.google.protobuf.Timestamp.newBuilder()
+                        .setSeconds(timestamp.getEpochSecond())
+                        .setNanos(timestamp.getNano())
+                        .build())
+                .build();
+    }
 }
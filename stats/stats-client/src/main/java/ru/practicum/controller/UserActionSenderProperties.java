@@ -0,0 +1,41 @@
+package ru.practicum.controller;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+// Отправка действий в коллектор. В режиме ASYNC действия ставятся в ограниченную очередь и уходят пакетами
+// в фоне, поэтому задержка и сбои коллектора не влияют на обработку запросов; SYNC — прежний блокирующий вызов
+@Getter
+@Setter
+@ToString
+@Configuration
+@ConfigurationProperties(prefix = "stats.client.user-actions")
+public class UserActionSenderProperties {
+    private SendMode mode = SendMode.ASYNC;
+    private int batchSize = 100;
+    private Duration flushInterval = Duration.ofMillis(200);
+    private int queueCapacity = 10_000;
+    // Переполнение очереди: DROP — действие отбрасывается сразу, BLOCK — ожидание места не дольше blockTimeout
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP;
+    private Duration blockTimeout = Duration.ofMillis(50);
+    // Повтор неудачного пакета с экспоненциальной задержкой от initialBackoff до maxBackoff
+    private int maxAttempts = 5;
+    private Duration initialBackoff = Duration.ofMillis(100);
+    private Duration maxBackoff = Duration.ofSeconds(5);
+    private Duration deadline = Duration.ofSeconds(1);
+
+    public enum SendMode {
+        SYNC,
+        ASYNC
+    }
+
+    public enum OverflowPolicy {
+        DROP,
+        BLOCK
+    }
+}
@@ -0,0 +1,204 @@
+package ru.practicum.controller;
+
+import com.google.protobuf.Empty;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.practicum.ewm.stats.proto.ActionTypeProto;
+import ru.practicum.ewm.stats.proto.UserActionBatchProto;
+import ru.practicum.ewm.stats.proto.UserActionControllerGrpc;
+import ru.practicum.ewm.stats.proto.UserActionProto;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class UserActionBatchSenderTest {
+    private final CollectorChannel collector = new CollectorChannel();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UserActionSenderProperties properties = new UserActionSenderProperties();
+    private UserActionBatchSender sender;
+
+    @BeforeEach
+    public void configure() {
+        properties.setFlushInterval(Duration.ofHours(1));
+        properties.setInitialBackoff(Duration.ofMillis(20));
+        properties.setMaxBackoff(Duration.ofMillis(40));
+    }
+
+    @Test
+    public void send_whenBatchSizeReached_thenBatchSentAndMetricsRecorded() throws InterruptedException {
+        properties.setBatchSize(3);
+        startSender();
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(sender.send(action(i)));
+        }
+
+        await(() -> collector.batches.size() == 1, "batch delivered");
+        assertEquals(3, collector.batches.get(0).getActionsCount());
+        await(() -> counter("stats.client.user-actions.sent") == 3, "sent counter");
+        assertEquals(1, meterRegistry.get("stats.client.user-actions.send.latency").tag("outcome", "success")
+                .timer().count());
+        assertEquals(0, meterRegistry.get("stats.client.user-actions.queue.depth").gauge().value());
+    }
+
+    @Test
+    public void flush_whenCollectorUnavailable_thenRetriedWithBackoff() throws InterruptedException {
+        collector.failures.set(2);
+        properties.setBatchSize(1);
+        startSender();
+
+        sender.send(action(1));
+
+        await(() -> collector.batches.size() == 1, "batch delivered after retries");
+        assertEquals(3, collector.attempts.size());
+        // Задержка удваивается: 20 мс перед второй попыткой, 40 мс перед третьей
+        assertTrue(collector.attempts.get(1) - collector.attempts.get(0) >= TimeUnit.MILLISECONDS.toNanos(20));
+        assertTrue(collector.attempts.get(2) - collector.attempts.get(1) >= TimeUnit.MILLISECONDS.toNanos(40));
+        await(() -> counter("stats.client.user-actions.sent") == 1, "sent counter");
+        assertEquals(2, counter("stats.client.user-actions.retries"));
+        assertEquals(2, meterRegistry.get("stats.client.user-actions.send.latency").tag("outcome", "failure")
+                .timer().count());
+    }
+
+    @Test
+    public void flush_whenAttemptsExhausted_thenBatchDroppedAsFailed() throws InterruptedException {
+        collector.failures.set(Integer.MAX_VALUE);
+        properties.setBatchSize(2);
+        properties.setMaxAttempts(2);
+        startSender();
+
+        sender.send(action(1));
+        sender.send(action(2));
+
+        await(() -> meterRegistry.get("stats.client.user-actions.dropped").tag("reason", "failed")
+                .counter().count() == 2, "batch dropped");
+        assertEquals(2, collector.attempts.size());
+        assertEquals(0, counter("stats.client.user-actions.sent"));
+    }
+
+    @Test
+    public void send_whenQueueFull_thenActionDroppedAsOverflow() {
+        properties.setQueueCapacity(2);
+        startSender();
+
+        assertTrue(sender.send(action(1)));
+        assertTrue(sender.send(action(2)));
+        assertFalse(sender.send(action(3)));
+
+        assertEquals(1, meterRegistry.get("stats.client.user-actions.dropped").tag("reason", "overflow")
+                .counter().count());
+        assertEquals(2, meterRegistry.get("stats.client.user-actions.queue.depth").gauge().value());
+    }
+
+    @Test
+    public void stop_whenActionsQueued_thenRemainderSentBeforeShutdown() throws InterruptedException {
+        startSender();
+        for (int i = 0; i < 5; i++) {
+            sender.send(action(i));
+        }
+        assertEquals(0, collector.attempts.size());
+
+        sender.stop();
+
+        assertEquals(1, collector.batches.size());
+        assertEquals(5, collector.batches.get(0).getActionsCount());
+        assertEquals(5, counter("stats.client.user-actions.sent"));
+    }
+
+    private void startSender() {
+        sender = new UserActionBatchSender(properties, meterRegistry);
+        ReflectionTestUtils.setField(sender, "futureStub", UserActionControllerGrpc.newFutureStub(collector));
+        ReflectionTestUtils.setField(sender, "blockingStub", UserActionControllerGrpc.newBlockingStub(collector));
+        sender.start();
+    }
+
+    private double counter(String name) {
+        return meterRegistry.get(name).counter().count();
+    }
+
+    private static UserActionProto action(long eventId) {
+        return UserActionProto.newBuilder()
+                .setUserId(1)
+                .setEventId(eventId)
+                .setActionType(ActionTypeProto.ACTION_VIEW)
+                .build();
+    }
+
+    private static void await(BooleanSupplier condition, String description) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting for: " + description);
+            Thread.sleep(10);
+        }
+    }
+
+    // Канал-заглушка коллектора: отвечает на вызов сразу после отправки запроса, на первые failures вызовов —
+    // статусом UNAVAILABLE
+    private static final class CollectorChannel extends Channel {
+        private final AtomicInteger failures = new AtomicInteger();
+        private final List<Long> attempts = new CopyOnWriteArrayList<>();
+        private final List<UserActionBatchProto> batches = new CopyOnWriteArrayList<>();
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <RequestT, ResponseT> ClientCall<RequestT, ResponseT> newCall(
+                MethodDescriptor<RequestT, ResponseT> method, CallOptions callOptions) {
+            return new ClientCall<>() {
+                private Listener<ResponseT> listener;
+                private RequestT request;
+
+                @Override
+                public void start(Listener<ResponseT> responseListener, Metadata headers) {
+                    listener = responseListener;
+                }
+
+                @Override
+                public void request(int numMessages) {
+                }
+
+                @Override
+                public void cancel(String message, Throwable cause) {
+                }
+
+                @Override
+                public void sendMessage(RequestT message) {
+                    request = message;
+                }
+
+                @Override
+                public void halfClose() {
+                    attempts.add(System.nanoTime());
+                    if (failures.getAndUpdate(left -> left > 0 ? left - 1 : 0) > 0) {
+                        listener.onClose(Status.UNAVAILABLE, new Metadata());
+                        return;
+                    }
+                    batches.add((UserActionBatchProto) request);
+                    listener.onHeaders(new Metadata());
+                    listener.onMessage((ResponseT) Empty.getDefaultInstance());
+                    listener.onClose(Status.OK, new Metadata());
+                }
+            };
+        }
+
+        @Override
+        public String authority() {
+            return "collector";
+        }
+    }
+}